@@ -0,0 +1,314 @@
+package org.example.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 为带有 {@code @FieldSCName} 的类在编译期生成 {@code XxxDiffer}
+ * <p>
+ * 生成的类与被比较的类在同一个包中，实现 {@code org.example.ClassDiffer}，展示名称以常量形式写入，
+ * 运行期由 {@code DiffPlan} 按名称发现。
+ * 同包可见的字段直接读取，其他字段通过 {@code DiffPlan} 中该字段的 {@code FieldAccessor} 读取，不调用 getter，
+ * 与逐字段反射比较读到的值相同。字段的位置在初始化时按声明类和字段名向 {@code DiffPlan} 查询，不依赖两边的字段顺序一致，
+ * 查不到时初始化失败，{@code DiffPlan} 不使用该比较器。
+ */
+@SupportedAnnotationTypes(FieldSCNameProcessor.FIELD_SC_NAME)
+public class FieldSCNameProcessor extends AbstractProcessor {
+
+    static final String FIELD_SC_NAME = "org.example.FieldSCName";
+
+    private static final String DIFF_EXCLUDE = "org.apache.commons.lang3.builder.DiffExclude";
+
+    private final Set<String> generated = new LinkedHashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> types = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind().isClass()) {
+                    types.add((TypeElement) element);
+                } else if (element.getKind() == ElementKind.FIELD) {
+                    types.add((TypeElement) element.getEnclosingElement());
+                }
+            }
+        }
+        for (TypeElement type : types) {
+            if (type.getKind() != ElementKind.CLASS && type.getKind() != ElementKind.RECORD) {
+                continue;
+            }
+            String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+            if (generated.add(binaryName)) {
+                generate(type, binaryName);
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement type, String binaryName) {
+        if (!isAccessible(type)) {
+            note(type, "not accessible from its package, no differ generated");
+            return;
+        }
+        String packageName = packageOf(type).getQualifiedName().toString();
+        List<GeneratedField> fields = new ArrayList<>();
+        Set<String> names = new LinkedHashSet<>();
+        TypeElement current = type;
+        while (current != null) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                if (!accept(field)) {
+                    continue;
+                }
+                if (!names.add(field.getSimpleName().toString())) {
+                    note(type, "field " + field.getSimpleName() + " hides a field of the same name, no differ generated");
+                    return;
+                }
+                String declaring = processingEnv.getElementUtils().getBinaryName(current).toString();
+                fields.add(new GeneratedField(field, displayName(field), declaring, isDirect(current, field, packageName)));
+            }
+            current = superclassOf(current);
+        }
+
+        String simpleName = binaryName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1).replace('$', '_') + "Differ";
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+            writer.write(source(type, packageName, simpleName, fields));
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + qualifiedName + ": " + e.getMessage(), type);
+        }
+    }
+
+    private String source(TypeElement type, String packageName, String simpleName, List<GeneratedField> fields) {
+        String typeName = typeReference(type);
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n");
+        source.append("public final class ").append(simpleName)
+                .append(" implements org.example.ClassDiffer<").append(typeName).append("> {\n\n");
+        source.append("    public static final String DOCUMENT_NAME = ").append(literal(displayName(type))).append(";\n");
+        Set<String> constants = new LinkedHashSet<>();
+        for (GeneratedField field : fields) {
+            field.constant = uniqueConstant(constants, field.element.getSimpleName().toString());
+            source.append("    public static final String ").append(field.constant).append(" = ")
+                    .append(literal(field.name)).append(";\n");
+        }
+        source.append("\n    private static final org.example.DiffPlan PLAN = org.example.DiffPlan.of(")
+                .append(type.getQualifiedName()).append(".class);\n");
+        for (int i = 0; i < fields.size(); i++) {
+            GeneratedField field = fields.get(i);
+            source.append("    private static final int I").append(i).append(" = PLAN.fieldIndex(")
+                    .append(literal(field.declaring)).append(", ")
+                    .append(literal(field.element.getSimpleName().toString())).append(");\n");
+            if (!field.direct) {
+                source.append("    private static final org.example.FieldAccessor A").append(i)
+                        .append(" = PLAN.getFields().get(I").append(i).append(").getAccessor();\n");
+            }
+        }
+        source.append("\n    static {\n");
+        source.append("        if (PLAN.getFields().size() != ").append(fields.size()).append(") {\n");
+        source.append("            throw new IllegalStateException(\"Fields of \" + PLAN.getType() + \" changed since compilation\");\n");
+        source.append("        }\n");
+        source.append("    }\n");
+        source.append("\n    @Override\n");
+        source.append("    public void diff(").append(typeName).append(" left, ").append(typeName)
+                .append(" right, org.example.FieldVisitor visitor) {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            GeneratedField field = fields.get(i);
+            if (field.direct) {
+                TypeMirror fieldType = field.element.asType();
+                String localType = fieldType.getKind().isPrimitive() ? fieldType.toString() : "Object";
+                String name = field.element.getSimpleName().toString();
+                source.append("        ").append(localType).append(" l").append(i).append(" = left.").append(name).append(";\n");
+                source.append("        ").append(localType).append(" r").append(i).append(" = right.").append(name).append(";\n");
+                source.append("        if (").append(differs(fieldType.getKind(), "l" + i, "r" + i)).append(") {\n");
+                source.append("            visitor.visit(I").append(i).append(", l").append(i).append(", r").append(i).append(");\n");
+                source.append("        }\n");
+            } else {
+                source.append("        if (!A").append(i).append(".same(left, right)) {\n");
+                source.append("            visitor.visit(I").append(i).append(", A").append(i).append(".get(left), A")
+                        .append(i).append(".get(right));\n");
+                source.append("        }\n");
+            }
+        }
+        source.append("    }\n");
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private static String differs(TypeKind kind, String left, String right) {
+        // 与 FieldAccessor.same 一致：浮点数按位比较，对象只比较引用
+        switch (kind) {
+            case DOUBLE:
+                return "Double.doubleToLongBits(" + left + ") != Double.doubleToLongBits(" + right + ")";
+            case FLOAT:
+                return "Float.floatToIntBits(" + left + ") != Float.floatToIntBits(" + right + ")";
+            default:
+                return left + " != " + right;
+        }
+    }
+
+    private boolean accept(VariableElement field) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+            return false;
+        }
+        if (field.getSimpleName().toString().indexOf('$') != -1) {
+            return false;
+        }
+        return annotation(field, DIFF_EXCLUDE) == null;
+    }
+
+    /**
+     * 字段能否在生成的类中直接读取，不能时通过 {@code FieldAccessor} 读取
+     */
+    private boolean isDirect(TypeElement declaring, VariableElement field, String packageName) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (declaring.getKind() == ElementKind.RECORD) {
+            return false;
+        }
+        return modifiers.contains(Modifier.PUBLIC)
+                || (!modifiers.contains(Modifier.PRIVATE) && packageOf(declaring).getQualifiedName().contentEquals(packageName));
+    }
+
+    private boolean isAccessible(TypeElement type) {
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String typeReference(TypeElement type) {
+        StringBuilder reference = new StringBuilder(type.getQualifiedName());
+        int parameters = type.getTypeParameters().size();
+        if (parameters > 0) {
+            reference.append('<');
+            for (int i = 0; i < parameters; i++) {
+                reference.append(i == 0 ? "?" : ", ?");
+            }
+            reference.append('>');
+        }
+        return reference.toString();
+    }
+
+    private String displayName(Element element) {
+        AnnotationMirror mirror = annotation(element, FIELD_SC_NAME);
+        if (mirror == null) {
+            return element.getKind() == ElementKind.FIELD ? element.getSimpleName().toString() : "";
+        }
+        return mirror.getElementValues().entrySet().stream()
+                .filter(entry -> entry.getKey().getSimpleName().contentEquals("value"))
+                .map(entry -> (String) entry.getValue().getValue())
+                .findFirst()
+                .orElse("");
+    }
+
+    private static AnnotationMirror annotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private static TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        if (element.getQualifiedName().contentEquals("java.lang.Object")
+                || element.getQualifiedName().contentEquals("java.lang.Record")) {
+            return null;
+        }
+        return element;
+    }
+
+    private PackageElement packageOf(Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element);
+    }
+
+    private void note(TypeElement type, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, type.getQualifiedName() + " " + message, type);
+    }
+
+    private static String uniqueConstant(Set<String> constants, String fieldName) {
+        StringBuilder constant = new StringBuilder();
+        for (int i = 0; i < fieldName.length(); i++) {
+            char c = fieldName.charAt(i);
+            if (Character.isUpperCase(c) && i > 0) {
+                constant.append('_');
+            }
+            constant.append(Character.toUpperCase(c));
+        }
+        String candidate = constant.toString();
+        if (candidate.equals("DOCUMENT_NAME")) {
+            candidate = "FIELD_" + candidate;
+        }
+        String unique = candidate;
+        for (int i = 1; !constants.add(unique); i++) {
+            unique = candidate + "_" + i;
+        }
+        return unique;
+    }
+
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                literal.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                literal.append(String.format("\\u%04x", (int) c));
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private static final class GeneratedField {
+        private final VariableElement element;
+        private final String name;
+        private final String declaring;
+        private final boolean direct;
+        private String constant;
+
+        GeneratedField(VariableElement element, String name, String declaring, boolean direct) {
+            this.element = element;
+            this.name = name;
+            this.declaring = declaring;
+            this.direct = direct;
+        }
+    }
+}
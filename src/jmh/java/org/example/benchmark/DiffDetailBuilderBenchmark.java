@@ -0,0 +1,51 @@
+package org.example.benchmark;
+
+import org.example.DiffDetailBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DiffDetailBuilder#append(String, Object, Object)} 对叶子值的处理开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiffDetailBuilderBenchmark {
+
+    private final Integer leftNumber = 1000;
+    private final Integer equalNumber = 1000;
+    private final Integer rightNumber = 2000;
+    private final String leftText = new String("London");
+    private final String equalText = new String("London");
+    private final String rightText = "Paris";
+    private final BigDecimal leftDecimal = new BigDecimal("1.10");
+    private final BigDecimal rightDecimal = new BigDecimal("1.20");
+
+    @Benchmark
+    public DiffDetailBuilder<Object> equalValues() {
+        return new DiffDetailBuilder<>("订单", null, null)
+                .append("订单-数量", leftNumber, equalNumber)
+                .append("订单-城市", leftText, equalText);
+    }
+
+    @Benchmark
+    public DiffDetailBuilder<Object> differentValues() {
+        return new DiffDetailBuilder<>("订单", null, null)
+                .append("订单-数量", leftNumber, rightNumber)
+                .append("订单-城市", leftText, rightText)
+                .append("订单-金额", leftDecimal, rightDecimal);
+    }
+}
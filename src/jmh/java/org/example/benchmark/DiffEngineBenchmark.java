@@ -0,0 +1,94 @@
+package org.example.benchmark;
+
+import org.example.DiffEngine;
+import org.example.ReflectionDiffBuilder;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 共享的 {@link DiffEngine} 与每次新建 {@link ReflectionDiffBuilder} 的吞吐量和每次比较的分配字节数。
+ * {@code allocatedBytes} 按线程统计，与 gc 分析器的 {@code gc.alloc.rate.norm} 对照；
+ * 引擎只复用已比较对象表，两者的差值就是这张表的分配
+ * <pre>
+ * ./gradlew jmh -Pjmh.includes=DiffEngineBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiffEngineBenchmark {
+
+    private static final DiffEngine ENGINE = new DiffEngine();
+
+    @Param({"IDENTICAL", "MOSTLY_EQUAL", "FULLY_DIFFERENT"})
+    public Fixtures.Scenario scenario;
+
+    private Fixtures.Person leftPerson;
+    private Fixtures.Person rightPerson;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        leftPerson = Fixtures.person(scenario, false, 5);
+        rightPerson = Fixtures.person(scenario, true, 5);
+    }
+
+    /**
+     * 分配的字节数和调用次数，两者相除得到每次调用的分配
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Allocation {
+        private static final com.sun.management.ThreadMXBean THREADS =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        public long allocatedBytes;
+        public long calls;
+        private long start;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            allocatedBytes = 0;
+            calls = 0;
+        }
+
+        void begin() {
+            start = THREADS.getCurrentThreadAllocatedBytes();
+        }
+
+        void end() {
+            allocatedBytes += THREADS.getCurrentThreadAllocatedBytes() - start;
+            calls++;
+        }
+    }
+
+    @Benchmark
+    public void sharedEngine(Allocation allocation) {
+        allocation.begin();
+        ENGINE.diff(leftPerson, rightPerson, pair -> { });
+        allocation.end();
+    }
+
+    @Benchmark
+    public void newBuilder(Allocation allocation) {
+        allocation.begin();
+        new ReflectionDiffBuilder<>(leftPerson, rightPerson).diff(pair -> { });
+        allocation.end();
+    }
+}
@@ -0,0 +1,187 @@
+package org.example.benchmark;
+
+import org.example.FieldSCName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试使用的数据，结构与 TestDiff 中的 Person/Address/PhoneNumber 一致
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * 左右两侧数据的差异程度
+     */
+    public enum Scenario {
+        /**
+         * 内容相同的两个不同实例
+         */
+        IDENTICAL,
+        /**
+         * 只有少量字段不同
+         */
+        MOSTLY_EQUAL,
+        /**
+         * 所有字段都不同
+         */
+        FULLY_DIFFERENT
+    }
+
+    @FieldSCName("订单")
+    public static class Order {
+        @FieldSCName("订单号")
+        final String orderNo;
+        @FieldSCName("客户")
+        final String customer;
+        @FieldSCName("数量")
+        final int quantity;
+        @FieldSCName("金额")
+        final long amount;
+        @FieldSCName("折扣")
+        final double discount;
+        @FieldSCName("已支付")
+        final boolean paid;
+        @FieldSCName("状态")
+        final String status;
+        @FieldSCName("备注")
+        final String remark;
+
+        public Order(String orderNo, String customer, int quantity, long amount, double discount, boolean paid, String status, String remark) {
+            this.orderNo = orderNo;
+            this.customer = customer;
+            this.quantity = quantity;
+            this.amount = amount;
+            this.discount = discount;
+            this.paid = paid;
+            this.status = status;
+            this.remark = remark;
+        }
+    }
+
+    @FieldSCName("手机号码")
+    public static class PhoneNumber {
+        @FieldSCName("号码类型")
+        final String type;
+        final String number;
+
+        public PhoneNumber(String type, String number) {
+            this.type = type;
+            this.number = number;
+        }
+    }
+
+    @FieldSCName("地址")
+    public static class Address {
+        final String streetAddress;
+        @FieldSCName("城市")
+        final String city;
+        final String postalCode;
+
+        public Address(String streetAddress, String city, String postalCode) {
+            this.streetAddress = streetAddress;
+            this.city = city;
+            this.postalCode = postalCode;
+        }
+    }
+
+    public static class Person {
+        @FieldSCName("姓")
+        final String firstName;
+        @FieldSCName("名")
+        final String lastName;
+        @FieldSCName("年龄")
+        final int age;
+        @FieldSCName("手机号码")
+        final List<PhoneNumber> phoneNumbers;
+        @FieldSCName("地址")
+        final Address address;
+        @FieldSCName("父亲")
+        final Person father;
+
+        public Person(String firstName, String lastName, int age, List<PhoneNumber> phoneNumbers, Address address, Person father) {
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.age = age;
+            this.phoneNumbers = phoneNumbers;
+            this.address = address;
+            this.father = father;
+        }
+    }
+
+    @FieldSCName("采样")
+    public static class Samples {
+        @FieldSCName("读数")
+        final double[] readings;
+        @FieldSCName("计数")
+        final int[] counts;
+
+        public Samples(double[] readings, int[] counts) {
+            this.readings = readings;
+            this.counts = counts;
+        }
+    }
+
+    @FieldSCName("通讯录")
+    public static class Contacts {
+        @FieldSCName("手机号码")
+        final List<PhoneNumber> phoneNumbers;
+
+        public Contacts(List<PhoneNumber> phoneNumbers) {
+            this.phoneNumbers = phoneNumbers;
+        }
+    }
+
+    public static Order order(Scenario scenario, boolean right) {
+        if (!right || scenario == Scenario.IDENTICAL) {
+            return new Order(new String("NO-1"), "ACME", 3, 30000L, 0.1, false, "NEW", "");
+        }
+        if (scenario == Scenario.MOSTLY_EQUAL) {
+            return new Order(new String("NO-1"), "ACME", 4, 30000L, 0.1, false, "NEW", "");
+        }
+        return new Order("NO-2", "Initech", 5, 50000L, 0.2, true, "PAID", "urgent");
+    }
+
+    /**
+     * @param depth 父亲链的长度
+     */
+    public static Person person(Scenario scenario, boolean right, int depth) {
+        Person father = depth > 1 ? person(scenario, right, depth - 1) : null;
+        List<PhoneNumber> phoneNumbers = new ArrayList<>();
+        phoneNumbers.add(new PhoneNumber("home", "123-456-7890"));
+        phoneNumbers.add(new PhoneNumber("work", "987-654-3210"));
+        if (!right || scenario == Scenario.IDENTICAL) {
+            return new Person("John", "Doe", 30 + depth, phoneNumbers, new Address("123 Main St", "London", "12345"), father);
+        }
+        if (scenario == Scenario.MOSTLY_EQUAL) {
+            return new Person("John", "Doe", 30 + depth, phoneNumbers, new Address("123 Main St", depth == 1 ? "Paris" : "London", "12345"), father);
+        }
+        List<PhoneNumber> otherNumbers = new ArrayList<>();
+        otherNumbers.add(new PhoneNumber("mobile1", "555-0100"));
+        otherNumbers.add(new PhoneNumber("mobile2", "555-0199"));
+        return new Person("Jane", "Smith", 20 + depth, otherNumbers, new Address("456 Side St", "Paris", "54321"), father);
+    }
+
+    public static Contacts contacts(Scenario scenario, boolean right, int size) {
+        List<PhoneNumber> phoneNumbers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            boolean changed = right && (scenario == Scenario.FULLY_DIFFERENT || (scenario == Scenario.MOSTLY_EQUAL && i % 100 == 0));
+            phoneNumbers.add(new PhoneNumber(changed ? "mobile" : "home", "555-" + i));
+        }
+        return new Contacts(phoneNumbers);
+    }
+
+    public static Samples samples(Scenario scenario, boolean right, int size) {
+        double[] readings = new double[size];
+        int[] counts = new int[size];
+        for (int i = 0; i < size; i++) {
+            boolean changed = right && (scenario == Scenario.FULLY_DIFFERENT || (scenario == Scenario.MOSTLY_EQUAL && i == size / 2));
+            readings[i] = changed ? -i : i * 0.5;
+            counts[i] = changed ? -i : i;
+        }
+        return new Samples(readings, counts);
+    }
+}
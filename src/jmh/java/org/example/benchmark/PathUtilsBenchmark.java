@@ -0,0 +1,49 @@
+package org.example.benchmark;
+
+import org.example.PathNode;
+import org.example.PathUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PathUtils#join(CharSequence, CharSequence...)} 与 {@link PathNode#child(String)} 的吞吐量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathUtilsBenchmark {
+
+    private final String documentName = "人员信息-父亲-地址";
+    private final String fieldName = "城市";
+    private final PathNode documentNode = PathNode.root("人员信息").child("父亲").child("地址");
+
+    @Benchmark
+    public String joinField() {
+        return PathUtils.join("-", documentName, fieldName);
+    }
+
+    @Benchmark
+    public String joinEmptyDocument() {
+        return PathUtils.join("-", "", fieldName);
+    }
+
+    /**
+     * 与 {@link #joinField()} 对应的字典树查找，不生成字符串
+     */
+    @Benchmark
+    public PathNode childNode() {
+        return documentNode.child(fieldName);
+    }
+}
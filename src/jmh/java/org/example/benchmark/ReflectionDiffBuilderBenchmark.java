@@ -0,0 +1,100 @@
+package org.example.benchmark;
+
+import org.example.DiffDetailResult;
+import org.example.DiffPlan;
+import org.example.DiffStrategy;
+import org.example.ReflectionDiffBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ReflectionDiffBuilder#build()} 在不同数据形状、差异程度和比较方式下的吞吐量
+ * <pre>
+ * ./gradlew jmh -Pjmh.includes=ReflectionDiffBuilderBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReflectionDiffBuilderBenchmark {
+
+    private static final Class<?>[] TYPES = {Fixtures.Order.class, Fixtures.Person.class, Fixtures.Address.class,
+            Fixtures.PhoneNumber.class, Fixtures.Contacts.class, Fixtures.Samples.class};
+
+    @Param({"IDENTICAL", "MOSTLY_EQUAL", "FULLY_DIFFERENT"})
+    public Fixtures.Scenario scenario;
+
+    /**
+     * GENERATED 表示不单独设置，使用编译期生成的比较器
+     */
+    @Param({"GENERATED", "REFLECTION", "COMPILED"})
+    public String strategy;
+
+    private Fixtures.Order leftOrder;
+    private Fixtures.Order rightOrder;
+    private Fixtures.Person leftPerson;
+    private Fixtures.Person rightPerson;
+    private Fixtures.Contacts leftContacts;
+    private Fixtures.Contacts rightContacts;
+    private Fixtures.Samples leftSamples;
+    private Fixtures.Samples rightSamples;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DiffStrategy selected = "GENERATED".equals(strategy) ? null : DiffStrategy.valueOf(strategy);
+        for (Class<?> type : TYPES) {
+            DiffPlan.of(type).setStrategy(selected);
+        }
+        leftOrder = Fixtures.order(scenario, false);
+        rightOrder = Fixtures.order(scenario, true);
+        leftPerson = Fixtures.person(scenario, false, 5);
+        rightPerson = Fixtures.person(scenario, true, 5);
+        leftContacts = Fixtures.contacts(scenario, false, 10_000);
+        rightContacts = Fixtures.contacts(scenario, true, 10_000);
+        leftSamples = Fixtures.samples(scenario, false, 100_000);
+        rightSamples = Fixtures.samples(scenario, true, 100_000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (Class<?> type : TYPES) {
+            DiffPlan.of(type).setStrategy(null);
+        }
+    }
+
+    @Benchmark
+    public DiffDetailResult<Fixtures.Order> flatObject() {
+        return new ReflectionDiffBuilder<>(leftOrder, rightOrder).build();
+    }
+
+    @Benchmark
+    public DiffDetailResult<Fixtures.Person> nestedGraph() {
+        return new ReflectionDiffBuilder<>("人员信息", leftPerson, rightPerson).build();
+    }
+
+    @Benchmark
+    public DiffDetailResult<Fixtures.Contacts> largeList() {
+        return new ReflectionDiffBuilder<>(leftContacts, rightContacts).build();
+    }
+
+    @Benchmark
+    public DiffDetailResult<Fixtures.Samples> primitiveArrays() {
+        return new ReflectionDiffBuilder<>(leftSamples, rightSamples).build();
+    }
+}
@@ -0,0 +1,260 @@
+package org.example;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 按键比较两批对象，例如数据库导出与上游数据的对账
+ * <pre>
+ * BulkDiff.sortMerge("订单", exported, upstream, Order::getId, Comparator.naturalOrder(), options, sink);
+ * </pre>
+ * 差异推送到 {@link DiffSink}，路径为 {@code 根名称-键}：只在右侧出现的对象记为 {@code (null, 对象)}，
+ * 只在左侧出现的记为 {@code (对象, null)}，两侧都出现的对象逐字段比较，路径为 {@code 根名称-键-字段}。
+ * 每对对象单独比较，使用同一个按类缓存的 {@link DiffPlan}，比较完即可回收。
+ * <ul>
+ *     <li>{@link #hashJoin} 输入顺序任意，右侧按键全部载入内存，左侧只保存键</li>
+ *     <li>{@link #sortMerge} 两侧都按键升序排列，边读边比较，内存占用与数据量无关</li>
+ * </ul>
+ * 同一侧出现重复的键时抛出 {@link IllegalArgumentException}
+ */
+public enum BulkDiff {
+    ;
+
+    /**
+     * 以右侧建立哈希表，逐个读取左侧对象匹配，读过的左侧键保存在集合中用于发现重复
+     *
+     * @param rootName 路径的根名称，为空时使用类的展示名称
+     * @param left     左侧对象
+     * @param right    右侧对象
+     * @param key      对象的键
+     * @param options  比较配置
+     * @param sink     差异的接收者
+     * @return 统计
+     */
+    public static <T, K> BulkDiffResult hashJoin(String rootName, Iterable<? extends T> left, Iterable<? extends T> right,
+                                                 Function<? super T, ? extends K> key, DiffOptions options, DiffSink sink) {
+        Objects.requireNonNull(left, "left");
+        Objects.requireNonNull(right, "right");
+        final Join<T> join = new Join<>(rootName, key, options, sink);
+        final Map<Object, T> rights = new LinkedHashMap<>();
+        for (final T value : right) {
+            final Object id = join.keyOf(value);
+            if (rights.putIfAbsent(id, value) != null) {
+                throw duplicate(id);
+            }
+        }
+        final Set<Object> lefts = new HashSet<>();
+        for (final T value : left) {
+            if (join.isDone()) {
+                return join.result();
+            }
+            final Object id = join.keyOf(value);
+            if (!lefts.add(id)) {
+                throw duplicate(id);
+            }
+            final T other = rights.remove(id);
+            if (other == null) {
+                join.deleted(id, value);
+            } else {
+                join.matched(id, value, other);
+            }
+        }
+        for (final Map.Entry<Object, T> entry : rights.entrySet()) {
+            if (join.isDone()) {
+                break;
+            }
+            join.inserted(entry.getKey(), entry.getValue());
+        }
+        return join.result();
+    }
+
+    /**
+     * 合并两个按键升序排列的输入，键的顺序不对时抛出 {@link IllegalArgumentException}
+     *
+     * @param rootName 路径的根名称，为空时使用类的展示名称
+     * @param left     左侧对象，按键升序
+     * @param right    右侧对象，按键升序
+     * @param key      对象的键
+     * @param order    键的顺序
+     * @param options  比较配置
+     * @param sink     差异的接收者
+     * @return 统计
+     */
+    public static <T, K> BulkDiffResult sortMerge(String rootName, Iterator<? extends T> left, Iterator<? extends T> right,
+                                                  Function<? super T, ? extends K> key, Comparator<? super K> order,
+                                                  DiffOptions options, DiffSink sink) {
+        Objects.requireNonNull(left, "left");
+        Objects.requireNonNull(right, "right");
+        Objects.requireNonNull(order, "order");
+        final Join<T> join = new Join<>(rootName, key, options, sink);
+        final Cursor<T, K> lefts = new Cursor<>(left, key, order);
+        final Cursor<T, K> rights = new Cursor<>(right, key, order);
+        while ((lefts.value != null || rights.value != null) && !join.isDone()) {
+            final int compare = lefts.value == null ? 1 : rights.value == null ? -1 : order.compare(lefts.key, rights.key);
+            if (compare < 0) {
+                join.deleted(lefts.key, lefts.value);
+                lefts.next();
+            } else if (compare > 0) {
+                join.inserted(rights.key, rights.value);
+                rights.next();
+            } else {
+                join.matched(lefts.key, lefts.value, rights.value);
+                lefts.next();
+                rights.next();
+            }
+        }
+        return join.result();
+    }
+
+    /**
+     * 合并两个按键升序排列的流，见 {@link #sortMerge(String, Iterator, Iterator, Function, Comparator, DiffOptions, DiffSink)}。
+     * 两个流在返回或抛出异常前关闭，适合直接传入数据库游标等需要释放资源的流
+     *
+     * @param rootName 路径的根名称，为空时使用类的展示名称
+     * @param left     左侧对象，按键升序
+     * @param right    右侧对象，按键升序
+     * @param key      对象的键
+     * @param order    键的顺序
+     * @param options  比较配置
+     * @param sink     差异的接收者
+     * @return 统计
+     */
+    public static <T, K> BulkDiffResult sortMerge(String rootName, Stream<? extends T> left, Stream<? extends T> right,
+                                                  Function<? super T, ? extends K> key, Comparator<? super K> order,
+                                                  DiffOptions options, DiffSink sink) {
+        Objects.requireNonNull(left, "left");
+        Objects.requireNonNull(right, "right");
+        try (left; right) {
+            return sortMerge(rootName, left.iterator(), right.iterator(), key, order, options, sink);
+        }
+    }
+
+    private static IllegalArgumentException duplicate(Object key) {
+        return new IllegalArgumentException("Duplicate key: " + key);
+    }
+
+    /**
+     * 一侧输入的当前对象和键，读取时检查键是否升序
+     */
+    private static final class Cursor<T, K> {
+        private final Iterator<? extends T> iterator;
+        private final Function<? super T, ? extends K> keyFunction;
+        private final Comparator<? super K> order;
+        private T value;
+        private K key;
+
+        Cursor(Iterator<? extends T> iterator, Function<? super T, ? extends K> keyFunction, Comparator<? super K> order) {
+            this.iterator = iterator;
+            this.keyFunction = keyFunction;
+            this.order = order;
+            next();
+        }
+
+        void next() {
+            if (!iterator.hasNext()) {
+                value = null;
+                return;
+            }
+            final T next = Objects.requireNonNull(iterator.next(), "value");
+            final K nextKey = Objects.requireNonNull(keyFunction.apply(next), "key");
+            if (value != null) {
+                final int compare = order.compare(key, nextKey);
+                if (compare == 0) {
+                    throw duplicate(nextKey);
+                }
+                if (compare > 0) {
+                    throw new IllegalArgumentException("Keys are not sorted: " + nextKey + " after " + key);
+                }
+            }
+            value = next;
+            key = nextKey;
+        }
+    }
+
+    /**
+     * 推送差异并计数
+     */
+    private static final class Join<T> implements DiffSink {
+        private final PathNode root;
+        private final Function<? super T, ?> key;
+        private final DiffOptions options;
+        private final DiffSink sink;
+        private long inserted;
+        private long deleted;
+        private long modified;
+        private long unchanged;
+        private boolean found;
+
+        Join(String rootName, Function<? super T, ?> key, DiffOptions options, DiffSink sink) {
+            this.root = StringUtils.isNotBlank(rootName) ? PathNode.root(rootName) : null;
+            this.key = Objects.requireNonNull(key, "key");
+            this.options = Objects.requireNonNull(options, "options");
+            this.sink = Objects.requireNonNull(sink, "sink");
+        }
+
+        Object keyOf(T value) {
+            return Objects.requireNonNull(key.apply(Objects.requireNonNull(value, "value")), "key");
+        }
+
+        private PathNode path(Object id, Object value) {
+            final PathNode parent = root != null ? root : DiffPlan.of(value.getClass()).getRoot();
+            return parent.detachedChild(String.valueOf(id));
+        }
+
+        void inserted(Object id, T value) {
+            inserted++;
+            sink.accept(new DiffPair<>(path(id, value), null, value));
+        }
+
+        void deleted(Object id, T value) {
+            deleted++;
+            sink.accept(new DiffPair<>(path(id, value), value, null));
+        }
+
+        @SuppressWarnings("unchecked")
+        void matched(Object id, T lhs, T rhs) {
+            final PathNode path = path(id, lhs);
+            if (lhs.getClass() != rhs.getClass()) {
+                modified++;
+                sink.accept(new DiffPair<>(path, lhs, rhs));
+                return;
+            }
+            found = false;
+            new ReflectionDiffBuilder<>(path, lhs, rhs, (Class<T>) lhs.getClass()).withOptions(options).diff(this);
+            if (found) {
+                modified++;
+            } else {
+                unchanged++;
+            }
+        }
+
+        @Override
+        public void accept(DiffPair<?> pair) {
+            found = true;
+            sink.accept(pair);
+        }
+
+        @Override
+        public boolean isDone() {
+            return sink.isDone();
+        }
+
+        @Override
+        public boolean needsValues() {
+            return sink.needsValues();
+        }
+
+        BulkDiffResult result() {
+            return new BulkDiffResult(inserted, deleted, modified, unchanged);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.example;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * {@link BulkDiff} 一次比较的统计，提前停止时只统计已经比较的对象
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public final class BulkDiffResult {
+    /**
+     * 只在右侧出现的对象数
+     */
+    private final long inserted;
+    /**
+     * 只在左侧出现的对象数
+     */
+    private final long deleted;
+    /**
+     * 两侧都出现且存在差异的对象数
+     */
+    private final long modified;
+    /**
+     * 两侧都出现且没有差异的对象数
+     */
+    private final long unchanged;
+}
@@ -0,0 +1,15 @@
+package org.example;
+
+/**
+ * 针对单个类的字段比较器
+ * <p>
+ * 基础类型字段按值比较，值不同时回调 {@link FieldVisitor}；对象字段引用不同时回调，由
+ * {@link DiffDetailBuilder} 继续比较。{@link ReflectionDiffBuilder} 在类存在比较器时委托给它，否则逐字段反射比较。
+ *
+ * @param <T> 要比较的类型
+ */
+@FunctionalInterface
+public interface ClassDiffer<T> {
+
+    void diff(T left, T right, FieldVisitor visitor);
+}
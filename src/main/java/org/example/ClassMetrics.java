@@ -0,0 +1,32 @@
+package org.example;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 一个类的比较统计快照
+ */
+@Getter
+@AllArgsConstructor
+public final class ClassMetrics {
+    /**
+     * 比较的次数，包括作为子对象被比较
+     */
+    private final long compared;
+    /**
+     * 读取的字段数
+     */
+    private final long fieldsVisited;
+    /**
+     * 两侧不同、继续比较的字段数
+     */
+    private final long fieldsDiffering;
+    /**
+     * 作为顶层对象比较的总耗时，纳秒
+     */
+    private final long totalNanos;
+    /**
+     * 作为顶层对象比较耗时的直方图
+     */
+    private final long[] latencyHistogram;
+}
@@ -0,0 +1,29 @@
+package org.example;
+
+/**
+ * 集合元素的匹配方式
+ */
+public enum CollectionDiffMode {
+    /**
+     * 元素类型有 {@link DiffKey} 字段时按 {@link #KEY}，否则按 {@link #INDEX}
+     */
+    AUTO,
+    /**
+     * 按下标逐个比较，多出的元素记为新增或删除
+     */
+    INDEX,
+    /**
+     * 按元素的 {@link DiffKey} 字段建立哈希索引匹配，路径为 {@code 集合路径-键}，
+     * 未匹配的元素记为新增或删除，匹配的元素继续比较
+     */
+    KEY,
+    /**
+     * 按元素的 {@code equals}/{@code hashCode} 匹配，只报告新增和删除的元素，不关心顺序
+     */
+    HASH,
+    /**
+     * 按 Myers 差分算法求最长公共子序列，保持顺序；在中间插入或删除元素不会让后续元素全部错位。
+     * 相邻的删除与新增按位置配对后继续比较
+     */
+    LCS
+}
@@ -0,0 +1,68 @@
+package org.example;
+
+import org.apache.commons.lang3.ClassUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 按类注册的 {@link ValueComparator}，不可变，通过 {@link DiffOptions#getComparators()} 使用
+ * <pre>
+ * ComparatorRegistry comparators = ComparatorRegistry.builder()
+ *         .register(BigDecimal.class, ValueComparator.byCompareTo())
+ *         .register(double.class, ValueComparator.tolerance(1e-9))
+ *         .build();
+ * </pre>
+ * 只按值的实际类型精确匹配，不匹配子类；基础类型注册到对应的包装类型
+ */
+public final class ComparatorRegistry {
+
+    public static final ComparatorRegistry EMPTY = new ComparatorRegistry(new HashMap<>());
+
+    private final Map<Class<?>, ValueComparator<Object>> comparators;
+
+    private ComparatorRegistry(Map<Class<?>, ValueComparator<Object>> comparators) {
+        this.comparators = comparators;
+    }
+
+    public static Builder builder() {
+        return new Builder(new HashMap<>());
+    }
+
+    public Builder toBuilder() {
+        return new Builder(new HashMap<>(comparators));
+    }
+
+    /**
+     * @param type 值的实际类型
+     * @return 注册的比较器，没有时为 {@code null}
+     */
+    public ValueComparator<Object> get(Class<?> type) {
+        return comparators.get(type);
+    }
+
+    public boolean isEmpty() {
+        return comparators.isEmpty();
+    }
+
+    public static final class Builder {
+        private final Map<Class<?>, ValueComparator<Object>> comparators;
+
+        private Builder(Map<Class<?>, ValueComparator<Object>> comparators) {
+            this.comparators = comparators;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> Builder register(Class<T> type, ValueComparator<? super T> comparator) {
+            Objects.requireNonNull(type, "type");
+            Objects.requireNonNull(comparator, "comparator");
+            comparators.put(ClassUtils.primitiveToWrapper(type), (ValueComparator<Object>) comparator);
+            return this;
+        }
+
+        public ComparatorRegistry build() {
+            return comparators.isEmpty() ? EMPTY : new ComparatorRegistry(new HashMap<>(comparators));
+        }
+    }
+}
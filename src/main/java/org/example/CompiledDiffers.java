@@ -0,0 +1,136 @@
+package org.example;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * 为 {@link DiffStrategy#COMPILED} 生成 {@link ClassDiffer}
+ * <p>
+ * 每个字段的读取、比较和回调被组合成一棵 {@link MethodHandle} 树，整个类只有一个入口句柄，省去逐个字段的循环和分派。
+ * 入口句柄保存在实例字段中，对 JIT 来说不是常量，调用时仍要经过一次 {@link MethodHandle#invokeExact} 的间接调用，
+ * 句柄树内部能否内联取决于 JIT 对该调用点的优化。
+ */
+final class CompiledDiffers {
+
+    private static final MethodType DIFF_TYPE = MethodType.methodType(void.class, Object.class, Object.class, FieldVisitor.class);
+
+    private static final MethodHandle VISIT;
+
+    private static final MethodHandle NOOP = MethodHandles.empty(DIFF_TYPE);
+
+    static {
+        try {
+            VISIT = MethodHandles.lookup().findVirtual(FieldVisitor.class, "visit",
+                    MethodType.methodType(void.class, int.class, Object.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private CompiledDiffers() {
+    }
+
+    /**
+     * 编译类的比较器
+     *
+     * @param plan 比较计划
+     * @return 比较器，无法编译时返回 {@code null}
+     */
+    static ClassDiffer<Object> compile(DiffPlan plan) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(plan.getType(), MethodHandles.lookup());
+            MethodHandle handle = NOOP;
+            // 从最后一个字段开始向前折叠，调用顺序与字段顺序一致
+            for (int i = plan.getFields().size() - 1; i >= 0; i--) {
+                FieldPlan fieldPlan = plan.getFields().get(i);
+                MethodHandle step = step(lookup, fieldPlan, i);
+                handle = MethodHandles.foldArguments(handle, step);
+            }
+            return new CompiledDiffer(handle);
+        } catch (IllegalAccessException | NoSuchMethodException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 单个字段：{@code if (!same(get(l), get(r))) visitor.visit(index, get(l), get(r))}
+     */
+    private static MethodHandle step(MethodHandles.Lookup lookup, FieldPlan fieldPlan, int index) throws IllegalAccessException, NoSuchMethodException {
+        Field field = fieldPlan.getField();
+        MethodHandle getter = lookup.unreflectGetter(field);
+        Class<?> type = field.getType();
+        Class<?> comparedType = type.isPrimitive() ? type : Object.class;
+
+        MethodHandle typedGetter = getter.asType(MethodType.methodType(comparedType, Object.class));
+        MethodHandle same = MethodHandles.lookup().findStatic(CompiledDiffers.class, "same",
+                MethodType.methodType(boolean.class, comparedType, comparedType));
+        // (Object, Object) boolean
+        MethodHandle test = MethodHandles.filterArguments(same, 0, typedGetter, typedGetter);
+        test = MethodHandles.dropArguments(test, 2, FieldVisitor.class);
+
+        MethodHandle boxedGetter = getter.asType(MethodType.methodType(Object.class, Object.class));
+        // (FieldVisitor, Object, Object) void
+        MethodHandle visit = MethodHandles.insertArguments(VISIT, 1, index);
+        visit = MethodHandles.filterArguments(visit, 1, boxedGetter, boxedGetter);
+        visit = MethodHandles.permuteArguments(visit, DIFF_TYPE, 2, 0, 1);
+
+        return MethodHandles.guardWithTest(test, NOOP, visit);
+    }
+
+    private static boolean same(Object left, Object right) {
+        return left == right;
+    }
+
+    private static boolean same(int left, int right) {
+        return left == right;
+    }
+
+    private static boolean same(long left, long right) {
+        return left == right;
+    }
+
+    private static boolean same(double left, double right) {
+        return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+    }
+
+    private static boolean same(float left, float right) {
+        return Float.floatToIntBits(left) == Float.floatToIntBits(right);
+    }
+
+    private static boolean same(boolean left, boolean right) {
+        return left == right;
+    }
+
+    private static boolean same(byte left, byte right) {
+        return left == right;
+    }
+
+    private static boolean same(short left, short right) {
+        return left == right;
+    }
+
+    private static boolean same(char left, char right) {
+        return left == right;
+    }
+
+    private static final class CompiledDiffer implements ClassDiffer<Object> {
+        private final MethodHandle handle;
+
+        CompiledDiffer(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public void diff(Object left, Object right, FieldVisitor visitor) {
+            try {
+                handle.invokeExact(left, right, visitor);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
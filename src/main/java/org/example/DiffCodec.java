@@ -0,0 +1,410 @@
+package org.example;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+/**
+ * 比较结果的二进制格式，用于存储和传输
+ * <pre>
+ * 头部    int 魔数 | byte 版本 | 根名称
+ * 路径表  每条路径只保存一次
+ * 差异    varint 路径序号 | 左值 | 右值
+ * 索引    int 路径偏移 * 路径数 | int 差异偏移 * 差异数
+ * 尾部    int 路径数 | int 差异数 | int 索引偏移 | int 魔数
+ * </pre>
+ * 整数使用 zigzag varint，字符串为 varint 长度加 UTF-8。值以类型标记开头，支持包装类型、字符串、
+ * {@link BigInteger}、{@link BigDecimal}、枚举、基础类型数组、对象数组、集合和 Map。枚举保存类名和常量名，
+ * 其他类型保存类名和 {@link Object#toString()}，读回为 {@link OpaqueValue}。
+ * 除 {@link SortedSet}、{@link SortedMap} 外的 Set 和 Map 按元素编码的字节顺序写入，内容相同的两个值编码也相同。
+ * <p>
+ * 读取见 {@link EncodedDiffs}，通过尾部的索引按需解码，不需要整体反序列化
+ */
+public enum DiffCodec {
+    ;
+
+    static final int MAGIC = 0x44494646;
+
+    static final byte VERSION = 2;
+
+    static final int FOOTER_SIZE = 16;
+
+    static final byte NULL = 0;
+    static final byte FALSE = 1;
+    static final byte TRUE = 2;
+    static final byte BYTE = 3;
+    static final byte SHORT = 4;
+    static final byte CHAR = 5;
+    static final byte INT = 6;
+    static final byte LONG = 7;
+    static final byte FLOAT = 8;
+    static final byte DOUBLE = 9;
+    static final byte STRING = 10;
+    static final byte BIG_INTEGER = 11;
+    static final byte BIG_DECIMAL = 12;
+    static final byte BOOLEAN_ARRAY = 13;
+    static final byte BYTE_ARRAY = 14;
+    static final byte SHORT_ARRAY = 15;
+    static final byte CHAR_ARRAY = 16;
+    static final byte INT_ARRAY = 17;
+    static final byte LONG_ARRAY = 18;
+    static final byte FLOAT_ARRAY = 19;
+    static final byte DOUBLE_ARRAY = 20;
+    static final byte OBJECT_ARRAY = 21;
+    static final byte LIST = 22;
+    static final byte MAP = 23;
+    static final byte OPAQUE = 24;
+    static final byte ENUM = 25;
+
+    /**
+     * 编码比较结果
+     *
+     * @param result 比较结果
+     * @return 编码后的内容，position 为 0
+     */
+    public static ByteBuffer encode(DiffDetailResult<?> result) {
+        return encode(result.getFieldName(), result.getDiffs());
+    }
+
+    /**
+     * 编码一组差异
+     *
+     * @param rootName 根名称，可以为 {@code null}
+     * @param diffs    差异
+     * @return 编码后的内容，position 为 0
+     */
+    public static ByteBuffer encode(String rootName, List<? extends DiffPair<?>> diffs) {
+        Objects.requireNonNull(diffs, "diffs");
+        final Output out = new Output(64 + diffs.size() * 16);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeNullableString(rootName);
+
+        final Map<String, Integer> pathIndex = new HashMap<>();
+        final int[] diffPaths = new int[diffs.size()];
+        int[] pathOffsets = new int[16];
+        for (int i = 0; i < diffs.size(); i++) {
+            final String path = diffs.get(i).path();
+            Integer index = pathIndex.get(path);
+            if (index == null) {
+                index = pathIndex.size();
+                pathIndex.put(path, index);
+                if (index == pathOffsets.length) {
+                    pathOffsets = Arrays.copyOf(pathOffsets, index * 2);
+                }
+                pathOffsets[index] = out.size();
+                out.writeString(path);
+            }
+            diffPaths[i] = index;
+        }
+
+        final int[] diffOffsets = new int[diffs.size()];
+        for (int i = 0; i < diffs.size(); i++) {
+            final DiffPair<?> pair = diffs.get(i);
+            diffOffsets[i] = out.size();
+            out.writeVarint(diffPaths[i]);
+            out.writeValue(pair.left());
+            out.writeValue(pair.right());
+        }
+
+        final int indexOffset = out.size();
+        for (int i = 0; i < pathIndex.size(); i++) {
+            out.writeInt(pathOffsets[i]);
+        }
+        for (final int offset : diffOffsets) {
+            out.writeInt(offset);
+        }
+        out.writeInt(pathIndex.size());
+        out.writeInt(diffs.size());
+        out.writeInt(indexOffset);
+        out.writeInt(MAGIC);
+        return out.toByteBuffer();
+    }
+
+    /**
+     * 编码比较结果并写入通道，如 {@link java.nio.channels.FileChannel}
+     *
+     * @param result  比较结果
+     * @param channel 通道
+     * @throws IOException 写入失败
+     */
+    public static void write(DiffDetailResult<?> result, WritableByteChannel channel) throws IOException {
+        final ByteBuffer buffer = encode(result);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * 可扩容的输出缓冲区，多字节整数为大端序
+     */
+    static final class Output {
+        /**
+         * 数值相等的 {@link BigDecimal} 是否编码相同，为 {@code true} 时去掉末尾的 0，读回的值不保留原来的精度
+         */
+        private final boolean canonical;
+        private byte[] bytes;
+        private int size;
+
+        Output(int capacity) {
+            this(capacity, false);
+        }
+
+        Output(int capacity, boolean canonical) {
+            this.bytes = new byte[capacity];
+            this.canonical = canonical;
+        }
+
+        int size() {
+            return size;
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(bytes, 0, size).slice();
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void writeInt(int offset, int value) {
+            bytes[offset] = (byte) (value >>> 24);
+            bytes[offset + 1] = (byte) (value >>> 16);
+            bytes[offset + 2] = (byte) (value >>> 8);
+            bytes[offset + 3] = (byte) value;
+        }
+
+        private void ensureCapacity(int additional) {
+            if (size + additional > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + additional, bytes.length * 2));
+            }
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(4);
+            bytes[size++] = (byte) (value >>> 24);
+            bytes[size++] = (byte) (value >>> 16);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeSigned(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeBytes(byte[] value) {
+            writeVarint(value.length);
+            ensureCapacity(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        void writeString(String value) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void writeNullableString(String value) {
+            if (value == null) {
+                writeByte(NULL);
+            } else {
+                writeByte(STRING);
+                writeString(value);
+            }
+        }
+
+        void writeValue(Object value) {
+            if (value == null) {
+                writeByte(NULL);
+            } else if (value instanceof Boolean) {
+                writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Byte) {
+                writeByte(BYTE);
+                writeByte((Byte) value);
+            } else if (value instanceof Short) {
+                writeByte(SHORT);
+                writeSigned((Short) value);
+            } else if (value instanceof Character) {
+                writeByte(CHAR);
+                writeVarint((Character) value);
+            } else if (value instanceof Integer) {
+                writeByte(INT);
+                writeSigned((Integer) value);
+            } else if (value instanceof Long) {
+                writeByte(LONG);
+                writeSigned((Long) value);
+            } else if (value instanceof Float) {
+                writeByte(FLOAT);
+                writeInt(Float.floatToRawIntBits((Float) value));
+            } else if (value instanceof Double) {
+                writeByte(DOUBLE);
+                writeLong(Double.doubleToRawLongBits((Double) value));
+            } else if (value instanceof String) {
+                writeByte(STRING);
+                writeString((String) value);
+            } else if (value instanceof BigInteger) {
+                writeByte(BIG_INTEGER);
+                writeBytes(((BigInteger) value).toByteArray());
+            } else if (value instanceof BigDecimal) {
+                final BigDecimal decimal = canonical ? ((BigDecimal) value).stripTrailingZeros() : (BigDecimal) value;
+                writeByte(BIG_DECIMAL);
+                writeSigned(decimal.scale());
+                writeBytes(decimal.unscaledValue().toByteArray());
+            } else if (value.getClass().isArray()) {
+                writeArray(value);
+            } else if (value instanceof Set && !(value instanceof SortedSet)) {
+                writeByte(LIST);
+                writeVarint(((Set<?>) value).size());
+                final List<byte[]> elements = new ArrayList<>();
+                for (final Object element : (Set<?>) value) {
+                    final Output one = new Output(16, canonical);
+                    one.writeValue(element);
+                    elements.add(one.toByteArray());
+                }
+                writeSorted(elements);
+            } else if (value instanceof Collection) {
+                writeByte(LIST);
+                writeVarint(((Collection<?>) value).size());
+                for (final Object element : (Collection<?>) value) {
+                    writeValue(element);
+                }
+            } else if (value instanceof Map && !(value instanceof SortedMap)) {
+                writeByte(MAP);
+                writeVarint(((Map<?, ?>) value).size());
+                final List<byte[]> entries = new ArrayList<>();
+                for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    final Output one = new Output(16, canonical);
+                    one.writeValue(entry.getKey());
+                    one.writeValue(entry.getValue());
+                    entries.add(one.toByteArray());
+                }
+                writeSorted(entries);
+            } else if (value instanceof Map) {
+                writeByte(MAP);
+                writeVarint(((Map<?, ?>) value).size());
+                for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    writeValue(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            } else if (value instanceof Enum) {
+                writeByte(ENUM);
+                writeString(((Enum<?>) value).getDeclaringClass().getName());
+                writeString(((Enum<?>) value).name());
+            } else {
+                writeByte(OPAQUE);
+                writeString(value.getClass().getName());
+                writeString(value.toString());
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        /**
+         * 按无符号字节顺序写入已经编码的元素
+         */
+        private void writeSorted(List<byte[]> encoded) {
+            encoded.sort(Arrays::compareUnsigned);
+            for (final byte[] element : encoded) {
+                ensureCapacity(element.length);
+                System.arraycopy(element, 0, bytes, size, element.length);
+                size += element.length;
+            }
+        }
+
+        private void writeArray(Object value) {
+            if (value instanceof boolean[]) {
+                final boolean[] array = (boolean[]) value;
+                writeByte(BOOLEAN_ARRAY);
+                writeVarint(array.length);
+                for (final boolean element : array) {
+                    writeByte(element ? 1 : 0);
+                }
+            } else if (value instanceof byte[]) {
+                writeByte(BYTE_ARRAY);
+                writeBytes((byte[]) value);
+            } else if (value instanceof short[]) {
+                final short[] array = (short[]) value;
+                writeByte(SHORT_ARRAY);
+                writeVarint(array.length);
+                for (final short element : array) {
+                    writeSigned(element);
+                }
+            } else if (value instanceof char[]) {
+                final char[] array = (char[]) value;
+                writeByte(CHAR_ARRAY);
+                writeVarint(array.length);
+                for (final char element : array) {
+                    writeVarint(element);
+                }
+            } else if (value instanceof int[]) {
+                final int[] array = (int[]) value;
+                writeByte(INT_ARRAY);
+                writeVarint(array.length);
+                for (final int element : array) {
+                    writeSigned(element);
+                }
+            } else if (value instanceof long[]) {
+                final long[] array = (long[]) value;
+                writeByte(LONG_ARRAY);
+                writeVarint(array.length);
+                for (final long element : array) {
+                    writeSigned(element);
+                }
+            } else if (value instanceof float[]) {
+                final float[] array = (float[]) value;
+                writeByte(FLOAT_ARRAY);
+                writeVarint(array.length);
+                for (final float element : array) {
+                    writeInt(Float.floatToRawIntBits(element));
+                }
+            } else if (value instanceof double[]) {
+                final double[] array = (double[]) value;
+                writeByte(DOUBLE_ARRAY);
+                writeVarint(array.length);
+                for (final double element : array) {
+                    writeLong(Double.doubleToRawLongBits(element));
+                }
+            } else {
+                final Object[] array = (Object[]) value;
+                writeByte(OBJECT_ARRAY);
+                writeVarint(array.length);
+                for (final Object element : array) {
+                    writeValue(element);
+                }
+            }
+        }
+    }
+}
@@ -1,9 +1,8 @@
 package org.example;
 
 
+import lombok.AccessLevel;
 import lombok.Getter;
-import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.lang3.ObjectUtils;
 
 import java.util.*;
 
@@ -16,227 +15,841 @@ import java.util.*;
  */
 @Getter
 public class DiffDetailBuilder<T> {
-    private final List<DiffPair<?>> diffs;
+    /**
+     * 第一次用到时才创建，没有差异且只判断是否相等时不分配
+     */
+    private List<DiffPair<?>> diffs;
     private final T left;
     private final T right;
-    private final String rootName;
-    private final List<ReflectionDiffBuilder<?>> reflectionDiffBuilders = new ArrayList<>();
+    @Getter(AccessLevel.NONE)
+    private final PathNode root;
+    private List<ReflectionDiffBuilder<?>> reflectionDiffBuilders;
+    private DiffOptions options = DiffOptions.DEFAULT;
+    /**
+     * 为空时收集到 {@link #getDiffs()}
+     */
+    @Getter(AccessLevel.NONE)
+    private DiffSink sink;
+    /**
+     * 同一次比较中所有层级共享，记录已经比较完的子对象的结果
+     */
+    @Getter(AccessLevel.NONE)
+    private VisitedPairs visited;
+    /**
+     * 同一次比较中所有层级共享，记录已经算过的指纹，见 {@link DiffFingerprints#memo(boolean)}
+     */
+    @Getter(AccessLevel.NONE)
+    private Map<Object, Long> fingerprinted;
+    /**
+     * 当前子对象的嵌套层数，根为 0
+     */
+    @Getter(AccessLevel.NONE)
+    private int depth;
+    /**
+     * 上一层，用于判断循环引用；根为 {@code null}
+     */
+    @Getter(AccessLevel.NONE)
+    private DiffDetailBuilder<?> parent;
+    /**
+     * 本层的结果是否可以在其他路径下复用，按路径过滤时结果与路径有关，不能复用
+     */
+    @Getter(AccessLevel.NONE)
+    private boolean reusable;
+    /**
+     * 是否记录本层的结果供其他路径复用，只有第二次遇到同一对子对象时才记录
+     */
+    @Getter(AccessLevel.NONE)
+    private boolean recording;
+    /**
+     * 本层自己发现的差异，子对象的差异在子对象的结果中
+     */
+    @Getter(AccessLevel.NONE)
+    private List<DiffPair<?>> own;
+    /**
+     * 跳过了指向外层对象的循环引用，结果与所在位置有关，不能复用
+     */
+    @Getter(AccessLevel.NONE)
+    private boolean cyclic;
+    /**
+     * 有子对象因为超过最大层数没有拆分
+     */
+    @Getter(AccessLevel.NONE)
+    private boolean limited;
+    /**
+     * 本层比较完成后的结果，不能复用时为 {@code null}
+     */
+    @Getter(AccessLevel.NONE)
+    private Shared shared;
 
 
     public DiffDetailBuilder(String rootName, final T left, final T right) {
-        this.diffs = new ArrayList<>();
+        this(PathNode.detached(rootName), left, right);
+    }
+
+    DiffDetailBuilder(PathNode root, final T left, final T right) {
         this.left = left;
         this.right = right;
-        this.rootName = rootName;
+        this.root = root;
+    }
+
+    public String getRootName() {
+        return root.getPath();
+    }
+
+    public List<DiffPair<?>> getDiffs() {
+        if (diffs == null) {
+            diffs = new ArrayList<>();
+        }
+        return diffs;
+    }
+
+    public List<ReflectionDiffBuilder<?>> getReflectionDiffBuilders() {
+        if (reflectionDiffBuilders == null) {
+            reflectionDiffBuilders = new ArrayList<>();
+        }
+        return reflectionDiffBuilders;
+    }
+
+    /**
+     * 设置比较配置，需要在 append 之前调用
+     *
+     * @param options 配置
+     * @return this
+     */
+    public DiffDetailBuilder<T> withOptions(DiffOptions options) {
+        this.options = Objects.requireNonNull(options, "options");
+        return this;
+    }
+
+    /**
+     * 将差异推送给指定的接收者，不再收集到 {@link #getDiffs()} 中，子对象的比较也使用同一个接收者。需要在 append 之前调用
+     *
+     * @param sink 接收者
+     * @return this
+     */
+    public DiffDetailBuilder<T> withSink(DiffSink sink) {
+        this.sink = Objects.requireNonNull(sink, "sink");
+        return this;
+    }
+
+    /**
+     * 使用已有的已比较对象表，由 {@link DiffEngine} 复用，需要在 append 之前调用
+     */
+    DiffDetailBuilder<T> withVisited(VisitedPairs visited) {
+        this.visited = visited;
+        return this;
+    }
+
+    /**
+     * 作为 {@code parent} 的子对象比较，沿用其配置和已比较对象表
+     *
+     * @param parent 上一层
+     * @return this
+     */
+    DiffDetailBuilder<T> nestedIn(DiffDetailBuilder<?> parent) {
+        this.options = parent.options;
+        this.visited = parent.visited();
+        this.fingerprinted = parent.fingerprinted();
+        this.depth = parent.depth + 1;
+        this.parent = parent;
+        this.reusable = !options.getFilter().hasPathRules();
+        if (options.getMetrics() != null) {
+            options.getMetrics().recordDepth(depth);
+        }
+        return this;
+    }
+
+    /**
+     * @return 当前子对象的嵌套层数，根为 0
+     */
+    int depth() {
+        return depth;
+    }
+
+    private VisitedPairs visited() {
+        if (visited == null) {
+            visited = VisitedPairs.create(options.isParallel());
+        }
+        return visited;
+    }
+
+    private Map<Object, Long> fingerprinted() {
+        if (fingerprinted == null) {
+            fingerprinted = DiffFingerprints.memo(options.isParallel());
+        }
+        return fingerprinted;
+    }
+
+    /**
+     * @return 设置了指纹且两侧指纹相同
+     */
+    boolean sameFingerprint(Object lhs, Object rhs) {
+        final DiffFingerprints fingerprints = options.getFingerprints();
+        return fingerprints != null && fingerprints.same(lhs, rhs, fingerprinted());
+    }
+
+    /**
+     * 同一对子对象已经在其他路径下比较完时，把结果换到当前路径下推送，不再比较。
+     * 第一次遇到时只做标记，第二次遇到时重新比较并记录结果，之后复用；只出现一次的子对象不保留差异，
+     * 记录的差异总数也有上限，超过后重新比较
+     *
+     * @return 是否复用了之前的结果
+     */
+    boolean replayShared() {
+        if (!reusable) {
+            return false;
+        }
+        final VisitedPairs visited = visited();
+        final Shared previous = visited.get(left, right);
+        if (previous == null) {
+            visited.put(left, right, Shared.SEEN);
+            return false;
+        }
+        if (previous == Shared.SEEN) {
+            recording = true;
+            return false;
+        }
+        if (!previous.fits(depth, options.getMaxDepth())) {
+            return false;
+        }
+        replay(previous, root.getPath());
+        shared = cyclic ? null : previous;
+        return true;
+    }
+
+    private void replay(Shared result, String path) {
+        for (DiffPair<?> pair : result.diffs) {
+            if (isDone()) {
+                return;
+            }
+            forward(new DiffPair<>(rebase(pair.path(), result.path, path), pair.left(), pair.right()));
+        }
+        for (Shared child : result.children) {
+            if (isDone()) {
+                return;
+            }
+            // 与重新比较一致：正在比较的外层对象不再展开
+            if (onStack(child.left, child.right)) {
+                cyclic = true;
+                continue;
+            }
+            replay(child, rebase(child.path, result.path, path));
+        }
+    }
+
+    private static String rebase(String path, String from, String to) {
+        if (!from.isEmpty() && path.startsWith(from)) {
+            return to + path.substring(from.length());
+        }
+        return PathUtils.join("-", to, path);
+    }
+
+    /**
+     * 本层和所有子对象比较完成后调用，结果完整且与所在位置无关时记录下来
+     */
+    void share() {
+        if (!recording || cyclic || isDone()) {
+            return;
+        }
+        List<Shared> children = Collections.emptyList();
+        int height = 0;
+        boolean childLimited = false;
+        if (reflectionDiffBuilders != null && !reflectionDiffBuilders.isEmpty()) {
+            children = new ArrayList<>(reflectionDiffBuilders.size());
+            for (ReflectionDiffBuilder<?> builder : reflectionDiffBuilders) {
+                final Shared child = builder.shared();
+                if (child == null) {
+                    return;
+                }
+                children.add(child);
+                height = Math.max(height, child.height + 1);
+                childLimited |= child.limited;
+            }
+        }
+        final List<DiffPair<?>> diffs = own == null ? Collections.emptyList() : own;
+        if (!visited().retain(diffs.size())) {
+            return;
+        }
+        shared = new Shared(left, right, root.getPath(), diffs, children, depth, height, limited || childLimited);
+        visited().put(left, right, shared);
+    }
+
+    /**
+     * @return 本层的结果，不能复用时为 {@code null}
+     */
+    Shared shared() {
+        return shared;
+    }
+
+    /**
+     * (左, 右) 是否为当前正在比较的外层对象
+     */
+    private boolean onStack(Object lhs, Object rhs) {
+        for (DiffDetailBuilder<?> builder = this; builder != null; builder = builder.parent) {
+            if (builder.left == lhs && builder.right == rhs) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public DiffDetailResult<T> build() {
-        return new DiffDetailResult<>(rootName, null,
-                left, right, diffs, reflectionDiffBuilders);
+        appendNested();
+        return new DiffDetailResult<>(getRootName(), null,
+                left, right, getDiffs(), null, options);
+    }
+
+    /**
+     * 比较 append 过程中遇到的子对象，差异推送给当前的接收者
+     */
+    void appendNested() {
+        if (reflectionDiffBuilders == null || reflectionDiffBuilders.isEmpty()) {
+            return;
+        }
+        ParallelDiff.appendAll(reflectionDiffBuilders, sink != null ? sink : DiffSink.toCollection(getDiffs()), options);
+    }
+
+    /**
+     * @return 接收者是否已不需要更多差异
+     */
+    boolean isDone() {
+        return sink != null && sink.isDone();
+    }
+
+    private boolean valuesNeeded() {
+        return sink == null || sink.needsValues();
+    }
+
+    void emit(DiffPair<?> pair) {
+        if (recording) {
+            if (own == null) {
+                own = new ArrayList<>();
+            }
+            own.add(pair);
+        }
+        forward(pair);
+    }
+
+    private void forward(DiffPair<?> pair) {
+        if (options.getMetrics() != null) {
+            options.getMetrics().recordDiff();
+        }
+        if (sink == null) {
+            getDiffs().add(pair);
+        } else {
+            sink.accept(pair);
+        }
+    }
+
+    /**
+     * 接收者不需要左右值时只推送路径
+     */
+    private static DiffPair<Object> pathOnly(PathNode path) {
+        return new DiffPair<>(path, null, null);
     }
 
     /**
      * Test if two {@link Objects}s are equal.
      *
+     * @param path      the path of the values
      * @param lhs       the left-hand {@link Object}
      * @param rhs       the right-hand {@link Object}
      * @return this
      * @throws NullPointerException if field name is {@code null}
      */
-    public DiffDetailBuilder<T> append(final String path,  final Object lhs,
+    public DiffDetailBuilder<T> append(final String path, final Object lhs,
                                        final Object rhs) {
         validateFieldNameNotNull(path);
+        return append(PathNode.detached(path), lhs, rhs);
+    }
 
-        if (lhs == rhs) {
+    /**
+     * Test if two {@link Objects}s are equal.
+     *
+     * @param path      the path node of the values, its string form is only built when a difference is read
+     * @param lhs       the left-hand {@link Object}
+     * @param rhs       the right-hand {@link Object}
+     * @return this
+     * @throws NullPointerException if path is {@code null}
+     */
+    public DiffDetailBuilder<T> append(final PathNode path,  final Object lhs,
+                                       final Object rhs) {
+        return append(path, lhs, rhs, false);
+    }
+
+    /**
+     * @param unequal 调用方已经用 {@code equals} 确认两侧不相等，不再重复调用
+     */
+    private DiffDetailBuilder<T> append(final PathNode path, final Object lhs, final Object rhs, final boolean unequal) {
+        validateFieldNameNotNull(path);
+
+        if (lhs == rhs || isDone()) {
             return this;
         }
 
-        final Object objectToTest;
         // rhs cannot be null, as lhs != rhs
-        objectToTest = Objects.requireNonNullElse(lhs, rhs);
+        final Object objectToTest = Objects.requireNonNullElse(lhs, rhs);
+        final Class<?> type = objectToTest.getClass();
+
+        if (!options.getComparators().isEmpty() && lhs != null && rhs != null && lhs.getClass() == rhs.getClass()) {
+            final ValueComparator<Object> comparator = options.getComparators().get(type);
+            if (comparator != null) {
+                if (!comparator.same(lhs, rhs)) {
+                    emit(new DiffPair<>(path, lhs, rhs));
+                }
+                return this;
+            }
+        }
 
-        if (ObjectUtils.isArray(objectToTest)) {
-            if (objectToTest instanceof boolean[]) {
+        final ValueKind kind = ValueKind.of(type);
+        switch (kind) {
+            case BOOLEAN_ARRAY:
                 return append(path, (boolean[]) lhs, (boolean[]) rhs);
-            }
-            if (objectToTest instanceof byte[]) {
+            case BYTE_ARRAY:
                 return append(path, (byte[]) lhs, (byte[]) rhs);
-            }
-            if (objectToTest instanceof char[]) {
+            case CHAR_ARRAY:
                 return append(path, (char[]) lhs, (char[]) rhs);
-            }
-            if (objectToTest instanceof double[]) {
+            case DOUBLE_ARRAY:
                 return append(path, (double[]) lhs, (double[]) rhs);
-            }
-            if (objectToTest instanceof float[]) {
+            case FLOAT_ARRAY:
                 return append(path, (float[]) lhs, (float[]) rhs);
-            }
-            if (objectToTest instanceof int[]) {
+            case INT_ARRAY:
                 return append(path, (int[]) lhs, (int[]) rhs);
-            }
-            if (objectToTest instanceof long[]) {
+            case LONG_ARRAY:
                 return append(path, (long[]) lhs, (long[]) rhs);
-            }
-            if (objectToTest instanceof short[]) {
+            case SHORT_ARRAY:
                 return append(path, (short[]) lhs, (short[]) rhs);
-            }
-
-            return append(path, (Object[]) lhs, (Object[]) rhs);
+            case OBJECT_ARRAY:
+                return append(path, (Object[]) lhs, (Object[]) rhs);
+            case MAP:
+                // Map 在逐个键比较时就能判断是否相等，不先调用 equals
+                return append(path, (Map<?, ?>) lhs, (Map<?, ?>) rhs);
+            default:
+                break;
         }
 
         // Not array type
-        if (Objects.equals(lhs, rhs)) {
+        if (!unequal && Objects.equals(lhs, rhs)) {
+            return this;
+        }
+        if (kind == ValueKind.SCALAR && lhs instanceof CharSequence && rhs instanceof CharSequence
+                && Math.max(((CharSequence) lhs).length(), ((CharSequence) rhs).length()) >= options.getTextThreshold()) {
+            appendText(path, (CharSequence) lhs, (CharSequence) rhs);
             return this;
         }
         DiffPair<Object> pair = new DiffPair<>(path, lhs, rhs);
-        if (objectToTest instanceof Number || objectToTest instanceof CharSequence) {
-            this.diffs.add(pair);
+        if (kind == ValueKind.SCALAR) {
+            emit(pair);
             return this;
         }
-        if (objectToTest instanceof Comparable) {
-            if (lhs != null) {
-                @SuppressWarnings("unchecked") int i = ((Comparable<Object>) lhs).compareTo(rhs);
-                if (i != 0) {
-                    this.diffs.add(pair);
-                    return this;
-                }
+        if (kind == ValueKind.COMPARABLE && lhs != null) {
+            @SuppressWarnings("unchecked") int i = ((Comparable<Object>) lhs).compareTo(rhs);
+            if (i != 0) {
+                emit(pair);
+                return this;
             }
         }
         // 如果是集合
-        if (objectToTest instanceof Collection<?>) {
-            if (left == null) {
-                if (right == null) {
-                    return this;
-                }
-                @SuppressWarnings("unchecked") Collection<Object> right1 = (Collection<Object>) right;
-                if (right1.isEmpty()) {
-                    return this;
-                }
-                for (Object next : right1) {
-                    append(path, null, next);
-                }
-                return this;
-            } else if (right == null) {
-                @SuppressWarnings("unchecked") Collection<Object> left1 = (Collection<Object>) left;
-                if (left1.isEmpty()) {
-                    return this;
-                }
-                for (Object next : left1) {
-                    append(path, next, null);
+        if (kind == ValueKind.COLLECTION) {
+            return append(path, (Collection<?>) lhs, (Collection<?>) rhs, CollectionDiffMode.AUTO);
+        }
+        // 一侧为空的对象整体记为新增或删除
+        if (lhs == null || rhs == null) {
+            emit(pair);
+            return this;
+        }
+
+        // 超过最大层数时不再拆分
+        if (depth >= options.getMaxDepth()) {
+            limited = true;
+            emit(pair);
+            return this;
+        }
+        // 指纹相同的子树不再比较
+        if (sameFingerprint(lhs, rhs)) {
+            return this;
+        }
+        // 循环引用：正在比较的外层对象不再比较。共享的子对象在每个路径下都会报告，比较完的结果在其他路径下复用
+        if (onStack(lhs, rhs)) {
+            cyclic = true;
+            return this;
+        }
+        // 最后如果是普通对象，应该进一步拆分
+        ReflectionDiffBuilder<?> reflectionDiffBuilder = new ReflectionDiffBuilder<>(path, lhs, rhs).nestedIn(this);
+        getReflectionDiffBuilders().add(reflectionDiffBuilder);
+        return this;
+    }
+
+    /**
+     * 比较两个集合，一侧为 {@code null} 时整个集合记为一个差异，{@link DiffPatch} 据此区分空集合和 {@code null}
+     *
+     * @param path 集合的路径
+     * @param lhs  左集合
+     * @param rhs  右集合
+     * @param mode 元素的匹配方式
+     * @return this
+     */
+    public DiffDetailBuilder<T> append(final PathNode path, final Collection<?> lhs,
+                                       final Collection<?> rhs, final CollectionDiffMode mode) {
+        validateFieldNameNotNull(path);
+        if (lhs == rhs || isDone()) {
+            return this;
+        }
+        if (lhs == null || rhs == null) {
+            emit(new DiffPair<>(path, lhs, rhs));
+            return this;
+        }
+        if (options.getMetrics() != null) {
+            options.getMetrics().recordCollectionSize(Math.max(lhs.size(), rhs.size()));
+        }
+        final Object[] leftArray = lhs.toArray();
+        final Object[] rightArray = rhs.toArray();
+        switch (resolve(mode, leftArray, rightArray)) {
+            case KEY:
+                appendByKey(path, leftArray, rightArray);
+                break;
+            case HASH:
+                appendByHash(path, leftArray, rightArray);
+                break;
+            case LCS:
+                appendByLcs(path, leftArray, rightArray);
+                break;
+            default:
+                appendByIndex(path, leftArray, rightArray);
+                break;
+        }
+        return this;
+    }
+
+    /**
+     * 按键比较两个 Map，每个键的路径为 {@code Map路径-键}，值继续比较；一侧为 {@code null} 时整个 Map 记为一个差异。
+     * 两侧都是比较器相同的 {@link SortedMap} 时同时遍历两侧有序的键，否则遍历一侧并在另一侧按哈希查找
+     *
+     * @param path Map 的路径
+     * @param lhs  左 Map
+     * @param rhs  右 Map
+     * @return this
+     */
+    public DiffDetailBuilder<T> append(final PathNode path, final Map<?, ?> lhs, final Map<?, ?> rhs) {
+        validateFieldNameNotNull(path);
+        if (lhs == rhs || isDone()) {
+            return this;
+        }
+        if (lhs == null || rhs == null) {
+            emit(new DiffPair<>(path, lhs, rhs));
+            return this;
+        }
+        if (lhs instanceof SortedMap && rhs instanceof SortedMap
+                && Objects.equals(((SortedMap<?, ?>) lhs).comparator(), ((SortedMap<?, ?>) rhs).comparator())) {
+            appendSorted(path, (SortedMap<?, ?>) lhs, (SortedMap<?, ?>) rhs);
+            return this;
+        }
+        for (Map.Entry<?, ?> entry : lhs.entrySet()) {
+            Object key = entry.getKey();
+            Object leftValue = entry.getValue();
+            Object rightValue = rhs.get(key);
+            if (rightValue == null && !rhs.containsKey(key)) {
+                append(keyPath(path, key), leftValue, null);
+            } else if (leftValue != rightValue) {
+                append(keyPath(path, key), leftValue, rightValue);
+            }
+        }
+        for (Map.Entry<?, ?> entry : rhs.entrySet()) {
+            if (!lhs.containsKey(entry.getKey())) {
+                append(keyPath(path, entry.getKey()), null, entry.getValue());
+            }
+        }
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void appendSorted(PathNode path, SortedMap<?, ?> lhs, SortedMap<?, ?> rhs) {
+        Comparator<Object> comparator = (Comparator<Object>) lhs.comparator();
+        if (comparator == null) {
+            comparator = (a, b) -> ((Comparable<Object>) a).compareTo(b);
+        }
+        Iterator<? extends Map.Entry<?, ?>> leftIterator = lhs.entrySet().iterator();
+        Iterator<? extends Map.Entry<?, ?>> rightIterator = rhs.entrySet().iterator();
+        Map.Entry<?, ?> leftEntry = leftIterator.hasNext() ? leftIterator.next() : null;
+        Map.Entry<?, ?> rightEntry = rightIterator.hasNext() ? rightIterator.next() : null;
+        while (leftEntry != null || rightEntry != null) {
+            int compared = leftEntry == null ? 1 : rightEntry == null ? -1 : comparator.compare(leftEntry.getKey(), rightEntry.getKey());
+            if (compared < 0) {
+                append(keyPath(path, leftEntry.getKey()), leftEntry.getValue(), null);
+                leftEntry = leftIterator.hasNext() ? leftIterator.next() : null;
+            } else if (compared > 0) {
+                append(keyPath(path, rightEntry.getKey()), null, rightEntry.getValue());
+                rightEntry = rightIterator.hasNext() ? rightIterator.next() : null;
+            } else {
+                if (leftEntry.getValue() != rightEntry.getValue()) {
+                    append(keyPath(path, leftEntry.getKey()), leftEntry.getValue(), rightEntry.getValue());
                 }
-                return this;
+                leftEntry = leftIterator.hasNext() ? leftIterator.next() : null;
+                rightEntry = rightIterator.hasNext() ? rightIterator.next() : null;
+            }
+        }
+    }
+
+    private static PathNode keyPath(PathNode path, Object key) {
+        return path.detachedChild(String.valueOf(key));
+    }
+
+    private static CollectionDiffMode resolve(CollectionDiffMode mode, Object[] leftArray, Object[] rightArray) {
+        if (mode != CollectionDiffMode.AUTO) {
+            return mode;
+        }
+        Object sample = leftArray.length > 0 ? leftArray[0] : rightArray.length > 0 ? rightArray[0] : null;
+        if (sample != null && DiffPlan.of(sample.getClass()).getKeyField() != null) {
+            return CollectionDiffMode.KEY;
+        }
+        return CollectionDiffMode.INDEX;
+    }
+
+    private void appendByIndex(PathNode path, Object[] leftArray, Object[] rightArray) {
+        int common = Math.min(leftArray.length, rightArray.length);
+        for (int i = 0; i < common; i++) {
+            // append 自己判断是否相等，这里不再先调用 equals
+            append(path, leftArray[i], rightArray[i]);
+        }
+        for (int i = common; i < rightArray.length; i++) {
+            append(path, null, rightArray[i]);
+        }
+        for (int i = common; i < leftArray.length; i++) {
+            append(path, leftArray[i], null);
+        }
+    }
+
+    /**
+     * 以右侧元素的键建立哈希索引，一次遍历左侧完成匹配，重复的键只匹配第一次出现的元素
+     */
+    private void appendByKey(PathNode path, Object[] leftArray, Object[] rightArray) {
+        Map<Object, Integer> rightIndex = new HashMap<>(Math.max(16, rightArray.length * 4 / 3 + 1));
+        for (int i = 0; i < rightArray.length; i++) {
+            rightIndex.putIfAbsent(keyOf(rightArray[i]), i);
+        }
+        boolean[] matched = new boolean[rightArray.length];
+        for (Object leftElement : leftArray) {
+            Object key = keyOf(leftElement);
+            Integer index = rightIndex.get(key);
+            if (index == null || matched[index]) {
+                append(keyPath(path, key), leftElement, null);
             } else {
-                @SuppressWarnings("unchecked") Collection<Object> right1 = (Collection<Object>) lhs;
-                @SuppressWarnings("unchecked") Collection<Object> left1 = (Collection<Object>) rhs;
-                int rightSize = right1.size();
-                int leftSize = left1.size();
-                Object[] rightArray = right1.toArray();
-                Object[] leftArray = left1.toArray();
-                if (leftSize <= rightSize) {
-                    for (int i = 0; i < leftSize; i++) {
-                        if (Objects.equals(leftArray[i], rightArray[i])) {
-                            return this;
-                        }
-                        append(path, leftArray[i], rightArray[i]);
-                    }
-                    for (; leftSize < rightSize; leftSize++) {
-                        append(path, null, rightArray[leftSize]);
-                    }
-                } else {
-                    for (int i = 0; i < rightSize; i++) {
-                        if (Objects.equals(leftArray[i], rightArray[i])) {
-                            return this;
-                        }
-                        append(path, leftArray[i], rightArray[i]);
-                    }
-                    for (; rightSize < leftSize; rightSize++) {
-                        append(path, leftArray[rightSize], null);
-                    }
+                matched[index] = true;
+                // 相等时不创建键路径，不相等时 append 不再调用 equals
+                if (!Objects.equals(leftElement, rightArray[index])) {
+                    append(keyPath(path, key), leftElement, rightArray[index], true);
                 }
-                return this;
             }
         }
+        for (int i = 0; i < rightArray.length; i++) {
+            if (!matched[i]) {
+                append(keyPath(path, keyOf(rightArray[i])), null, rightArray[i]);
+            }
+        }
+    }
+
+    static Object keyOf(Object element) {
+        if (element == null) {
+            return null;
+        }
+        FieldPlan keyField = DiffPlan.of(element.getClass()).getKeyField();
+        return keyField == null ? element : keyField.getAccessor().get(element);
+    }
+
+    /**
+     * 按元素相等匹配，左侧的每个元素抵消右侧一个相等的元素，剩余的记为新增或删除
+     */
+    private void appendByHash(PathNode path, Object[] leftArray, Object[] rightArray) {
+        Map<Object, int[]> leftCounts = new HashMap<>(Math.max(16, leftArray.length * 4 / 3 + 1));
+        for (Object leftElement : leftArray) {
+            leftCounts.computeIfAbsent(leftElement, k -> new int[1])[0]++;
+        }
+        for (Object rightElement : rightArray) {
+            int[] count = leftCounts.get(rightElement);
+            if (count != null && count[0] > 0) {
+                count[0]--;
+            } else {
+                append(path, null, rightElement);
+            }
+        }
+        for (Object leftElement : leftArray) {
+            int[] count = leftCounts.get(leftElement);
+            if (count[0] > 0) {
+                count[0]--;
+                append(path, leftElement, null);
+            }
+        }
+    }
 
-        // 最后如果是普通对象，应该进一步拆分
-        ReflectionDiffBuilder<?> reflectionDiffBuilder = new ReflectionDiffBuilder<>(path, lhs, rhs);
-        reflectionDiffBuilders.add(reflectionDiffBuilder);
-        return this;
+    /**
+     * 按最长公共子序列对齐，两个相同元素之间被删除和新增的元素按位置配对后继续比较
+     */
+    private void appendByLcs(PathNode path, Object[] leftArray, Object[] rightArray) {
+        LcsScript script = new LcsScript(path, leftArray, rightArray);
+        MyersDiff.diff(leftArray.length, rightArray.length,
+                (a, b) -> Objects.equals(leftArray[a], rightArray[b]), script);
+        script.flush();
+    }
+
+    private final class LcsScript implements MyersDiff.Script {
+        private final PathNode path;
+        private final Object[] leftArray;
+        private final Object[] rightArray;
+        private final int[] deleted;
+        private final int[] inserted;
+        private int deletedCount;
+        private int insertedCount;
+
+        LcsScript(PathNode path, Object[] leftArray, Object[] rightArray) {
+            this.path = path;
+            this.leftArray = leftArray;
+            this.rightArray = rightArray;
+            this.deleted = new int[leftArray.length];
+            this.inserted = new int[rightArray.length];
+        }
+
+        @Override
+        public void equal(int a, int b) {
+            flush();
+        }
+
+        @Override
+        public void delete(int a) {
+            deleted[deletedCount++] = a;
+        }
+
+        @Override
+        public void insert(int b) {
+            inserted[insertedCount++] = b;
+        }
+
+        void flush() {
+            int paired = Math.min(deletedCount, insertedCount);
+            for (int i = 0; i < paired; i++) {
+                append(path, leftArray[deleted[i]], rightArray[inserted[i]]);
+            }
+            for (int i = paired; i < deletedCount; i++) {
+                append(path, leftArray[deleted[i]], null);
+            }
+            for (int i = paired; i < insertedCount; i++) {
+                append(path, null, rightArray[inserted[i]]);
+            }
+            deletedCount = 0;
+            insertedCount = 0;
+        }
     }
 
     public DiffDetailBuilder<T> append(final String path,  final boolean[] lhs,
                                        final boolean[] rhs) {
         validateFieldNameNotNull(path);
-        if (!Arrays.equals(lhs, rhs)) {
-            diffs.add(new DiffPair<>(path, ArrayUtils.toObject(lhs), ArrayUtils.toObject(rhs)));
-        }
+        return append(PathNode.detached(path), lhs, rhs);
+    }
+
+    public DiffDetailBuilder<T> append(final PathNode path,  final boolean[] lhs,
+                                       final boolean[] rhs) {
+        validateFieldNameNotNull(path);
+        appendRanges(path, lhs, rhs, lhs == null ? 0 : lhs.length, rhs == null ? 0 : rhs.length,
+                Arrays::mismatch, Arrays::copyOfRange);
         return this;
     }
 
     public DiffDetailBuilder<T> append(final String path,  final byte[] lhs,
                                        final byte[] rhs) {
         validateFieldNameNotNull(path);
-        if (!Arrays.equals(lhs, rhs)) {
-            diffs.add(new DiffPair<>(path, ArrayUtils.toObject(lhs), ArrayUtils.toObject(rhs)));
-        }
+        return append(PathNode.detached(path), lhs, rhs);
+    }
+
+    public DiffDetailBuilder<T> append(final PathNode path,  final byte[] lhs,
+                                       final byte[] rhs) {
+        validateFieldNameNotNull(path);
+        appendRanges(path, lhs, rhs, lhs == null ? 0 : lhs.length, rhs == null ? 0 : rhs.length,
+                Arrays::mismatch, Arrays::copyOfRange);
         return this;
     }
 
     public DiffDetailBuilder<T> append(final String path,  final char[] lhs,
                                        final char[] rhs) {
         validateFieldNameNotNull(path);
+        return append(PathNode.detached(path), lhs, rhs);
+    }
 
-        if (!Arrays.equals(lhs, rhs)) {
-            diffs.add(new DiffPair<>(path, ArrayUtils.toObject(lhs), ArrayUtils.toObject(rhs)));
-        }
+    public DiffDetailBuilder<T> append(final PathNode path,  final char[] lhs,
+                                       final char[] rhs) {
+        validateFieldNameNotNull(path);
+        appendRanges(path, lhs, rhs, lhs == null ? 0 : lhs.length, rhs == null ? 0 : rhs.length,
+                Arrays::mismatch, Arrays::copyOfRange);
         return this;
     }
 
     public DiffDetailBuilder<T> append(final String path,  final int[] lhs,
                                        final int[] rhs) {
         validateFieldNameNotNull(path);
+        return append(PathNode.detached(path), lhs, rhs);
+    }
 
-        if (!Arrays.equals(lhs, rhs)) {
-            diffs.add(new DiffPair<>(path, ArrayUtils.toObject(lhs), ArrayUtils.toObject(rhs)));
-        }
+    public DiffDetailBuilder<T> append(final PathNode path,  final int[] lhs,
+                                       final int[] rhs) {
+        validateFieldNameNotNull(path);
+        appendRanges(path, lhs, rhs, lhs == null ? 0 : lhs.length, rhs == null ? 0 : rhs.length,
+                Arrays::mismatch, Arrays::copyOfRange);
         return this;
     }
 
     public DiffDetailBuilder<T> append(final String path,  final double[] lhs,
                                        final double[] rhs) {
         validateFieldNameNotNull(path);
+        return append(PathNode.detached(path), lhs, rhs);
+    }
 
-        if (!Arrays.equals(lhs, rhs)) {
-            diffs.add(new DiffPair<>(path, ArrayUtils.toObject(lhs), ArrayUtils.toObject(rhs)));
-        }
+    public DiffDetailBuilder<T> append(final PathNode path,  final double[] lhs,
+                                       final double[] rhs) {
+        validateFieldNameNotNull(path);
+        appendRanges(path, lhs, rhs, lhs == null ? 0 : lhs.length, rhs == null ? 0 : rhs.length,
+                Arrays::mismatch, Arrays::copyOfRange);
         return this;
     }
 
     public DiffDetailBuilder<T> append(final String path,  final float[] lhs,
                                        final float[] rhs) {
         validateFieldNameNotNull(path);
+        return append(PathNode.detached(path), lhs, rhs);
+    }
 
-        if (!Arrays.equals(lhs, rhs)) {
-            diffs.add(new DiffPair<>(path, ArrayUtils.toObject(lhs), ArrayUtils.toObject(rhs)));
-        }
+    public DiffDetailBuilder<T> append(final PathNode path,  final float[] lhs,
+                                       final float[] rhs) {
+        validateFieldNameNotNull(path);
+        appendRanges(path, lhs, rhs, lhs == null ? 0 : lhs.length, rhs == null ? 0 : rhs.length,
+                Arrays::mismatch, Arrays::copyOfRange);
         return this;
     }
 
     public DiffDetailBuilder<T> append(final String path,  final long[] lhs,
                                        final long[] rhs) {
         validateFieldNameNotNull(path);
+        return append(PathNode.detached(path), lhs, rhs);
+    }
 
-        if (!Arrays.equals(lhs, rhs)) {
-            diffs.add(new DiffPair<>(path, ArrayUtils.toObject(lhs), ArrayUtils.toObject(rhs)));
-        }
+    public DiffDetailBuilder<T> append(final PathNode path,  final long[] lhs,
+                                       final long[] rhs) {
+        validateFieldNameNotNull(path);
+        appendRanges(path, lhs, rhs, lhs == null ? 0 : lhs.length, rhs == null ? 0 : rhs.length,
+                Arrays::mismatch, Arrays::copyOfRange);
         return this;
     }
 
     public DiffDetailBuilder<T> append(final String path,  final Object[] lhs,
                                        final Object[] rhs) {
         validateFieldNameNotNull(path);
+        return append(PathNode.detached(path), lhs, rhs);
+    }
 
-        if (!Arrays.equals(lhs, rhs)) {
-            diffs.add(new DiffPair<>(path, lhs, rhs));
+    public DiffDetailBuilder<T> append(final PathNode path,  final Object[] lhs,
+                                       final Object[] rhs) {
+        validateFieldNameNotNull(path);
+
+        if (!arraysEqual(lhs, rhs, lhs == null ? 0 : lhs.length, rhs == null ? 0 : rhs.length,
+                (from, to) -> Arrays.equals(lhs, from, to, rhs, from, to))) {
+            emit(new DiffPair<>(path, lhs, rhs));
         }
         return this;
     }
@@ -244,15 +857,149 @@ public class DiffDetailBuilder<T> {
     public DiffDetailBuilder<T> append(final String path,  final short[] lhs,
                                        final short[] rhs) {
         validateFieldNameNotNull(path);
+        return append(PathNode.detached(path), lhs, rhs);
+    }
+
+    public DiffDetailBuilder<T> append(final PathNode path,  final short[] lhs,
+                                       final short[] rhs) {
+        validateFieldNameNotNull(path);
+        appendRanges(path, lhs, rhs, lhs == null ? 0 : lhs.length, rhs == null ? 0 : rhs.length,
+                Arrays::mismatch, Arrays::copyOfRange);
+        return this;
+    }
+
+    /**
+     * 比较 {@code [from, to)} 范围，返回第一个不同元素相对 {@code from} 的偏移，没有不同时返回 -1，与 {@link Arrays#mismatch} 一致
+     */
+    @FunctionalInterface
+    private interface Mismatch<A> {
+        int mismatch(A lhs, int lhsFrom, int lhsTo, A rhs, int rhsFrom, int rhsTo);
+    }
+
+    @FunctionalInterface
+    private interface Slice<A> {
+        A copyOfRange(A array, int from, int to);
+    }
 
-        if (!Arrays.equals(lhs, rhs)) {
-            diffs.add(new DiffPair<>(path, ArrayUtils.toObject(lhs), ArrayUtils.toObject(rhs)));
+    /**
+     * 基础类型数组逐段比较：用 {@link Arrays#mismatch} 跳过相同的部分，每段连续不同的元素推送一处差异，
+     * 路径为 {@code 字段-[from,to)}，左右值只是这一段的切片，不装箱。长度不同时多出的部分作为最后一段，较短一侧的切片为空数组
+     */
+    private <A> void appendRanges(PathNode path, A lhs, A rhs, int leftLength, int rightLength,
+                                  Mismatch<A> mismatch, Slice<A> slice) {
+        if (lhs == rhs || isDone()) {
+            return;
         }
-        return this;
+        if (lhs == null || rhs == null) {
+            emit(new DiffPair<>(path, lhs, rhs));
+            return;
+        }
+        final int common = Math.min(leftLength, rightLength);
+        if (leftLength == rightLength && options.isParallel() && common >= options.getParallelArrayThreshold()
+                && ParallelDiff.rangesEqual(common, (from, to) -> mismatch.mismatch(lhs, from, to, rhs, from, to) < 0, options)) {
+            return;
+        }
+        int from = 0;
+        while (from < common && !isDone()) {
+            final int offset = mismatch.mismatch(lhs, from, common, rhs, from, common);
+            if (offset < 0) {
+                break;
+            }
+            from += offset;
+            int to = from + 1;
+            while (to < common && mismatch.mismatch(lhs, to, to + 1, rhs, to, to + 1) >= 0) {
+                to++;
+            }
+            emitRange(path, lhs, rhs, from, to, to, slice);
+            from = to;
+        }
+        if (leftLength != rightLength && !isDone()) {
+            emitRange(path, lhs, rhs, common, leftLength, rightLength, slice);
+        }
+    }
+
+    private <A> void emitRange(PathNode path, A lhs, A rhs, int from, int leftTo, int rightTo, Slice<A> slice) {
+        final PathNode rangePath = path.detachedChild("[" + from + "," + Math.max(leftTo, rightTo) + ")");
+        if (!valuesNeeded()) {
+            emit(pathOnly(rangePath));
+            return;
+        }
+        emit(new DiffPair<>(rangePath, slice.copyOfRange(lhs, from, leftTo), slice.copyOfRange(rhs, from, rightTo)));
+    }
+
+    /**
+     * 按行比较两段超过 {@link DiffOptions#getTextThreshold()} 的文本，每段变化推送一处差异，路径为 {@code 字段-[from,to)}，
+     * 区间为左侧文本中被替换的字符，左右值为被替换和替换后的文本
+     *
+     * @see TextDiff
+     */
+    private void appendText(final PathNode path, final CharSequence lhs, final CharSequence rhs) {
+        for (final TextHunk hunk : TextDiff.diff(lhs, rhs)) {
+            if (isDone()) {
+                break;
+            }
+            final PathNode rangePath = path.detachedChild(
+                    "[" + hunk.getLeftOffset() + "," + (hunk.getLeftOffset() + hunk.getLeftLength()) + ")");
+            emit(valuesNeeded() ? new DiffPair<>(rangePath, hunk.getRemoved(), hunk.getInserted()) : pathOnly(rangePath));
+        }
+    }
+
+    /**
+     * 数组较长且开启并行时分段并行比较
+     */
+    private boolean arraysEqual(Object lhs, Object rhs, int leftLength, int rightLength, ParallelDiff.RangeEquality equality) {
+        if (lhs == rhs) {
+            return true;
+        }
+        if (lhs == null || rhs == null || leftLength != rightLength) {
+            return false;
+        }
+        return ParallelDiff.rangesEqual(leftLength, equality, options);
     }
 
-    private void validateFieldNameNotNull(final String fieldName) {
+    private void validateFieldNameNotNull(final Object fieldName) {
         Objects.requireNonNull(fieldName, "fieldName");
     }
 
+
+    /**
+     * 一对子对象比较完成后的结果，路径都以 {@code path} 开头，在其他路径下复用时替换这一段前缀
+     */
+    static final class Shared {
+        /**
+         * 只遇到过一次、没有记录结果的子对象
+         */
+        static final Shared SEEN = new Shared(null, null, "", Collections.emptyList(), Collections.emptyList(), 0, 0, true);
+
+        private final Object left;
+        private final Object right;
+        private final String path;
+        private final List<DiffPair<?>> diffs;
+        private final List<Shared> children;
+        private final int depth;
+        /**
+         * 最深的子对象比本层多出的层数
+         */
+        private final int height;
+        private final boolean limited;
+
+        Shared(Object left, Object right, String path, List<DiffPair<?>> diffs, List<Shared> children,
+               int depth, int height, boolean limited) {
+            this.left = left;
+            this.right = right;
+            this.path = path;
+            this.diffs = diffs;
+            this.children = children;
+            this.depth = depth;
+            this.height = height;
+            this.limited = limited;
+        }
+
+        /**
+         * 在另一层重新比较时最大层数的截断是否相同
+         */
+        boolean fits(int depth, int maxDepth) {
+            return depth == this.depth || (!limited && depth < maxDepth - height);
+        }
+    }
 }
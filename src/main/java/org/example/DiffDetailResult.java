@@ -4,11 +4,25 @@ import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.reflect.TypeUtils;
 
 import java.lang.reflect.Type;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class DiffDetailResult<T> implements Diff<T>, Path, Iterable<Diff<?>> {
 
+    /**
+     * 每个结果类的类型参数只解析一次
+     */
+    private static final ClassValue<Type> TYPES = new ClassValue<>() {
+        @Override
+        protected Type computeValue(Class<?> type) {
+            return ObjectUtils.defaultIfNull(
+                    TypeUtils.getTypeArguments(type, Diff.class).get(
+                            Diff.class.getTypeParameters()[0]), Object.class);
+        }
+    };
+
     /**
      * The field type.
      */
@@ -28,20 +42,21 @@ public class DiffDetailResult<T> implements Diff<T>, Path, Iterable<Diff<?>> {
     private final List<DiffPair<?>> diffs;
 
     protected DiffDetailResult(final String fieldName, final String path, T left, T right, List<DiffPair<?>> diffs,List<ReflectionDiffBuilder<?>> reflectionDiffBuilders) {
+        this(fieldName, path, left, right, diffs, reflectionDiffBuilders, DiffOptions.DEFAULT);
+    }
+
+    protected DiffDetailResult(final String fieldName, final String path, T left, T right, List<DiffPair<?>> diffs,
+                               List<ReflectionDiffBuilder<?>> reflectionDiffBuilders, DiffOptions options) {
         super();
-        this.type = ObjectUtils.defaultIfNull(
-                TypeUtils.getTypeArguments(getClass(), Diff.class).get(
-                        Diff.class.getTypeParameters()[0]), Object.class);
+        this.type = TYPES.get(getClass());
         this.fieldName = fieldName;
         this.right = right;
         this.left = left;
         this.path = path;
         this.diffs = diffs;
         if (reflectionDiffBuilders != null && !reflectionDiffBuilders.isEmpty()) {
-            for (ReflectionDiffBuilder<?> reflectionDiffBuilder : reflectionDiffBuilders) {
-                DiffDetailResult<?> build = reflectionDiffBuilder.build();
-                this.diffs.addAll(build.getDiffs());
-            }
+            // 开启并行时子对象并行比较，结果仍按子对象的顺序合并
+            ParallelDiff.appendAll(reflectionDiffBuilders, DiffSink.toCollection(this.diffs), options);
         }
     }
 
@@ -100,6 +115,10 @@ public class DiffDetailResult<T> implements Diff<T>, Path, Iterable<Diff<?>> {
 
     @Override
     public Iterator<Diff<?>> iterator() {
-        return null;
+        return Collections.<Diff<?>>unmodifiableList(diffs).iterator();
+    }
+
+    public Stream<DiffPair<?>> stream() {
+        return diffs.stream();
     }
 }
@@ -0,0 +1,109 @@
+package org.example;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 持有配置的比较入口，不可变，可以在整个应用中共享一个实例并被多个线程同时使用
+ * <pre>
+ * private static final DiffEngine ENGINE = new DiffEngine(DiffOptions.builder().maxDepth(8).build());
+ * ENGINE.diff("订单", before, after, sink);
+ * </pre>
+ * 字段计划按类缓存在 {@link DiffPlan} 中，所有实例共享；每次比较使用的已比较对象表按线程复用，
+ * 容量超过 4096 个对象对的表用完后丢弃。只有这张表被复用：{@link ReflectionDiffBuilder}、每个子对象的
+ * {@link DiffDetailBuilder} 及其列表每次比较仍会新建，分配随比较的子对象数增长，而不只是差异数。
+ * 比较过程中在同一线程上再次调用时使用新的表。开启并行比较时已比较对象表会被多个线程访问，不复用
+ */
+public final class DiffEngine {
+
+    private final DiffOptions options;
+
+    private final ThreadLocal<VisitedPairs> scratch = new ThreadLocal<>();
+
+    public DiffEngine() {
+        this(DiffOptions.DEFAULT);
+    }
+
+    public DiffEngine(DiffOptions options) {
+        this.options = Objects.requireNonNull(options, "options");
+    }
+
+    public DiffOptions getOptions() {
+        return options;
+    }
+
+    public <T> DiffDetailResult<T> diff(T left, T right) {
+        return diff(null, left, right);
+    }
+
+    /**
+     * 比较两个对象并收集差异
+     *
+     * @param documentName 文档名称，为空时使用类的展示名称
+     * @param left         左侧对象
+     * @param right        右侧对象
+     * @return 比较结果
+     */
+    public <T> DiffDetailResult<T> diff(String documentName, T left, T right) {
+        return run(documentName, left, right, ReflectionDiffBuilder::build);
+    }
+
+    public <T> void diff(T left, T right, DiffSink sink) {
+        diff(null, left, right, sink);
+    }
+
+    /**
+     * 比较两个对象，差异推送给接收者
+     *
+     * @param documentName 文档名称，为空时使用类的展示名称
+     * @param left         左侧对象
+     * @param right        右侧对象
+     * @param sink         接收者
+     */
+    public <T> void diff(String documentName, T left, T right, DiffSink sink) {
+        Objects.requireNonNull(sink, "sink");
+        run(documentName, left, right, builder -> {
+            builder.diff(sink);
+            return null;
+        });
+    }
+
+    /**
+     * 发现第一处差异后立即停止，见 {@link ReflectionDiffBuilder#differs()}
+     *
+     * @param left  左侧对象
+     * @param right 右侧对象
+     * @return 是否存在差异
+     */
+    public <T> boolean differs(T left, T right) {
+        if (left == right) {
+            return false;
+        }
+        if (left == null || right == null || left.getClass() != right.getClass()) {
+            return true;
+        }
+        return run(null, left, right, ReflectionDiffBuilder::differs);
+    }
+
+    private <T, R> R run(String documentName, T left, T right, Function<ReflectionDiffBuilder<T>, R> action) {
+        Objects.requireNonNull(left, "left");
+        Objects.requireNonNull(right, "right");
+        final ReflectionDiffBuilder<T> builder = new ReflectionDiffBuilder<>(documentName, left, right).withOptions(options);
+        if (options.isParallel()) {
+            return action.apply(builder);
+        }
+        VisitedPairs visited = scratch.get();
+        if (visited == null) {
+            visited = new VisitedPairs();
+        } else {
+            scratch.set(null);
+        }
+        try {
+            return action.apply(builder.withVisited(visited));
+        } finally {
+            if (visited.reset()) {
+                scratch.set(visited);
+            }
+        }
+    }
+}
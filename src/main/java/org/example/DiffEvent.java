@@ -0,0 +1,24 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 一次顶层比较的 JFR 事件，开启 {@link DiffMetrics} 后才会产生
+ */
+@Name("org.example.Diff")
+@Label("Diff")
+@Category("Diff")
+@Description("A top-level object diff")
+final class DiffEvent extends jdk.jfr.Event {
+
+    @Label("Type")
+    String type;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+}
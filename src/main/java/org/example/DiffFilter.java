@@ -0,0 +1,202 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 参与比较的字段的过滤规则，不可变，通过 {@link DiffOptions#getFilter()} 使用
+ * <pre>
+ * DiffFilter filter = DiffFilter.builder()
+ *         .excludeNames("password", "密码")
+ *         .excludeTypes(byte[].class)
+ *         .excludePaths("人员信息-父亲-*")
+ *         .build();
+ * </pre>
+ * 名称和类型规则按类生效，每个类只计算一次过滤后的字段；路径规则在读取字段之前按字段路径判断。
+ * 被过滤的字段不会被读取，其子对象也不会被比较。
+ * <p>
+ * 路径规则中 {@code *} 匹配一段路径中的任意字符，{@code **} 匹配任意多段，{@code ?} 匹配一段中的一个字符。
+ * 设置了 {@code includePaths} 时只比较匹配的字段以及通往这些字段的上层字段
+ */
+public final class DiffFilter {
+
+    public static final DiffFilter NONE = new DiffFilter(Collections.emptySet(), Collections.emptyList(),
+            Collections.emptyList(), Collections.emptyList());
+
+    private final Set<String> excludedNames;
+    private final List<Class<?>> excludedTypes;
+    private final List<Pattern> excludedPaths;
+    private final List<Pattern> includedPaths;
+
+    private final ClassValue<List<FieldPlan>> fields = new ClassValue<>() {
+        @Override
+        protected List<FieldPlan> computeValue(Class<?> type) {
+            List<FieldPlan> accepted = new ArrayList<>();
+            for (FieldPlan field : DiffPlan.of(type).getFields()) {
+                if (accepts(field)) {
+                    accepted.add(field);
+                }
+            }
+            return Collections.unmodifiableList(accepted);
+        }
+    };
+
+    private DiffFilter(Set<String> excludedNames, List<Class<?>> excludedTypes,
+                       List<Pattern> excludedPaths, List<Pattern> includedPaths) {
+        this.excludedNames = excludedNames;
+        this.excludedTypes = excludedTypes;
+        this.excludedPaths = excludedPaths;
+        this.includedPaths = includedPaths;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return 是否没有任何规则
+     */
+    public boolean isEmpty() {
+        return this == NONE;
+    }
+
+    /**
+     * @return 是否有按路径的规则
+     */
+    public boolean hasPathRules() {
+        return !excludedPaths.isEmpty() || !includedPaths.isEmpty();
+    }
+
+    /**
+     * 按名称和类型规则过滤后的字段
+     *
+     * @param plan 类的比较计划
+     * @return 字段
+     */
+    public List<FieldPlan> fields(DiffPlan plan) {
+        if (isEmpty()) {
+            return plan.getFields();
+        }
+        return fields.get(plan.getType());
+    }
+
+    /**
+     * 按路径规则判断字段是否参与比较
+     *
+     * @param path 字段路径
+     * @return 是否参与比较
+     */
+    public boolean accepts(PathNode path) {
+        final String value = path.getPath();
+        for (Pattern pattern : excludedPaths) {
+            if (pattern.matcher(value).matches()) {
+                return false;
+            }
+        }
+        if (includedPaths.isEmpty()) {
+            return true;
+        }
+        for (Pattern pattern : includedPaths) {
+            // 路径本身匹配，或者再往下还可能匹配
+            Matcher matcher = pattern.matcher(value + "-");
+            if (pattern.matcher(value).matches() || matcher.matches() || matcher.hitEnd()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean accepts(FieldPlan field) {
+        if (excludedNames.contains(field.getName()) || excludedNames.contains(field.getField().getName())) {
+            return false;
+        }
+        for (Class<?> type : excludedTypes) {
+            if (type.isAssignableFrom(field.getField().getType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把路径规则转换为正则表达式
+     */
+    static Pattern compile(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else {
+                    regex.append("[^-]*");
+                }
+            } else if (c == '?') {
+                regex.append("[^-]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    public static final class Builder {
+        private final Set<String> excludedNames = new HashSet<>();
+        private final List<Class<?>> excludedTypes = new ArrayList<>();
+        private final List<Pattern> excludedPaths = new ArrayList<>();
+        private final List<Pattern> includedPaths = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param names 字段名或展示名称
+         * @return this
+         */
+        public Builder excludeNames(String... names) {
+            excludedNames.addAll(Arrays.asList(names));
+            return this;
+        }
+
+        /**
+         * @param types 声明类型为这些类型或其子类型的字段不参与比较
+         * @return this
+         */
+        public Builder excludeTypes(Class<?>... types) {
+            for (Class<?> type : types) {
+                excludedTypes.add(Objects.requireNonNull(type, "type"));
+            }
+            return this;
+        }
+
+        public Builder excludePaths(String... globs) {
+            for (String glob : globs) {
+                excludedPaths.add(compile(glob));
+            }
+            return this;
+        }
+
+        public Builder includePaths(String... globs) {
+            for (String glob : globs) {
+                includedPaths.add(compile(glob));
+            }
+            return this;
+        }
+
+        public DiffFilter build() {
+            if (excludedNames.isEmpty() && excludedTypes.isEmpty() && excludedPaths.isEmpty() && includedPaths.isEmpty()) {
+                return NONE;
+            }
+            return new DiffFilter(new HashSet<>(excludedNames), new ArrayList<>(excludedTypes),
+                    new ArrayList<>(excludedPaths), new ArrayList<>(includedPaths));
+        }
+    }
+}
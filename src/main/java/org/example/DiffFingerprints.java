@@ -0,0 +1,385 @@
+package org.example;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 对象的结构指纹：按 {@link DiffPlan} 的字段逐层计算 64 位哈希，子对象的指纹参与上层对象的指纹，
+ * 通过 {@link DiffOptions#getFingerprints()} 开启
+ * <pre>
+ * DiffOptions options = DiffOptions.builder().fingerprints(DiffFingerprints.byVersion()).build();
+ * </pre>
+ * 开启后比较对象前先比较两侧的指纹，相同时整个子树跳过，不再调用 {@code equals}。指纹按对象缓存，弱引用持有对象：
+ * <ul>
+ *     <li>{@link #byVersion()} 只缓存带有 {@link DiffVersion} 版本字段的对象本层字段的哈希，版本号变化后重新计算，
+ *     子对象和容器每次都会重新计算（有版本字段的子对象同样复用本层的哈希），适合会被修改的对象；
+ *     标注在类上、以 {@code hashCode()} 作为版本的对象不缓存</li>
+ *     <li>{@link #byIdentity()} 缓存所有对象，只适合创建后不再修改的对象</li>
+ * </ul>
+ * 指纹不同时按正常方式比较，因此比较器、过滤规则只会让指纹失去作用，不会漏掉差异；
+ * 指纹相同而对象不同的概率约为 2<sup>-64</sup>。
+ * 同一次比较中算过的子对象指纹按身份记住，逐层比较子对象时不再重新计算整棵子树
+ */
+public final class DiffFingerprints {
+
+    private static final long NULL = 0x9E3779B97F4A7C15L;
+    private static final long CYCLE = 0xC2B2AE3D27D4EB4FL;
+
+    private static final ClassValue<Long> SEEDS = new ClassValue<>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            return hash(type.getName());
+        }
+    };
+
+    private final boolean byIdentity;
+    private final Map<Key, long[]> cache = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+    private DiffFingerprints(boolean byIdentity) {
+        this.byIdentity = byIdentity;
+    }
+
+    public static DiffFingerprints byVersion() {
+        return new DiffFingerprints(false);
+    }
+
+    public static DiffFingerprints byIdentity() {
+        return new DiffFingerprints(true);
+    }
+
+    /**
+     * 两侧是否结构相同
+     *
+     * @param lhs 左侧对象
+     * @param rhs 右侧对象
+     * @return 指纹是否相同
+     */
+    public boolean same(Object lhs, Object rhs) {
+        return same(lhs, rhs, new IdentityHashMap<>());
+    }
+
+    /**
+     * @param memo 本次比较中已经算过的指纹，见 {@link #memo(boolean)}
+     */
+    boolean same(Object lhs, Object rhs, Map<Object, Long> memo) {
+        if (lhs == rhs) {
+            return true;
+        }
+        if (lhs == null || rhs == null || lhs.getClass() != rhs.getClass()) {
+            return false;
+        }
+        expunge();
+        return new Walk(memo).value(lhs) == new Walk(memo).value(rhs);
+    }
+
+    /**
+     * 一次比较中各层共享的指纹表，按身份保存不依赖外层对象的指纹，比较结束后丢弃
+     *
+     * @param concurrent 是否会被多个线程同时使用
+     */
+    static Map<Object, Long> memo(boolean concurrent) {
+        final Map<Object, Long> memo = new IdentityHashMap<>();
+        return concurrent ? Collections.synchronizedMap(memo) : memo;
+    }
+
+    /**
+     * 计算对象的指纹
+     *
+     * @param value 对象
+     * @return 指纹
+     */
+    public long of(Object value) {
+        expunge();
+        return new Walk(new IdentityHashMap<>()).value(value);
+    }
+
+    /**
+     * @return 缓存的对象数量
+     */
+    public int size() {
+        expunge();
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private void expunge() {
+        Reference<?> reference;
+        while ((reference = queue.poll()) != null) {
+            cache.remove(reference);
+        }
+    }
+
+    private static long mix(long hash, long value) {
+        return Long.rotateLeft(hash ^ value * 0x9E3779B97F4A7C15L, 27) * 0xBF58476D1CE4E5B9L + 0x94D049BB133111EBL;
+    }
+
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ hash >>> 33;
+    }
+
+    private static long hash(CharSequence value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return finish(hash ^ value.length());
+    }
+
+    /**
+     * 一次计算中正在计算的对象，用于识别循环引用
+     */
+    private final class Walk {
+        private final Map<Object, Integer> depths = new IdentityHashMap<>();
+        private final Map<Object, Long> memo;
+        /**
+         * 当前子树中循环引用指向的最浅层数，浅于当前对象时指纹依赖上层对象，不能缓存
+         */
+        private int lowest = Integer.MAX_VALUE;
+
+        Walk(Map<Object, Long> memo) {
+            this.memo = memo;
+        }
+
+        long value(Object value) {
+            if (value == null) {
+                return NULL;
+            }
+            final Class<?> type = value.getClass();
+            final long seed = SEEDS.get(type);
+            final ValueKind kind = ValueKind.of(type);
+            switch (kind) {
+                case OBJECT:
+                    return object(value, seed);
+                case OBJECT_ARRAY:
+                case MAP:
+                case COLLECTION:
+                    return container(value, seed, kind);
+                case BOOLEAN_ARRAY:
+                case BYTE_ARRAY:
+                case CHAR_ARRAY:
+                case DOUBLE_ARRAY:
+                case FLOAT_ARRAY:
+                case INT_ARRAY:
+                case LONG_ARRAY:
+                case SHORT_ARRAY:
+                    return array(value, seed);
+                default:
+                    return finish(mix(seed, scalar(value)));
+            }
+        }
+
+        /**
+         * 可能引用其他对象的数组和容器，子树中没有指向外层对象的循环引用时记住指纹
+         */
+        private long container(Object value, long seed, ValueKind kind) {
+            final Long known = memo.get(value);
+            if (known != null) {
+                return known;
+            }
+            final int outerLowest = lowest;
+            lowest = Integer.MAX_VALUE;
+            final long hash;
+            if (kind == ValueKind.MAP) {
+                long sum = 0;
+                for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    sum += mix(value(entry.getKey()), value(entry.getValue()));
+                }
+                hash = finish(mix(seed, sum));
+            } else if (kind == ValueKind.COLLECTION) {
+                hash = collection((Collection<?>) value, seed);
+            } else {
+                hash = array(value, seed);
+            }
+            if (lowest == Integer.MAX_VALUE) {
+                memo.put(value, hash);
+            }
+            lowest = Math.min(outerLowest, lowest);
+            return hash;
+        }
+
+        private long scalar(Object value) {
+            if (value instanceof CharSequence) {
+                return hash((CharSequence) value);
+            }
+            if (value instanceof Double || value instanceof Float) {
+                return Double.doubleToLongBits(((Number) value).doubleValue());
+            }
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return ((Number) value).longValue();
+            }
+            if (value instanceof Boolean) {
+                return (Boolean) value ? 1 : 2;
+            }
+            if (value instanceof Character) {
+                return (Character) value;
+            }
+            if (value instanceof Enum) {
+                return ((Enum<?>) value).ordinal();
+            }
+            return mix(value.hashCode(), hash(value.toString()));
+        }
+
+        private long array(Object array, long seed) {
+            final int length = Array.getLength(array);
+            long hash = mix(seed, length);
+            if (array instanceof byte[]) {
+                for (final byte element : (byte[]) array) {
+                    hash = mix(hash, element);
+                }
+            } else if (array instanceof char[]) {
+                for (final char element : (char[]) array) {
+                    hash = mix(hash, element);
+                }
+            } else if (array instanceof int[]) {
+                for (final int element : (int[]) array) {
+                    hash = mix(hash, element);
+                }
+            } else if (array instanceof long[]) {
+                for (final long element : (long[]) array) {
+                    hash = mix(hash, element);
+                }
+            } else if (array instanceof double[]) {
+                for (final double element : (double[]) array) {
+                    hash = mix(hash, Double.doubleToLongBits(element));
+                }
+            } else if (array instanceof Object[]) {
+                for (final Object element : (Object[]) array) {
+                    hash = mix(hash, value(element));
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    hash = mix(hash, scalar(Array.get(array, i)));
+                }
+            }
+            return finish(hash);
+        }
+
+        private long collection(Collection<?> collection, long seed) {
+            if (collection instanceof Set && !(collection instanceof List)) {
+                long sum = 0;
+                for (final Object element : collection) {
+                    sum += value(element);
+                }
+                return finish(mix(seed, sum));
+            }
+            long hash = mix(seed, collection.size());
+            for (final Object element : collection) {
+                hash = mix(hash, value(element));
+            }
+            return finish(hash);
+        }
+
+        private long object(Object value, long seed) {
+            final Long known = memo.get(value);
+            if (known != null) {
+                return known;
+            }
+            final Key key = new Key(value, null);
+            if (byIdentity) {
+                final long[] cached = cache.get(key);
+                if (cached != null) {
+                    return cached[1];
+                }
+            }
+            final Integer depth = depths.get(value);
+            if (depth != null) {
+                lowest = Math.min(lowest, depth);
+                return mix(CYCLE, depths.size() - depth);
+            }
+            final DiffPlan plan = DiffPlan.of(value.getClass());
+            // 版本只说明本层的值没有变化，子对象和容器仍然逐个计算，各自按自己的版本复用
+            final boolean versioned = !byIdentity && plan.getVersionField() != null && plan.hasVersion(value);
+            final long version = versioned ? plan.version(value) : 0;
+            long[] leaves = versioned ? cache.get(key) : null;
+            if (leaves != null && leaves[0] != version) {
+                leaves = null;
+            }
+            final int ownDepth = depths.size();
+            final int outerLowest = lowest;
+            lowest = Integer.MAX_VALUE;
+            depths.put(value, ownDepth);
+            long own = seed;
+            long nested = 0;
+            final List<FieldPlan> fields = plan.getFields();
+            for (int i = 0; i < fields.size(); i++) {
+                final Object fieldValue = fields.get(i).getAccessor().get(value);
+                if (isNested(fieldValue)) {
+                    nested = mix(nested, mix(i, value(fieldValue)));
+                } else if (leaves == null) {
+                    own = mix(own, value(fieldValue));
+                }
+            }
+            depths.remove(value);
+            if (leaves != null) {
+                own = leaves[1];
+            } else if (versioned) {
+                cache.put(new Key(value, queue), new long[]{version, own});
+            }
+            final long hash = finish(mix(own, nested));
+            if (lowest >= ownDepth) {
+                memo.put(value, hash);
+                if (byIdentity) {
+                    cache.put(new Key(value, queue), new long[]{0, hash});
+                }
+            }
+            lowest = Math.min(outerLowest, lowest);
+            return hash;
+        }
+
+        private boolean isNested(Object value) {
+            if (value == null) {
+                return false;
+            }
+            final ValueKind kind = ValueKind.of(value.getClass());
+            return kind == ValueKind.OBJECT || kind == ValueKind.OBJECT_ARRAY
+                    || kind == ValueKind.MAP || kind == ValueKind.COLLECTION;
+        }
+    }
+
+    /**
+     * 按对象身份比较的弱引用
+     */
+    private static final class Key extends WeakReference<Object> {
+        private final int hash;
+
+        Key(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            final Object referent = get();
+            return referent != null && referent == ((Key) other).get();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.example;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记集合元素的标识字段，集合比较时按该字段匹配元素，参见 {@link CollectionDiffMode#KEY}
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface DiffKey {
+}
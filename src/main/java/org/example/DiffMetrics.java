@@ -0,0 +1,215 @@
+package org.example;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 比较过程的统计，通过 {@link DiffOptions#getMetrics()} 开启，未设置时比较过程只多一次判空
+ * <pre>
+ * DiffMetrics metrics = new DiffMetrics().registerMBean("orders");
+ * DiffOptions options = DiffOptions.builder().metrics(metrics).build();
+ * </pre>
+ * 统计顶层比较的次数、耗时和当前线程分配的字节数，每个类被比较的次数、读取的字段数和不同的字段数，
+ * 子对象的嵌套层数以及集合大小。开启后每次顶层比较还会产生一个 {@code org.example.Diff} JFR 事件
+ */
+public final class DiffMetrics implements DiffMetricsMXBean {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final LongAdder builds = new LongAdder();
+    private final LongAdder diffs = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final Histogram latency = new Histogram();
+    private final Histogram depths = new Histogram();
+    private final Histogram collectionSizes = new Histogram();
+    private final Map<Class<?>, Counters> classes = new ConcurrentHashMap<>();
+
+    private ObjectName objectName;
+
+    /**
+     * 注册到平台 MBeanServer，名称为 {@code org.example:type=DiffMetrics,name=<name>}
+     *
+     * @param name 名称
+     * @return this
+     */
+    public synchronized DiffMetrics registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("org.example:type=DiffMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+            return this;
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register " + name, e);
+        }
+    }
+
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to unregister " + objectName, e);
+        }
+    }
+
+    /**
+     * 开始一次顶层比较
+     */
+    Sample start() {
+        return new Sample(System.nanoTime(), allocated());
+    }
+
+    void recordFields(Class<?> type, int visited, int differing) {
+        Counters counters = counters(type);
+        counters.compared.increment();
+        counters.fieldsVisited.add(visited);
+        counters.fieldsDiffering.add(differing);
+    }
+
+    void recordDiff() {
+        diffs.increment();
+    }
+
+    void recordDepth(int depth) {
+        depths.record(depth);
+    }
+
+    void recordCollectionSize(int size) {
+        collectionSizes.record(size);
+    }
+
+    private Counters counters(Class<?> type) {
+        Counters counters = classes.get(type);
+        return counters != null ? counters : classes.computeIfAbsent(type, key -> new Counters());
+    }
+
+    private static long allocated() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getCurrentThreadAllocatedBytes();
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public long getBuilds() {
+        return builds.sum();
+    }
+
+    @Override
+    public long getDiffs() {
+        return diffs.sum();
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        return latency.snapshot();
+    }
+
+    @Override
+    public long[] getDepthHistogram() {
+        return depths.snapshot();
+    }
+
+    @Override
+    public long[] getCollectionSizeHistogram() {
+        return collectionSizes.snapshot();
+    }
+
+    @Override
+    public Map<String, ClassMetrics> getClasses() {
+        Map<String, ClassMetrics> snapshot = new TreeMap<>();
+        classes.forEach((type, counters) -> snapshot.put(type.getName(), counters.snapshot()));
+        return snapshot;
+    }
+
+    /**
+     * @param type 类
+     * @return 该类的统计，没有比较过时为 {@code null}
+     */
+    public ClassMetrics getClassMetrics(Class<?> type) {
+        Counters counters = classes.get(type);
+        return counters == null ? null : counters.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        builds.reset();
+        diffs.reset();
+        totalNanos.reset();
+        allocatedBytes.reset();
+        latency.reset();
+        depths.reset();
+        collectionSizes.reset();
+        classes.clear();
+    }
+
+    /**
+     * 一次顶层比较的开始时间和已分配字节数
+     */
+    final class Sample {
+        private final long startNanos;
+        private final long startAllocated;
+        private final DiffEvent event;
+
+        private Sample(long startNanos, long startAllocated) {
+            this.startNanos = startNanos;
+            this.startAllocated = startAllocated;
+            this.event = new DiffEvent();
+            event.begin();
+        }
+
+        void stop(Class<?> type) {
+            final long nanos = System.nanoTime() - startNanos;
+            final long allocated = allocated() - startAllocated;
+            builds.increment();
+            totalNanos.add(nanos);
+            allocatedBytes.add(allocated);
+            latency.record(nanos);
+            Counters counters = counters(type);
+            counters.totalNanos.add(nanos);
+            counters.latency.record(nanos);
+            event.end();
+            if (event.shouldCommit()) {
+                event.type = type.getName();
+                event.allocated = allocated;
+                event.commit();
+            }
+        }
+    }
+
+    private static final class Counters {
+        private final LongAdder compared = new LongAdder();
+        private final LongAdder fieldsVisited = new LongAdder();
+        private final LongAdder fieldsDiffering = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final Histogram latency = new Histogram();
+
+        ClassMetrics snapshot() {
+            return new ClassMetrics(compared.sum(), fieldsVisited.sum(), fieldsDiffering.sum(),
+                    totalNanos.sum(), latency.snapshot());
+        }
+    }
+}
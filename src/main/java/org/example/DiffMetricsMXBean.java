@@ -0,0 +1,51 @@
+package org.example;
+
+import java.util.Map;
+
+/**
+ * {@link DiffMetrics} 的 JMX 接口，直方图的含义见各方法
+ */
+public interface DiffMetricsMXBean {
+
+    /**
+     * @return 顶层比较的次数
+     */
+    long getBuilds();
+
+    /**
+     * @return 产生的差异数量
+     */
+    long getDiffs();
+
+    /**
+     * @return 顶层比较的总耗时，纳秒
+     */
+    long getTotalNanos();
+
+    /**
+     * @return 顶层比较在当前线程上分配的字节数，不包括并行比较时其他线程的分配
+     */
+    long getAllocatedBytes();
+
+    /**
+     * @return 顶层比较耗时的直方图，第 i 个桶为 [2^(i-1), 2^i) 纳秒
+     */
+    long[] getLatencyHistogram();
+
+    /**
+     * @return 子对象嵌套层数的直方图
+     */
+    long[] getDepthHistogram();
+
+    /**
+     * @return 比较的集合大小的直方图
+     */
+    long[] getCollectionSizeHistogram();
+
+    /**
+     * @return 按类名统计的比较情况
+     */
+    Map<String, ClassMetrics> getClasses();
+
+    void reset();
+}
@@ -0,0 +1,81 @@
+package org.example;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 比较时的配置，不可变，可以在多个比较之间共享
+ * <pre>
+ * DiffOptions options = DiffOptions.builder().parallel(true).parallelThreshold(4).build();
+ * new ReflectionDiffBuilder&lt;&gt;(left, right).withOptions(options).build();
+ * </pre>
+ */
+@Getter
+@Builder(toBuilder = true)
+public final class DiffOptions {
+
+    public static final DiffOptions DEFAULT = DiffOptions.builder().build();
+
+    /**
+     * 是否并行比较相互独立的子树
+     */
+    @Builder.Default
+    private final boolean parallel = false;
+
+    /**
+     * 并行比较使用的线程池，为 {@code null} 时使用 {@link ForkJoinPool#commonPool()}
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * 同一层级的子对象数量达到该值时才并行比较
+     */
+    @Builder.Default
+    private final int parallelThreshold = 8;
+
+    /**
+     * 基础类型数组长度达到该值时才分段并行比较
+     */
+    @Builder.Default
+    private final int parallelArrayThreshold = 1 << 16;
+
+    /**
+     * 子对象的最大嵌套层数，超过后不再拆分字段，整个对象记为一处差异
+     */
+    @Builder.Default
+    private final int maxDepth = Integer.MAX_VALUE;
+
+    /**
+     * 两侧都是文本且较长一侧达到该长度时按行比较，每段变化记为一处差异，不保存整段文本
+     */
+    @Builder.Default
+    private final int textThreshold = Integer.MAX_VALUE;
+
+    /**
+     * 按类型替代默认比较方式的比较器
+     */
+    @Builder.Default
+    private final ComparatorRegistry comparators = ComparatorRegistry.EMPTY;
+
+    /**
+     * 按字段名、类型和路径过滤参与比较的字段
+     */
+    @Builder.Default
+    private final DiffFilter filter = DiffFilter.NONE;
+
+    /**
+     * 对象的结构指纹，设置后先比较指纹，相同的子树跳过比较，为 {@code null} 时使用 {@code equals}
+     */
+    private final DiffFingerprints fingerprints;
+
+    /**
+     * 比较过程的统计，为 {@code null} 时不统计
+     */
+    private final DiffMetrics metrics;
+
+    public ForkJoinPool getPool() {
+        return pool != null ? pool : ForkJoinPool.commonPool();
+    }
+}
@@ -1,5 +1,67 @@
 package org.example;
 
 
-public record DiffPair<T>(String path, T left, T right) {
+import org.apache.commons.lang3.ArrayUtils;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 一处差异
+ *
+ * @param location 差异所在的路径，字符串形式在 {@link #path()} 时才生成
+ * @param left     左值
+ * @param right    右值
+ * @param <T>      值类型
+ */
+public record DiffPair<T>(Path location, T left, T right) implements Diff<T>, Path {
+
+    public DiffPair(String path, T left, T right) {
+        this(PathNode.detached(path), left, right);
+    }
+
+    public String path() {
+        return location.getPath();
+    }
+
+    @Override
+    public String getPath() {
+        return path();
+    }
+
+    @Override
+    public T getLeft() {
+        return left;
+    }
+
+    @Override
+    public T getRight() {
+        return right;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DiffPair)) {
+            return false;
+        }
+        DiffPair<?> other = (DiffPair<?>) o;
+        return path().equals(other.path()) && Objects.deepEquals(left, other.left) && Objects.deepEquals(right, other.right);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.deepHashCode(new Object[]{path(), left, right});
+    }
+
+    @Override
+    public String toString() {
+        return "DiffPair[path=" + path() + ", left=" + valueToString(left) + ", right=" + valueToString(right) + "]";
+    }
+
+    private static String valueToString(Object value) {
+        return value != null && value.getClass().isArray() ? ArrayUtils.toString(value) : String.valueOf(value);
+    }
 }
@@ -0,0 +1,578 @@
+package org.example;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 由差异组成的补丁，应用到左侧对象的副本上得到右侧对象
+ * <pre>
+ * DiffPatch&lt;Order&gt; patch = DiffPatch.of(new ReflectionDiffBuilder&lt;&gt;(left, right).build());
+ * patch.apply(copyOfLeft);
+ * patch.reverse().apply(copyOfRight);
+ * </pre>
+ * 路径按 {@link DiffPlan} 中的字段展示名称逐段解析到字段，支持：
+ * <ul>
+ *     <li>普通字段和子对象的字段</li>
+ *     <li>Map 的键，按 {@code String.valueOf(键)} 匹配，右值为 {@code null} 时删除该键。新增的键按字段声明的键类型转换，
+ *     没有声明时按已有键的类型，支持字符串、数字、布尔、字符、枚举和 {@link UUID}</li>
+ *     <li>基础类型数组的区间 {@code [from,to)}</li>
+ *     <li>长文本按行比较得到的区间 {@code [from,to)}，同一字段的区间一起应用，应用前检查目标中对应位置的文本与补丁一致</li>
+ *     <li>按 {@link DiffKey} 匹配的集合元素，以及路径停在集合本身的元素新增、删除和替换，新增的元素追加在末尾</li>
+ *     <li>{@link List} 的下标 {@code [下标]}，由 {@link ThreeWayDiff} 生成，替换该位置的元素或修改元素的字段</li>
+ * </ul>
+ * 按下标比较的集合中子对象的差异路径不含下标，无法定位元素，应用时抛出 {@link IllegalStateException}；
+ * 路径停在列表本身的替换和删除在列表中有多个相等的元素时同样无法确定位置，也会抛出该异常。
+ * 整个集合或 Map 与 {@code null} 之间的变化直接写入字段，字段为 {@code null} 时按字段类型新建容器再添加元素。
+ * 键中包含分隔符 {@code -} 时优先匹配完全相同的键，其次是最长的键。
+ * <p>
+ * 字段直接在目标对象上修改。集合、Map、数组先复制再写回字段，不影响与其他对象共享的容器；
+ * 但子对象，包括集合和 Map 中的元素对象，同样直接修改而不复制，目标应当是左侧对象的深拷贝
+ *
+ * @param <T> 对象类型
+ */
+public final class DiffPatch<T> {
+
+    private static final Pattern RANGE = Pattern.compile("\\[(\\d+),(\\d+)\\)");
+
+    private static final Pattern INDEX = Pattern.compile("\\[(\\d+)](?:-(.+))?");
+
+    private final String rootName;
+
+    private final List<DiffPair<?>> diffs;
+
+    /**
+     * 由 {@link #andThen(DiffPatch)} 合并的补丁依次应用，文本区间只在各自的补丁内换算位置；为空时直接应用 {@link #diffs}
+     */
+    private final List<DiffPatch<T>> parts;
+
+    private DiffPatch(String rootName, List<DiffPair<?>> diffs) {
+        this(rootName, diffs, Collections.emptyList());
+    }
+
+    private DiffPatch(String rootName, List<DiffPair<?>> diffs, List<DiffPatch<T>> parts) {
+        this.rootName = StringUtils.defaultString(rootName);
+        this.diffs = diffs;
+        this.parts = parts;
+    }
+
+    public static <T> DiffPatch<T> of(DiffDetailResult<T> result) {
+        return of(result.getFieldName(), result.getDiffs());
+    }
+
+    /**
+     * @param rootName 差异路径的根名称，即比较时的文档名称
+     * @param diffs    差异，例如从 {@link EncodedDiffs} 读出的差异
+     * @return 补丁
+     */
+    public static <T> DiffPatch<T> of(String rootName, Iterable<? extends DiffPair<?>> diffs) {
+        Objects.requireNonNull(diffs, "diffs");
+        final List<DiffPair<?>> list = new ArrayList<>();
+        diffs.forEach(list::add);
+        return new DiffPatch<>(rootName, Collections.unmodifiableList(list));
+    }
+
+    public List<DiffPair<?>> getDiffs() {
+        return diffs;
+    }
+
+    /**
+     * @return 从右侧对象恢复左侧对象的补丁
+     */
+    public DiffPatch<T> reverse() {
+        if (!parts.isEmpty()) {
+            final List<DiffPatch<T>> reversedParts = new ArrayList<>(parts.size());
+            final List<DiffPair<?>> reversedDiffs = new ArrayList<>(diffs.size());
+            for (int i = parts.size() - 1; i >= 0; i--) {
+                final DiffPatch<T> part = parts.get(i).reverse();
+                reversedParts.add(part);
+                reversedDiffs.addAll(part.diffs);
+            }
+            return new DiffPatch<>(rootName, Collections.unmodifiableList(reversedDiffs), Collections.unmodifiableList(reversedParts));
+        }
+        final List<DiffPair<?>> reversed = new ArrayList<>(diffs.size());
+        for (int i = diffs.size() - 1; i >= 0; i--) {
+            final DiffPair<?> pair = diffs.get(i);
+            reversed.add(new DiffPair<>(pair.location(), pair.right(), pair.left()));
+        }
+        return new DiffPatch<>(rootName, Collections.unmodifiableList(reversed));
+    }
+
+    /**
+     * 先应用当前补丁再应用 {@code next}，两个补丁的根名称需要相同
+     *
+     * @param next 之后的补丁
+     * @return 合并后的补丁
+     */
+    public DiffPatch<T> andThen(DiffPatch<T> next) {
+        if (!rootName.equals(next.rootName)) {
+            throw new IllegalArgumentException("Root names differ: " + rootName + " != " + next.rootName);
+        }
+        final List<DiffPair<?>> combined = new ArrayList<>(diffs.size() + next.diffs.size());
+        combined.addAll(diffs);
+        combined.addAll(next.diffs);
+        final List<DiffPatch<T>> combinedParts = new ArrayList<>();
+        combinedParts.addAll(parts.isEmpty() ? List.of(this) : parts);
+        combinedParts.addAll(next.parts.isEmpty() ? List.of(next) : next.parts);
+        return new DiffPatch<>(rootName, Collections.unmodifiableList(combined), Collections.unmodifiableList(combinedParts));
+    }
+
+    /**
+     * 将补丁应用到目标对象
+     *
+     * @param target 目标对象，一般是左侧对象的副本
+     * @return 目标对象
+     * @throws IllegalStateException 路径无法解析
+     */
+    public T apply(T target) {
+        Objects.requireNonNull(target, "target");
+        if (!parts.isEmpty()) {
+            for (final DiffPatch<T> part : parts) {
+                part.apply(target);
+            }
+            return target;
+        }
+        final Map<String, List<DiffPair<?>>> texts = textHunks();
+        for (final DiffPair<?> pair : diffs) {
+            final String path = pair.path();
+            List<DiffPair<?>> hunks = null;
+            if (isTextHunk(pair)) {
+                // 同一字段的区间在第一个区间处一起应用
+                hunks = texts.remove(path.substring(0, path.lastIndexOf("-[")));
+                if (hunks == null) {
+                    continue;
+                }
+            }
+            String relative = path;
+            if (!rootName.isEmpty()) {
+                if (!path.startsWith(rootName + "-")) {
+                    throw unresolved(path);
+                }
+                relative = path.substring(rootName.length() + 1);
+            }
+            applyTo(target, relative, pair, hunks);
+        }
+        return target;
+    }
+
+    /**
+     * @return 按文本字段的路径分组的区间
+     */
+    private Map<String, List<DiffPair<?>>> textHunks() {
+        Map<String, List<DiffPair<?>>> texts = Collections.emptyMap();
+        for (final DiffPair<?> pair : diffs) {
+            if (isTextHunk(pair)) {
+                if (texts.isEmpty()) {
+                    texts = new HashMap<>();
+                }
+                final String path = pair.path();
+                texts.computeIfAbsent(path.substring(0, path.lastIndexOf("-[")), key -> new ArrayList<>()).add(pair);
+            }
+        }
+        return texts;
+    }
+
+    private static boolean isTextHunk(DiffPair<?> pair) {
+        if (!(pair.left() instanceof CharSequence) || !(pair.right() instanceof CharSequence)) {
+            return false;
+        }
+        final String path = pair.path();
+        final int index = path.lastIndexOf("-[");
+        return index >= 0 && RANGE.matcher(path).region(index + 1, path.length()).matches();
+    }
+
+    /**
+     * 在对象的字段中查找路径的第一段，展示名称可能包含分隔符，从长到短依次尝试
+     */
+    private void applyTo(Object target, String relative, DiffPair<?> pair, List<DiffPair<?>> hunks) {
+        if (hunks != null && target instanceof CharSequence) {
+            throw new IllegalStateException("Cannot apply text diff at " + pair.path() + ": only String fields can be patched");
+        }
+        final DiffPlan plan = DiffPlan.of(target.getClass());
+        FieldPlan field = plan.getField(relative);
+        if (field != null) {
+            applyField(target, field, null, pair, hunks);
+            return;
+        }
+        for (int i = relative.lastIndexOf('-'); i > 0; i = relative.lastIndexOf('-', i - 1)) {
+            field = plan.getField(relative.substring(0, i));
+            if (field != null) {
+                applyField(target, field, relative.substring(i + 1), pair, hunks);
+                return;
+            }
+        }
+        throw unresolved(pair.path());
+    }
+
+    private void applyField(Object owner, FieldPlan field, String rest, DiffPair<?> pair, List<DiffPair<?>> hunks) {
+        final Object current = field.getAccessor().get(owner);
+        if (hunks != null && rest != null && RANGE.matcher(rest).matches()) {
+            if (!(current instanceof String)) {
+                throw new IllegalStateException("Cannot apply text diff at " + pair.path() + ": only String fields can be patched");
+            }
+            write(owner, field, patchText((String) current, hunks));
+            return;
+        }
+        final Class<?> type = field.getField().getType();
+        final boolean container = Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type);
+        if (container && rest == null && (type.isInstance(pair.right())
+                || pair.right() == null && type.isInstance(pair.left()))) {
+            // 整个集合或 Map 与 null 之间的变化
+            write(owner, field, pair.right());
+            return;
+        }
+        if (container && current == null) {
+            // 从 null 开始逐个添加元素，新建字段类型的空容器
+            final Object created = newContainer(type, pair.path());
+            if (created instanceof Collection) {
+                write(owner, field, applyElement(created, rest, pair, hunks));
+            } else if (rest != null) {
+                write(owner, field, applyEntry(created, keyType(field), rest, pair, hunks));
+            } else {
+                throw unresolved(pair.path());
+            }
+            return;
+        }
+        if (current instanceof Collection && !(pair.right() instanceof Collection && rest == null)) {
+            write(owner, field, applyElement(DiffSnapshot.copyOf(current), rest, pair, hunks));
+            return;
+        }
+        if (rest == null) {
+            write(owner, field, pair.right());
+            return;
+        }
+        if (current instanceof Map) {
+            write(owner, field, applyEntry(DiffSnapshot.copyOf(current), keyType(field), rest, pair, hunks));
+            return;
+        }
+        if (current != null && current.getClass().isArray()) {
+            write(owner, field, splice(current, rest, pair));
+            return;
+        }
+        if (current == null) {
+            throw unresolved(pair.path());
+        }
+        applyTo(current, rest, pair, hunks);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object applyElement(Object copy, String rest, DiffPair<?> pair, List<DiffPair<?>> hunks) {
+        final Collection<Object> elements = (Collection<Object>) copy;
+        if (rest == null) {
+            replace(elements, pair.left(), pair.right(), pair);
+            return elements;
+        }
+        final Matcher index = INDEX.matcher(rest);
+        if (elements instanceof List && index.matches()) {
+            final List<Object> list = (List<Object>) elements;
+            final int i = Integer.parseInt(index.group(1));
+            if (i >= list.size()) {
+                throw unresolved(pair.path());
+            }
+            if (index.group(2) == null) {
+                list.set(i, pair.right());
+            } else if (list.get(i) != null) {
+                applyTo(list.get(i), index.group(2), pair, hunks);
+            } else {
+                throw unresolved(pair.path());
+            }
+            return elements;
+        }
+        // 键本身可能包含分隔符，完全相同的键优先，其次是最长的前缀
+        Object owner = null;
+        int ownerKeyLength = -1;
+        for (final Object element : elements) {
+            final String key = String.valueOf(DiffDetailBuilder.keyOf(element));
+            if (rest.equals(key)) {
+                replace(elements, element, pair.right(), pair);
+                return elements;
+            }
+            if (element != null && key.length() > ownerKeyLength && rest.startsWith(key + "-")) {
+                owner = element;
+                ownerKeyLength = key.length();
+            }
+        }
+        if (owner != null) {
+            applyTo(owner, rest.substring(ownerKeyLength + 1), pair, hunks);
+            return elements;
+        }
+        if (pair.left() == null && pair.right() != null) {
+            elements.add(pair.right());
+            return elements;
+        }
+        throw unresolved(pair.path());
+    }
+
+    private void replace(Collection<Object> elements, Object from, Object to, DiffPair<?> pair) {
+        if (from == null) {
+            elements.add(to);
+            return;
+        }
+        if (elements instanceof List) {
+            final List<Object> list = (List<Object>) elements;
+            final int index = list.indexOf(from);
+            if (index < 0) {
+                throw unresolved(pair.path());
+            }
+            if (index != list.lastIndexOf(from)) {
+                // 按下标比较的差异不含下标，有多个相等的元素时无法确定是哪一个
+                throw new IllegalStateException("Cannot apply diff at " + pair.path() + ": " + from + " occurs more than once");
+            }
+            if (to == null) {
+                list.remove(index);
+            } else {
+                list.set(index, to);
+            }
+            return;
+        }
+        if (!elements.remove(from)) {
+            throw unresolved(pair.path());
+        }
+        if (to != null) {
+            elements.add(to);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object applyEntry(Object copy, Class<?> keyType, String rest, DiffPair<?> pair, List<DiffPair<?>> hunks) {
+        final Map<Object, Object> map = (Map<Object, Object>) copy;
+        // 键本身可能包含分隔符，完全相同的键优先，其次是最长的前缀
+        Map.Entry<Object, Object> owner = null;
+        int ownerKeyLength = -1;
+        final Iterator<Map.Entry<Object, Object>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Object, Object> entry = iterator.next();
+            final String key = String.valueOf(entry.getKey());
+            if (rest.equals(key)) {
+                if (pair.right() == null) {
+                    iterator.remove();
+                } else {
+                    entry.setValue(pair.right());
+                }
+                return map;
+            }
+            if (entry.getValue() != null && key.length() > ownerKeyLength && rest.startsWith(key + "-")) {
+                owner = entry;
+                ownerKeyLength = key.length();
+            }
+        }
+        if (owner != null) {
+            applyTo(owner.getValue(), rest.substring(ownerKeyLength + 1), pair, hunks);
+            return map;
+        }
+        if (pair.right() != null) {
+            if (keyType == Object.class && !map.isEmpty()) {
+                keyType = map.keySet().iterator().next().getClass();
+            }
+            map.put(parseKey(rest, keyType, pair.path()), pair.right());
+            return map;
+        }
+        throw unresolved(pair.path());
+    }
+
+    /**
+     * 新建字段类型的空集合或 Map，接口和抽象类使用常用的实现
+     */
+    private static Object newContainer(Class<?> type, String path) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            if (type.isAssignableFrom(ArrayList.class)) {
+                return new ArrayList<>();
+            }
+            if (type.isAssignableFrom(LinkedHashSet.class)) {
+                return new LinkedHashSet<>();
+            }
+            if (type.isAssignableFrom(TreeSet.class)) {
+                return new TreeSet<>();
+            }
+            if (type.isAssignableFrom(ArrayDeque.class)) {
+                return new ArrayDeque<>();
+            }
+            if (type.isAssignableFrom(LinkedHashMap.class)) {
+                return new LinkedHashMap<>();
+            }
+            if (type.isAssignableFrom(TreeMap.class)) {
+                return new TreeMap<>();
+            }
+            throw unresolved(path);
+        }
+        try {
+            return type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot apply diff at " + path + ": cannot create " + type.getName(), e);
+        }
+    }
+
+    /**
+     * @return 字段声明的 Map 键类型，没有声明或不是具体的类时为 {@code Object}
+     */
+    private static Class<?> keyType(FieldPlan field) {
+        final Type type = field.getField().getGenericType();
+        if (type instanceof ParameterizedType) {
+            final Type key = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (key instanceof Class) {
+                return (Class<?>) key;
+            }
+        }
+        return Object.class;
+    }
+
+    /**
+     * 把路径中的键还原为 Map 的键类型
+     *
+     * @throws IllegalStateException 无法转换
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object parseKey(String text, Class<?> type, String path) {
+        try {
+            if (type == String.class || type == Object.class || type == CharSequence.class) {
+                return text;
+            }
+            if (type == Integer.class) {
+                return Integer.valueOf(text);
+            }
+            if (type == Long.class) {
+                return Long.valueOf(text);
+            }
+            if (type == Short.class) {
+                return Short.valueOf(text);
+            }
+            if (type == Byte.class) {
+                return Byte.valueOf(text);
+            }
+            if (type == Double.class) {
+                return Double.valueOf(text);
+            }
+            if (type == Float.class) {
+                return Float.valueOf(text);
+            }
+            if (type == BigDecimal.class) {
+                return new BigDecimal(text);
+            }
+            if (type == BigInteger.class) {
+                return new BigInteger(text);
+            }
+            if (type == Boolean.class && ("true".equals(text) || "false".equals(text))) {
+                return Boolean.valueOf(text);
+            }
+            if (type == Character.class && text.length() == 1) {
+                return text.charAt(0);
+            }
+            if (type == UUID.class) {
+                return UUID.fromString(text);
+            }
+            if (type.isEnum()) {
+                return Enum.valueOf((Class<? extends Enum>) type, text);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Cannot convert map key '" + text + "' to " + type.getName() + " at " + path, e);
+        }
+        throw new IllegalStateException("Cannot convert map key '" + text + "' to " + type.getName() + " at " + path);
+    }
+
+    /**
+     * 应用同一段文本的所有区间。区间是比较时左侧文本中的位置，前面的区间改变了长度时，后面的区间在目标中相应移动，
+     * 正向和反向的补丁都按左值的长度换算；从后向前替换，前面的位置不受影响
+     *
+     * @throws IllegalStateException 目标中对应位置的文本与左值不同
+     */
+    private static String patchText(String text, List<DiffPair<?>> hunks) {
+        final List<DiffPair<?>> sorted = new ArrayList<>(hunks);
+        sorted.sort(Comparator.comparingInt(DiffPatch::rangeStart));
+        final int[] starts = new int[sorted.size()];
+        int shift = 0;
+        for (int k = 0; k < sorted.size(); k++) {
+            final DiffPair<?> hunk = sorted.get(k);
+            final Matcher matcher = range(hunk);
+            final int from = Integer.parseInt(matcher.group(1));
+            final int to = Integer.parseInt(matcher.group(2));
+            starts[k] = from + shift;
+            shift += ((CharSequence) hunk.left()).length() - (to - from);
+        }
+        final StringBuilder builder = new StringBuilder(text);
+        for (int k = sorted.size() - 1; k >= 0; k--) {
+            final DiffPair<?> hunk = sorted.get(k);
+            final String present = hunk.left().toString();
+            final int start = starts[k];
+            if (start < 0 || start + present.length() > builder.length()
+                    || !builder.substring(start, start + present.length()).equals(present)) {
+                throw new IllegalStateException("Cannot apply text diff at " + hunk.path() + ": target text does not match");
+            }
+            builder.replace(start, start + present.length(), hunk.right().toString());
+        }
+        return builder.toString();
+    }
+
+    private static int rangeStart(DiffPair<?> hunk) {
+        return Integer.parseInt(range(hunk).group(1));
+    }
+
+    private static Matcher range(DiffPair<?> hunk) {
+        final String path = hunk.path();
+        final Matcher matcher = RANGE.matcher(path).region(path.lastIndexOf("-[") + 1, path.length());
+        if (!matcher.matches()) {
+            throw unresolved(path);
+        }
+        return matcher;
+    }
+
+    /**
+     * 用右值替换数组中左值所在的区间，区间两侧长度不同时数组长度随之变化
+     */
+    private Object splice(Object array, String rest, DiffPair<?> pair) {
+        final Matcher matcher = RANGE.matcher(rest);
+        final Object from = pair.left();
+        final Object to = pair.right();
+        if (!matcher.matches() || from == null || to == null
+                || from.getClass() != array.getClass() || to.getClass() != array.getClass()) {
+            throw unresolved(pair.path());
+        }
+        final int start = Integer.parseInt(matcher.group(1));
+        final int removed = Array.getLength(from);
+        final int inserted = Array.getLength(to);
+        final int length = Array.getLength(array);
+        if (start + removed > length) {
+            throw unresolved(pair.path());
+        }
+        final Object result = Array.newInstance(array.getClass().getComponentType(), length - removed + inserted);
+        System.arraycopy(array, 0, result, 0, start);
+        System.arraycopy(to, 0, result, start, inserted);
+        System.arraycopy(array, start + removed, result, start + inserted, length - start - removed);
+        return result;
+    }
+
+    private static void write(Object owner, FieldPlan field, Object value) {
+        try {
+            FieldUtils.writeField(field.getField(), owner, value, true);
+        } catch (IllegalAccessException e) {
+            ExceptionUtils.rethrow(e);
+        }
+    }
+
+    private static IllegalStateException unresolved(String path) {
+        return new IllegalStateException("Cannot apply diff at " + path);
+    }
+}
@@ -0,0 +1,266 @@
+package org.example;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.builder.DiffExclude;
+import org.apache.commons.lang3.reflect.FieldUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 类的比较计划
+ * <p>
+ * 缓存一个类参与比较的字段、字段展示名称、字段分类以及路径节点，构建一次后被所有
+ * {@link ReflectionDiffBuilder} 共享。缓存基于 {@link ClassValue}，线程安全，且随类一起被回收，
+ * 重新部署的 ClassLoader 不会因此泄漏。
+ */
+public final class DiffPlan {
+
+    private static final ClassValue<DiffPlan> PLANS = new ClassValue<>() {
+        @Override
+        protected DiffPlan computeValue(Class<?> type) {
+            return new DiffPlan(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final String documentName;
+    private final PathNode root;
+    private final List<FieldPlan> fields;
+    private final Map<String, FieldPlan> fieldsByName;
+    private final FieldPlan keyField;
+    private final FieldPlan versionField;
+    private final boolean hashVersioned;
+
+    private volatile DiffStrategy strategy;
+
+    private volatile ClassDiffer<Object> compiledDiffer;
+
+    private volatile boolean compiled;
+
+    private volatile ClassDiffer<Object> generatedDiffer;
+
+    private volatile boolean discovered;
+
+    private DiffPlan(Class<?> type) {
+        this.type = type;
+        this.documentName = ReflectionDiffBuilder.invokeName(type);
+        this.root = PathNode.root(documentName);
+        List<FieldPlan> fields = new ArrayList<>();
+        Map<String, FieldPlan> fieldsByName = new HashMap<>();
+        FieldPlan keyField = null;
+        FieldPlan versionField = null;
+        for (final Field field : FieldUtils.getAllFields(type)) {
+            if (accept(field)) {
+                FieldPlan fieldPlan = new FieldPlan(field, root);
+                fields.add(fieldPlan);
+                fieldsByName.putIfAbsent(fieldPlan.getName(), fieldPlan);
+                if (keyField == null && field.isAnnotationPresent(DiffKey.class)) {
+                    keyField = fieldPlan;
+                }
+                if (versionField == null && field.isAnnotationPresent(DiffVersion.class)) {
+                    versionField = fieldPlan;
+                }
+            }
+        }
+        this.fields = Collections.unmodifiableList(fields);
+        this.fieldsByName = fieldsByName;
+        this.keyField = keyField;
+        this.versionField = versionField;
+        this.hashVersioned = type.isAnnotationPresent(DiffVersion.class);
+    }
+
+    /**
+     * 获取类的比较计划
+     *
+     * @param type 类
+     * @return 比较计划
+     */
+    public static DiffPlan of(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return 类的展示名称，没有 {@link FieldSCName} 时为空串
+     */
+    public String getDocumentName() {
+        return documentName;
+    }
+
+    /**
+     * @return 以类展示名称为根的路径节点
+     */
+    public PathNode getRoot() {
+        return root;
+    }
+
+    public List<FieldPlan> getFields() {
+        return fields;
+    }
+
+    /**
+     * 按展示名称查找字段，展示名称重复时返回第一个
+     *
+     * @param name 展示名称
+     * @return 字段，不存在时返回 {@code null}
+     */
+    public FieldPlan getField(String name) {
+        return fieldsByName.get(name);
+    }
+
+    /**
+     * 按声明字段的类和字段名查找字段的位置，供注解处理器生成的比较器在初始化时定位字段
+     *
+     * @param declaringClass 声明字段的类的二进制名
+     * @param name           字段名
+     * @return 字段在 {@link #getFields()} 中的位置
+     * @throws IllegalArgumentException 字段不存在或被排除
+     */
+    public int fieldIndex(String declaringClass, String name) {
+        for (int i = 0; i < fields.size(); i++) {
+            final Field field = fields.get(i).getField();
+            if (field.getName().equals(name) && field.getDeclaringClass().getName().equals(declaringClass)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No field " + declaringClass + "." + name + " in the plan of " + type.getName());
+    }
+
+    /**
+     * @return 带有 {@link DiffKey} 的字段，没有时为 {@code null}
+     */
+    public FieldPlan getKeyField() {
+        return keyField;
+    }
+
+    /**
+     * @return 带有 {@link DiffVersion} 的字段，没有时为 {@code null}
+     */
+    public FieldPlan getVersionField() {
+        return versionField;
+    }
+
+    /**
+     * 判断能否用版本号判断对象没有变化：类上有 {@link DiffVersion}，或者版本字段的值不为 {@code null}
+     *
+     * @param value 对象
+     * @return 是否有版本号
+     */
+    public boolean hasVersion(Object value) {
+        if (versionField != null) {
+            return versionField.getAccessor().get(value) != null;
+        }
+        return hashVersioned;
+    }
+
+    /**
+     * 获取对象的版本号，数值类型的版本字段直接使用其值，其他类型使用其哈希值，需要先通过 {@link #hasVersion(Object)} 判断
+     *
+     * @param value 对象
+     * @return 版本号
+     */
+    public long version(Object value) {
+        if (versionField == null) {
+            return value.hashCode();
+        }
+        Object version = versionField.getAccessor().get(value);
+        return version instanceof Number ? ((Number) version).longValue() : Objects.hashCode(version);
+    }
+
+    /**
+     * @return 该类单独设置的比较方式，未设置时为 {@code null}，使用 {@link DiffStrategy#getDefault()}
+     */
+    public DiffStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * 单独设置该类的比较方式
+     *
+     * @param strategy 比较方式，{@code null} 表示使用全局设置
+     */
+    public void setStrategy(DiffStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * 按当前生效的比较方式获取比较器
+     * <p>
+     * 未单独设置比较方式时，优先使用编译期生成的 {@code XxxDiffer}
+     *
+     * @return 比较器，需要逐字段反射比较时返回 {@code null}
+     */
+    public ClassDiffer<Object> differ() {
+        if (strategy == null) {
+            ClassDiffer<Object> generated = generatedDiffer();
+            if (generated != null) {
+                return generated;
+            }
+        }
+        DiffStrategy effective = strategy != null ? strategy : DiffStrategy.getDefault();
+        if (effective != DiffStrategy.COMPILED) {
+            return null;
+        }
+        if (!compiled) {
+            synchronized (this) {
+                if (!compiled) {
+                    compiledDiffer = CompiledDiffers.compile(this);
+                    compiled = true;
+                }
+            }
+        }
+        return compiledDiffer;
+    }
+
+    /**
+     * 查找注解处理器为该类生成的比较器，名称为类的二进制名中 {@code $} 换成 {@code _} 再加上 {@code Differ}。
+     * 生成的比较器初始化时按 {@link #fieldIndex(String, String)} 定位字段，与本计划的字段不一致时不使用
+     *
+     * @return 生成的比较器，不存在时返回 {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public ClassDiffer<Object> generatedDiffer() {
+        if (!discovered) {
+            synchronized (this) {
+                if (!discovered) {
+                    String name = type.getName().replace('$', '_') + "Differ";
+                    try {
+                        Class<?> differClass = Class.forName(name, true, type.getClassLoader());
+                        if (ClassDiffer.class.isAssignableFrom(differClass)) {
+                            generatedDiffer = (ClassDiffer<Object>) differClass.getDeclaredConstructor().newInstance();
+                        }
+                    } catch (ClassNotFoundException | LinkageError e) {
+                        // 没有生成的比较器
+                    } catch (ReflectiveOperationException e) {
+                        throw new IllegalStateException("Unable to instantiate " + name, e);
+                    }
+                    discovered = true;
+                }
+            }
+        }
+        return generatedDiffer;
+    }
+
+    private static boolean accept(final Field field) {
+        if (field.getName().indexOf(ClassUtils.INNER_CLASS_SEPARATOR_CHAR) != -1) {
+            return false;
+        }
+        if (Modifier.isTransient(field.getModifiers())) {
+            return false;
+        }
+        if (Modifier.isStatic(field.getModifiers())) {
+            return false;
+        }
+        return !field.isAnnotationPresent(DiffExclude.class);
+    }
+}
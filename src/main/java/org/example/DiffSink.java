@@ -0,0 +1,114 @@
+package org.example;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * 差异的接收者，比较过程中每发现一处差异就立即推送，不需要先收集到列表中
+ * <p>
+ * {@link #isDone()} 返回 {@code true} 后比较会尽快停止，可以用来提前取消
+ */
+@FunctionalInterface
+public interface DiffSink {
+
+    /**
+     * 接收一处差异
+     *
+     * @param pair 差异
+     */
+    void accept(DiffPair<?> pair);
+
+    /**
+     * @return 是否不再需要更多差异
+     */
+    default boolean isDone() {
+        return false;
+    }
+
+    /**
+     * 只关心是否存在差异时返回 {@code false}，此时数组等较大的值不再装箱复制，推送的差异可能只有路径
+     *
+     * @return 是否需要差异的左右值
+     */
+    default boolean needsValues() {
+        return true;
+    }
+
+    static DiffSink of(Consumer<? super DiffPair<?>> consumer) {
+        Objects.requireNonNull(consumer, "consumer");
+        return consumer::accept;
+    }
+
+    static DiffSink toCollection(Collection<? super DiffPair<?>> collection) {
+        Objects.requireNonNull(collection, "collection");
+        return collection::add;
+    }
+
+    /**
+     * 最多转交 {@code maxDiffs} 处差异，达到上限后比较停止
+     *
+     * @param maxDiffs   差异数量上限
+     * @param downstream 实际的接收者
+     * @return 接收者
+     */
+    static DiffSink limit(int maxDiffs, DiffSink downstream) {
+        Validate.isTrue(maxDiffs >= 0, "maxDiffs must not be negative: %d", maxDiffs);
+        Objects.requireNonNull(downstream, "downstream");
+        return new DiffSink() {
+            private int count;
+
+            @Override
+            public void accept(DiffPair<?> pair) {
+                if (count < maxDiffs) {
+                    count++;
+                    downstream.accept(pair);
+                }
+            }
+
+            @Override
+            public boolean isDone() {
+                return count >= maxDiffs || downstream.isDone();
+            }
+
+            @Override
+            public boolean needsValues() {
+                return downstream.needsValues();
+            }
+        };
+    }
+
+    /**
+     * 写入阻塞队列，队列满时等待；等待被中断后停止比较
+     *
+     * @param queue 队列
+     * @return 接收者
+     */
+    static DiffSink toQueue(BlockingQueue<? super DiffPair<?>> queue) {
+        Objects.requireNonNull(queue, "queue");
+        return new DiffSink() {
+            private volatile boolean interrupted;
+
+            @Override
+            public void accept(DiffPair<?> pair) {
+                if (interrupted) {
+                    return;
+                }
+                try {
+                    queue.put(pair);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public boolean isDone() {
+                return interrupted;
+            }
+        };
+    }
+}
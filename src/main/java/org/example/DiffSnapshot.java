@@ -0,0 +1,577 @@
+package org.example;
+
+import org.apache.commons.lang3.ObjectUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * 对象的快照：按 {@link DiffPlan} 的字段顺序把对象展开成几列扁平数组，只保存叶子值，不持有原对象
+ * <pre>
+ * DiffSnapshot&lt;Order&gt; snapshot = DiffSnapshot.capture(order);
+ * // 修改 order 后
+ * snapshot = snapshot.diff(order, sink);
+ * </pre>
+ * 与快照比较时同时生成新对象的快照，供下一次比较使用。带有 {@link DiffVersion} 的子对象版本未变化时，
+ * 整个子树跳过比较，直接复用旧快照中的列。快照不保存旧对象本身，子对象被删除或换成其他类型时，旧对象的叶子逐个记为删除。
+ * <p>
+ * 字符串、包装类型、{@link BigDecimal}、{@link BigInteger}、枚举、{@link UUID} 和 {@code java.time} 中的类型作为叶子直接保存；
+ * {@link java.util.Date} 等可变的 JDK 类型作为叶子保存克隆，不能克隆的可变 JDK 类型仍保存引用；其他对象按字段展开。
+ * 元素都是叶子的集合、Map、数组作为叶子保存拷贝；含有对象元素时按元素展开，Map 和按键匹配的集合以
+ * {@code 路径-键} 保存每个元素，其余的集合和对象数组按下标保存在容器的路径下，元素被原地修改也能发现。
+ * 按哈希或最长公共子序列匹配的集合仍然保存浅拷贝。同一个子对象被多处引用时在每个路径下各保存一份，
+ * 循环引用只记录指向的上层路径，变化时以该路径作为左值
+ *
+ * @param <T> 对象类型
+ */
+public final class DiffSnapshot<T> {
+
+    /**
+     * 叶子值
+     */
+    private static final byte VALUE = 0;
+    /**
+     * 没有版本号的对象，值为对象的类
+     */
+    private static final byte OBJECT = 1;
+    /**
+     * 有版本号的对象，值为对象的类
+     */
+    private static final byte VERSIONED = 2;
+    /**
+     * 指向上层对象的引用，值为上层对象的路径
+     */
+    private static final byte CYCLE = 3;
+    /**
+     * 按元素展开的容器，值为容器的浅拷贝，版本号为 {@link Layout} 的序号
+     */
+    private static final byte ELEMENTS = 4;
+
+    private final Class<T> type;
+    private final PathNode[] paths;
+    private final byte[] kinds;
+    private final Object[] values;
+    /**
+     * 对象所在子树结束的位置，叶子为下一个位置
+     */
+    private final int[] ends;
+    /**
+     * 对象的版本号，循环引用向上的层数
+     */
+    private final long[] versions;
+
+    private DiffSnapshot(Class<T> type, Columns columns) {
+        this.type = type;
+        this.paths = Arrays.copyOf(columns.paths, columns.size);
+        this.kinds = Arrays.copyOf(columns.kinds, columns.size);
+        this.values = Arrays.copyOf(columns.values, columns.size);
+        this.ends = Arrays.copyOf(columns.ends, columns.size);
+        this.versions = Arrays.copyOf(columns.versions, columns.size);
+    }
+
+    /**
+     * 生成对象的快照
+     *
+     * @param value 对象
+     * @return 快照
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> DiffSnapshot<T> capture(T value) {
+        Objects.requireNonNull(value, "value");
+        final Class<T> type = (Class<T>) value.getClass();
+        final Walker walker = new Walker(null, null);
+        walker.write(DiffPlan.of(type).getRoot(), null, value);
+        return new DiffSnapshot<>(type, walker.columns);
+    }
+
+    /**
+     * 比较新对象与快照，差异推送给接收者，左值来自快照，右值来自新对象
+     *
+     * @param current 新对象
+     * @param sink    接收者，{@link DiffSink#isDone()} 后不再推送差异，但仍会生成完整的快照
+     * @return 新对象的快照
+     */
+    public DiffSnapshot<T> diff(T current, DiffSink sink) {
+        Objects.requireNonNull(current, "current");
+        Objects.requireNonNull(sink, "sink");
+        final PathNode root = paths[0];
+        final DiffDetailBuilder<T> leaves = new DiffDetailBuilder<>(root, null, current).withSink(sink);
+        final Walker walker = new Walker(this, leaves);
+        walker.compare(0, root, null, current);
+        leaves.appendNested();
+        return new DiffSnapshot<>(type, walker.columns);
+    }
+
+    /**
+     * 比较新对象与快照
+     *
+     * @param current 新对象
+     * @return 差异
+     */
+    public List<DiffPair<?>> diff(T current) {
+        final List<DiffPair<?>> diffs = new ArrayList<>();
+        diff(current, DiffSink.toCollection(diffs));
+        return diffs;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return 快照中的节点数量，包括对象节点和叶子节点
+     */
+    public int size() {
+        return paths.length;
+    }
+
+    /**
+     * 按快照顺序遍历叶子，循环引用的值为指向的上层路径，按元素展开的容器作为一个叶子
+     */
+    void forEachLeaf(BiConsumer<PathNode, Object> action) {
+        int i = 0;
+        while (i < paths.length) {
+            if (kinds[i] == VALUE || kinds[i] == CYCLE || kinds[i] == ELEMENTS) {
+                action.accept(paths[i], values[i]);
+                i = ends[i];
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * 作为一个整体保存的值：容器、字符序列、不可变的值类型，以及无法按字段展开的 JDK 类型。
+     * 其他对象，包括实现了 {@link Comparable} 的业务对象，都按字段展开
+     */
+    private static boolean isLeaf(Object value) {
+        final Class<?> type = value.getClass();
+        return type.isArray() || value instanceof Map || value instanceof Collection || value instanceof CharSequence
+                || isImmutable(value) || isPlatform(type);
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value instanceof String || value instanceof Integer || value instanceof Long || value instanceof Double
+                || value instanceof Float || value instanceof Short || value instanceof Byte || value instanceof Boolean
+                || value instanceof Character || value instanceof BigDecimal || value instanceof BigInteger
+                || value instanceof Enum || value instanceof UUID || value instanceof Class
+                || value.getClass().getPackageName().startsWith("java.time");
+    }
+
+    private static boolean isPlatform(Class<?> type) {
+        final ClassLoader loader = type.getClassLoader();
+        return loader == null || loader == ClassLoader.getPlatformClassLoader();
+    }
+
+    /**
+     * 叶子值保存的内容，可变的容器复制一份，{@link java.util.Date} 等可变的 JDK 值类型克隆一份，容器中的这类元素同样克隆
+     */
+    @SuppressWarnings("unchecked")
+    static Object copyOf(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Object[]) {
+            final Object[] copy = ((Object[]) value).clone();
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = copyElement(copy[i]);
+            }
+            return copy;
+        }
+        if (value.getClass().isArray()) {
+            return ObjectUtils.clone(value);
+        }
+        if (value instanceof SortedSet) {
+            final TreeSet<Object> copy = new TreeSet<>((Comparator<Object>) ((SortedSet<?>) value).comparator());
+            for (final Object element : (SortedSet<?>) value) {
+                copy.add(copyElement(element));
+            }
+            return copy;
+        }
+        if (value instanceof Set) {
+            final Set<Object> copy = new LinkedHashSet<>();
+            for (final Object element : (Set<?>) value) {
+                copy.add(copyElement(element));
+            }
+            return copy;
+        }
+        if (value instanceof Collection) {
+            final List<Object> copy = new ArrayList<>(((Collection<?>) value).size());
+            for (final Object element : (Collection<?>) value) {
+                copy.add(copyElement(element));
+            }
+            return copy;
+        }
+        if (value instanceof Map) {
+            final Map<Object, Object> copy = value instanceof SortedMap
+                    ? new TreeMap<>((Comparator<Object>) ((SortedMap<?, ?>) value).comparator()) : new LinkedHashMap<>();
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), copyElement(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof CharSequence && !(value instanceof String)) {
+            return value.toString();
+        }
+        return copyElement(value);
+    }
+
+    /**
+     * 可变的 JDK 值类型能克隆时克隆，业务对象和不可变的值原样返回
+     */
+    private static Object copyElement(Object value) {
+        if (value == null || isImmutable(value) || !(value instanceof Cloneable) || !isPlatform(value.getClass())
+                || value instanceof Collection || value instanceof Map) {
+            return value;
+        }
+        return ObjectUtils.cloneIfPossible(value);
+    }
+
+    /**
+     * 容器按元素展开的方式，与 {@link DiffDetailBuilder} 比较集合和 Map 时的路径一致
+     */
+    private enum Layout {
+        /**
+         * 元素都在容器的路径下
+         */
+        INDEX,
+        /**
+         * 元素在 {@code 路径-键} 下，键为 {@link DiffKey} 字段
+         */
+        KEY,
+        /**
+         * 值在 {@code 路径-键} 下
+         */
+        MAP;
+
+        private static final Layout[] VALUES = values();
+
+        /**
+         * @return 需要展开时的方式，元素都是叶子或无法展开时返回 {@code null}
+         */
+        static Layout of(Object value, FieldPlan fieldPlan) {
+            if (value instanceof Map) {
+                return hasObjects(((Map<?, ?>) value).values().toArray()) ? MAP : null;
+            }
+            if (!(value instanceof Collection) && !(value instanceof Object[])) {
+                return null;
+            }
+            final Object[] elements = elements(value);
+            if (!hasObjects(elements)) {
+                return null;
+            }
+            final CollectionDiffMode mode = fieldPlan == null ? CollectionDiffMode.AUTO : fieldPlan.getCollectionMode();
+            if (mode == CollectionDiffMode.KEY || (mode == CollectionDiffMode.AUTO && value instanceof Collection
+                    && elements[0] != null && DiffPlan.of(elements[0].getClass()).getKeyField() != null)) {
+                return KEY;
+            }
+            return mode == CollectionDiffMode.AUTO || mode == CollectionDiffMode.INDEX ? INDEX : null;
+        }
+
+        boolean accepts(Object value) {
+            return this == MAP ? value instanceof Map : value instanceof Collection || value instanceof Object[];
+        }
+
+        private static boolean hasObjects(Object[] elements) {
+            for (final Object element : elements) {
+                if (element != null && !isLeaf(element)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static Object[] elements(Object value) {
+        return value instanceof Collection ? ((Collection<?>) value).toArray() : (Object[]) value;
+    }
+
+    /**
+     * 按列追加的缓冲区
+     */
+    private static final class Columns {
+        private PathNode[] paths = new PathNode[16];
+        private byte[] kinds = new byte[16];
+        private Object[] values = new Object[16];
+        private int[] ends = new int[16];
+        private long[] versions = new long[16];
+        private int size;
+
+        int add(PathNode path, byte kind, Object value, long version) {
+            ensureCapacity(size + 1);
+            paths[size] = path;
+            kinds[size] = kind;
+            values[size] = value;
+            versions[size] = version;
+            ends[size] = size + 1;
+            return size++;
+        }
+
+        void end(int index) {
+            ends[index] = size;
+        }
+
+        /**
+         * 原样复制另一个快照中 {@code [from, to)} 的子树
+         */
+        void copy(DiffSnapshot<?> snapshot, int from, int to) {
+            final int length = to - from;
+            ensureCapacity(size + length);
+            System.arraycopy(snapshot.paths, from, paths, size, length);
+            System.arraycopy(snapshot.kinds, from, kinds, size, length);
+            System.arraycopy(snapshot.values, from, values, size, length);
+            System.arraycopy(snapshot.versions, from, versions, size, length);
+            final int shift = size - from;
+            for (int i = 0; i < length; i++) {
+                ends[size + i] = snapshot.ends[from + i] + shift;
+            }
+            size += length;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > paths.length) {
+                final int length = Math.max(capacity, paths.length * 2);
+                paths = Arrays.copyOf(paths, length);
+                kinds = Arrays.copyOf(kinds, length);
+                values = Arrays.copyOf(values, length);
+                ends = Arrays.copyOf(ends, length);
+                versions = Arrays.copyOf(versions, length);
+            }
+        }
+    }
+
+    /**
+     * 按字段顺序遍历新对象，同时推进旧快照中的位置并写出新快照
+     */
+    private static final class Walker {
+        private final DiffSnapshot<?> old;
+        private final DiffDetailBuilder<?> leaves;
+        private final Columns columns = new Columns();
+        /**
+         * 当前路径上的对象及其所在的层数和路径，用于识别循环引用
+         */
+        private final Map<Object, Integer> depths = new IdentityHashMap<>();
+        private final List<PathNode> ancestors = new ArrayList<>();
+
+        Walker(DiffSnapshot<?> old, DiffDetailBuilder<?> leaves) {
+            this.old = old;
+            this.leaves = leaves;
+        }
+
+        void write(PathNode path, FieldPlan fieldPlan, Object value) {
+            if (value == null || isLeaf(value)) {
+                final Layout layout = value == null ? null : Layout.of(value, fieldPlan);
+                if (layout != null) {
+                    writeElements(path, layout, value);
+                } else {
+                    columns.add(path, VALUE, copyOf(value), 0);
+                }
+                return;
+            }
+            final Integer depth = depths.get(value);
+            if (depth != null) {
+                columns.add(path, CYCLE, ancestors.get(depth), ancestors.size() - depth);
+                return;
+            }
+            final DiffPlan plan = DiffPlan.of(value.getClass());
+            final int index = addObject(path, plan, value);
+            enter(path, value);
+            for (final FieldPlan field : plan.getFields()) {
+                write(field.nodeUnder(path), field, field.getAccessor().get(value));
+            }
+            exit(value);
+            columns.end(index);
+        }
+
+        private void writeElements(PathNode path, Layout layout, Object value) {
+            final int index = columns.add(path, ELEMENTS, copyOf(value), layout.ordinal());
+            if (layout == Layout.MAP) {
+                for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    write(path.detachedChild(String.valueOf(entry.getKey())), null, entry.getValue());
+                }
+            } else {
+                for (final Object element : elements(value)) {
+                    write(layout == Layout.KEY ? keyPath(path, element) : path, null, element);
+                }
+            }
+            columns.end(index);
+        }
+
+        /**
+         * 比较旧快照中按元素展开的容器与新容器，元素的匹配方式与 {@link DiffDetailBuilder} 相同
+         */
+        private int compareElements(int i, PathNode path, Layout layout, Object value) {
+            final int end = old.ends[i];
+            final int index = columns.add(path, ELEMENTS, copyOf(value), layout.ordinal());
+            if (layout == Layout.INDEX) {
+                int child = i + 1;
+                for (final Object element : elements(value)) {
+                    if (child < end) {
+                        child = compare(child, path, null, element);
+                    } else {
+                        emit(path, null, element);
+                        write(path, null, element);
+                    }
+                }
+                for (; child < end; child = old.ends[child]) {
+                    replaced(child, path, null);
+                }
+            } else {
+                final Map<String, Integer> children = new LinkedHashMap<>();
+                for (int child = i + 1; child < end; child = old.ends[child]) {
+                    children.putIfAbsent(old.paths[child].getSegment(), child);
+                }
+                if (layout == Layout.MAP) {
+                    for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                        compareElement(children, path.detachedChild(String.valueOf(entry.getKey())), entry.getValue());
+                    }
+                } else {
+                    for (final Object element : elements(value)) {
+                        compareElement(children, keyPath(path, element), element);
+                    }
+                }
+                for (final int child : children.values()) {
+                    replaced(child, old.paths[child], null);
+                }
+            }
+            columns.end(index);
+            return end;
+        }
+
+        private void compareElement(Map<String, Integer> children, PathNode path, Object element) {
+            final Integer child = children.remove(path.getSegment());
+            if (child != null) {
+                compare(child, path, null, element);
+            } else {
+                emit(path, null, element);
+                write(path, null, element);
+            }
+        }
+
+        private static PathNode keyPath(PathNode path, Object element) {
+            return path.detachedChild(String.valueOf(DiffDetailBuilder.keyOf(element)));
+        }
+
+        /**
+         * 比较旧快照中第 {@code i} 个节点与新值
+         *
+         * @return 旧快照中下一个兄弟节点的位置
+         */
+        int compare(int i, PathNode path, FieldPlan fieldPlan, Object value) {
+            final byte kind = old.kinds[i];
+            final Object previous = old.values[i];
+            final int next = old.ends[i];
+            if (value == null || isLeaf(value)) {
+                if (kind == ELEMENTS) {
+                    final Layout layout = Layout.VALUES[(int) old.versions[i]];
+                    if (layout.accepts(value)) {
+                        return compareElements(i, path, layout, value);
+                    }
+                    replaced(i, path, value);
+                    write(path, fieldPlan, value);
+                    return next;
+                }
+                final Object current = value instanceof CharSequence ? value.toString() : value;
+                if (kind == VALUE) {
+                    if (fieldPlan != null && fieldPlan.getCollectionMode() != CollectionDiffMode.AUTO
+                            && (previous instanceof Collection || current instanceof Collection)) {
+                        leaves.append(path, (Collection<?>) previous, (Collection<?>) current, fieldPlan.getCollectionMode());
+                    } else {
+                        leaves.append(path, previous, current);
+                    }
+                } else {
+                    replaced(i, path, value);
+                }
+                write(path, fieldPlan, value);
+                return next;
+            }
+            final Integer depth = depths.get(value);
+            if (depth != null) {
+                final long levels = ancestors.size() - depth;
+                if (kind != CYCLE || old.versions[i] != levels) {
+                    replaced(i, path, value);
+                }
+                columns.add(path, CYCLE, ancestors.get(depth), levels);
+                return next;
+            }
+            if ((kind != OBJECT && kind != VERSIONED) || previous != value.getClass()) {
+                replaced(i, path, value);
+                write(path, fieldPlan, value);
+                return next;
+            }
+            final DiffPlan plan = DiffPlan.of(value.getClass());
+            if (kind == VERSIONED && plan.hasVersion(value) && plan.version(value) == old.versions[i]) {
+                columns.copy(old, i, next);
+                return next;
+            }
+            final int index = addObject(path, plan, value);
+            enter(path, value);
+            int child = i + 1;
+            for (final FieldPlan field : plan.getFields()) {
+                child = compare(child, field.nodeUnder(path), field, field.getAccessor().get(value));
+            }
+            exit(value);
+            columns.end(index);
+            return next;
+        }
+
+        /**
+         * 旧节点与新值的结构不同：旧对象的叶子全部记为删除，新值整体记为新增
+         */
+        private void replaced(int i, PathNode path, Object value) {
+            final byte kind = old.kinds[i];
+            if (kind == VALUE || kind == CYCLE) {
+                emit(path, old.values[i], value);
+                return;
+            }
+            for (int j = i + 1; j < old.ends[i]; j++) {
+                if (old.kinds[j] != OBJECT && old.kinds[j] != VERSIONED && old.kinds[j] != ELEMENTS && old.values[j] != null) {
+                    emit(old.paths[j], old.values[j], null);
+                }
+            }
+            if (value != null) {
+                emit(path, null, value);
+            }
+        }
+
+        private void emit(PathNode path, Object left, Object right) {
+            if (left != right && !leaves.isDone()) {
+                leaves.emit(new DiffPair<>(path, left, right));
+            }
+        }
+
+        private int addObject(PathNode path, DiffPlan plan, Object value) {
+            if (plan.hasVersion(value)) {
+                return columns.add(path, VERSIONED, value.getClass(), plan.version(value));
+            }
+            return columns.add(path, OBJECT, value.getClass(), 0);
+        }
+
+        private void enter(PathNode path, Object value) {
+            depths.put(value, ancestors.size());
+            ancestors.add(path);
+        }
+
+        private void exit(Object value) {
+            depths.remove(value);
+            ancestors.remove(ancestors.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.example;
+
+import java.util.Objects;
+
+/**
+ * {@link ReflectionDiffBuilder} 比较字段的方式，可全局设置，也可以通过 {@link DiffPlan#setStrategy(DiffStrategy)} 按类设置。
+ * 类未单独设置时，编译期生成的比较器优先于全局设置
+ */
+public enum DiffStrategy {
+    /**
+     * 遍历 {@link DiffPlan} 中的字段逐个比较
+     */
+    REFLECTION,
+    /**
+     * 将类的所有字段读取与比较组合成一个 {@link java.lang.invoke.MethodHandle}，
+     * 无法编译时自动退回 {@link #REFLECTION}
+     */
+    COMPILED;
+
+    private static volatile DiffStrategy defaultStrategy = REFLECTION;
+
+    public static DiffStrategy getDefault() {
+        return defaultStrategy;
+    }
+
+    public static void setDefault(DiffStrategy strategy) {
+        defaultStrategy = Objects.requireNonNull(strategy, "strategy");
+    }
+}
@@ -0,0 +1,21 @@
+package org.example;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记版本号，与 {@link DiffSnapshot} 比较时版本未变化的子对象整体跳过
+ * <p>
+ * 标注在字段上时使用该字段的值作为版本；标注在类上时使用 {@link Object#hashCode()}，
+ * 只应用于 {@code hashCode} 覆盖所有字段的类，哈希碰撞时变化会被漏掉
+ * <p>
+ * 快照比较时版本未变化的对象连同子对象整体跳过，子对象、容器在原地修改后上层对象的版本也必须变化。
+ * {@link DiffFingerprints#byVersion()} 只用版本字段复用对象本层字段的哈希，子对象仍各自计算，不依赖上层版本；
+ * 标注在类上时不缓存，因为没有覆盖 {@code hashCode} 的类修改后哈希不变
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.TYPE})
+public @interface DiffVersion {
+}
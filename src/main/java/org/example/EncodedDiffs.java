@@ -0,0 +1,386 @@
+package org.example;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import static org.example.DiffCodec.*;
+
+/**
+ * {@link DiffCodec} 编码内容的只读视图，只在访问时解码对应的路径和值
+ * <p>
+ * 读取只使用绝对位置，可以被多个线程同时访问。内存映射时文件不能超过 2GB
+ */
+public final class EncodedDiffs implements Iterable<DiffPair<?>> {
+
+    private final ByteBuffer buffer;
+    private final String rootName;
+    private final int pathCount;
+    private final int size;
+    private final int indexOffset;
+    private final String[] paths;
+
+    private EncodedDiffs(ByteBuffer buffer) {
+        this.buffer = buffer;
+        final int limit = buffer.limit();
+        if (limit < FOOTER_SIZE + 5 || buffer.getInt(0) != MAGIC || buffer.getInt(limit - 4) != MAGIC) {
+            throw new IllegalArgumentException("Not an encoded diff result");
+        }
+        if (buffer.get(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported version: " + buffer.get(4));
+        }
+        this.pathCount = buffer.getInt(limit - 16);
+        this.size = buffer.getInt(limit - 12);
+        this.indexOffset = buffer.getInt(limit - 8);
+        this.paths = new String[pathCount];
+        final Cursor cursor = new Cursor(buffer, 5);
+        this.rootName = cursor.readByte() == NULL ? null : cursor.readString();
+    }
+
+    /**
+     * 读取编码后的内容，不复制
+     *
+     * @param buffer 从 position 到 limit 为完整的编码内容
+     * @return 只读视图
+     */
+    public static EncodedDiffs of(ByteBuffer buffer) {
+        Objects.requireNonNull(buffer, "buffer");
+        return new EncodedDiffs(buffer.slice());
+    }
+
+    /**
+     * 以内存映射的方式打开 {@link DiffCodec#write} 写出的文件
+     *
+     * @param file 文件
+     * @return 只读视图
+     * @throws IOException 读取失败
+     */
+    public static EncodedDiffs map(java.nio.file.Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new EncodedDiffs(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public String getRootName() {
+        return rootName;
+    }
+
+    /**
+     * @return 差异数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index 差异序号
+     * @return 差异的路径
+     */
+    public String getPath(int index) {
+        return path(new Cursor(buffer, diffOffset(index)).readVarintInt());
+    }
+
+    public Object getLeft(int index) {
+        final Cursor cursor = new Cursor(buffer, diffOffset(index));
+        cursor.readVarintInt();
+        return cursor.readValue();
+    }
+
+    public Object getRight(int index) {
+        final Cursor cursor = new Cursor(buffer, diffOffset(index));
+        cursor.readVarintInt();
+        cursor.skipValue();
+        return cursor.readValue();
+    }
+
+    /**
+     * 解码一处差异
+     *
+     * @param index 差异序号
+     * @return 差异
+     */
+    public DiffPair<Object> get(int index) {
+        final Cursor cursor = new Cursor(buffer, diffOffset(index));
+        final String path = path(cursor.readVarintInt());
+        final Object left = cursor.readValue();
+        final Object right = cursor.readValue();
+        return new DiffPair<>(path, left, right);
+    }
+
+    @Override
+    public Iterator<DiffPair<?>> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public DiffPair<?> next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    private int diffOffset(int index) {
+        Objects.checkIndex(index, size);
+        return buffer.getInt(indexOffset + (pathCount + index) * 4);
+    }
+
+    private String path(int pathIndex) {
+        String path = paths[pathIndex];
+        if (path == null) {
+            path = new Cursor(buffer, buffer.getInt(indexOffset + pathIndex * 4)).readString();
+            paths[pathIndex] = path;
+        }
+        return path;
+    }
+
+    /**
+     * 一次读取的当前位置
+     */
+    static final class Cursor {
+        private final ByteBuffer buffer;
+        private int position;
+
+        Cursor(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int position() {
+            return position;
+        }
+
+        byte readByte() {
+            return buffer.get(position++);
+        }
+
+        int readInt() {
+            final int value = buffer.getInt(position);
+            position += 4;
+            return value;
+        }
+
+        long readLong() {
+            final long value = buffer.getLong(position);
+            position += 8;
+            return value;
+        }
+
+        long readVarint() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        int readVarintInt() {
+            return (int) readVarint();
+        }
+
+        long readSigned() {
+            final long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        byte[] readBytes() {
+            final byte[] bytes = new byte[readVarintInt()];
+            buffer.get(position, bytes);
+            position += bytes.length;
+            return bytes;
+        }
+
+        String readString() {
+            return new String(readBytes(), StandardCharsets.UTF_8);
+        }
+
+        Object readValue() {
+            final byte tag = readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case FALSE:
+                    return Boolean.FALSE;
+                case TRUE:
+                    return Boolean.TRUE;
+                case BYTE:
+                    return readByte();
+                case SHORT:
+                    return (short) readSigned();
+                case CHAR:
+                    return (char) readVarint();
+                case INT:
+                    return (int) readSigned();
+                case LONG:
+                    return readSigned();
+                case FLOAT:
+                    return Float.intBitsToFloat(readInt());
+                case DOUBLE:
+                    return Double.longBitsToDouble(readLong());
+                case STRING:
+                    return readString();
+                case ENUM:
+                    return readEnum();
+                case OPAQUE:
+                    return new OpaqueValue(readString(), readString());
+                case BIG_INTEGER:
+                    return new BigInteger(readBytes());
+                case BIG_DECIMAL: {
+                    final int scale = (int) readSigned();
+                    return new BigDecimal(new BigInteger(readBytes()), scale);
+                }
+                case BOOLEAN_ARRAY: {
+                    final boolean[] array = new boolean[readVarintInt()];
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = readByte() != 0;
+                    }
+                    return array;
+                }
+                case BYTE_ARRAY:
+                    return readBytes();
+                case SHORT_ARRAY: {
+                    final short[] array = new short[readVarintInt()];
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = (short) readSigned();
+                    }
+                    return array;
+                }
+                case CHAR_ARRAY: {
+                    final char[] array = new char[readVarintInt()];
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = (char) readVarint();
+                    }
+                    return array;
+                }
+                case INT_ARRAY: {
+                    final int[] array = new int[readVarintInt()];
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = (int) readSigned();
+                    }
+                    return array;
+                }
+                case LONG_ARRAY: {
+                    final long[] array = new long[readVarintInt()];
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = readSigned();
+                    }
+                    return array;
+                }
+                case FLOAT_ARRAY: {
+                    final float[] array = new float[readVarintInt()];
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = Float.intBitsToFloat(readInt());
+                    }
+                    return array;
+                }
+                case DOUBLE_ARRAY: {
+                    final double[] array = new double[readVarintInt()];
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = Double.longBitsToDouble(readLong());
+                    }
+                    return array;
+                }
+                case OBJECT_ARRAY: {
+                    final Object[] array = new Object[readVarintInt()];
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = readValue();
+                    }
+                    return array;
+                }
+                case LIST: {
+                    final int length = readVarintInt();
+                    final List<Object> list = new ArrayList<>(length);
+                    for (int i = 0; i < length; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                }
+                case MAP: {
+                    final int length = readVarintInt();
+                    final Map<Object, Object> map = new LinkedHashMap<>();
+                    for (int i = 0; i < length; i++) {
+                        map.put(readValue(), readValue());
+                    }
+                    return map;
+                }
+                default:
+                    throw new IllegalStateException("Unknown value tag " + tag + " at " + (position - 1));
+            }
+        }
+
+        /**
+         * 按类名加载枚举，当前类加载器找不到该类或常量时读回为 {@link OpaqueValue}
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Object readEnum() {
+            final String type = readString();
+            final String name = readString();
+            try {
+                final Class<?> enumType = Class.forName(type, false, EncodedDiffs.class.getClassLoader());
+                if (enumType.isEnum()) {
+                    return Enum.valueOf((Class) enumType, name);
+                }
+            } catch (ClassNotFoundException | IllegalArgumentException e) {
+                // 按不支持的类型返回
+            }
+            return new OpaqueValue(type, name);
+        }
+
+        /**
+         * 跳过一个值，定长的内容不解码
+         */
+        void skipValue() {
+            final byte tag = buffer.get(position);
+            final int width;
+            switch (tag) {
+                case STRING:
+                case BYTE_ARRAY:
+                case BIG_INTEGER:
+                    width = 1;
+                    break;
+                case FLOAT_ARRAY:
+                    width = 4;
+                    break;
+                case DOUBLE_ARRAY:
+                    width = 8;
+                    break;
+                case ENUM:
+                case OPAQUE:
+                    position++;
+                    for (int i = 0; i < 2; i++) {
+                        final int length = readVarintInt();
+                        position += length;
+                    }
+                    return;
+                default:
+                    readValue();
+                    return;
+            }
+            position++;
+            final int length = readVarintInt();
+            position += length * width;
+        }
+    }
+}
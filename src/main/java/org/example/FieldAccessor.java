@@ -0,0 +1,30 @@
+package org.example;
+
+/**
+ * 字段读取器，每个字段在 {@link FieldPlan} 中创建一次后复用
+ */
+public interface FieldAccessor {
+
+    /**
+     * 读取字段值，基础类型会被装箱
+     *
+     * @param target 目标对象
+     * @return 字段值
+     */
+    Object get(Object target);
+
+    /**
+     * 两个对象上该字段的值是否相同。
+     * 基础类型按值比较且不装箱，语义与包装类型的 {@code equals} 一致；对象类型只比较引用
+     *
+     * @param left  左对象
+     * @param right 右对象
+     * @return 是否相同
+     */
+    boolean same(Object left, Object right);
+
+    /**
+     * @return 字段是否为基础类型
+     */
+    boolean isPrimitive();
+}
@@ -0,0 +1,12 @@
+package org.example;
+
+import java.lang.reflect.Field;
+
+/**
+ * {@link FieldAccessor} 的创建方式，参见 {@link FieldAccessors}
+ */
+@FunctionalInterface
+public interface FieldAccessorFactory {
+
+    FieldAccessor create(Field field);
+}
@@ -0,0 +1,364 @@
+package org.example;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.Objects;
+
+/**
+ * 内置的 {@link FieldAccessorFactory}
+ * <ul>
+ *     <li>{@link #METHOD_HANDLE} 为每个字段编译一次 {@link MethodHandle}，基础类型字段按类型特化，比较时不装箱。
+ *     句柄保存在读取器的实例字段中，对 JIT 来说不是常量，每次读取仍是一次间接调用</li>
+ *     <li>{@link #REFLECTION} 通过 {@link FieldUtils#readField(Field, Object, boolean)} 读取</li>
+ * </ul>
+ * 需要在第一次比较前通过 {@link #setDefaultFactory(FieldAccessorFactory)} 切换，已缓存的 {@link DiffPlan} 不受影响
+ */
+public enum FieldAccessors implements FieldAccessorFactory {
+    METHOD_HANDLE {
+        @Override
+        public FieldAccessor create(Field field) {
+            final MethodHandle getter;
+            try {
+                getter = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup())
+                        .unreflectGetter(field);
+            } catch (IllegalAccessException | RuntimeException e) {
+                // 模块未开放等情况下退回反射
+                return REFLECTION.create(field);
+            }
+            final Class<?> type = field.getType();
+            if (type == int.class) {
+                return new IntAccessor(getter);
+            }
+            if (type == long.class) {
+                return new LongAccessor(getter);
+            }
+            if (type == double.class) {
+                return new DoubleAccessor(getter);
+            }
+            if (type == float.class) {
+                return new FloatAccessor(getter);
+            }
+            if (type == boolean.class) {
+                return new BooleanAccessor(getter);
+            }
+            if (type == byte.class) {
+                return new ByteAccessor(getter);
+            }
+            if (type == short.class) {
+                return new ShortAccessor(getter);
+            }
+            if (type == char.class) {
+                return new CharAccessor(getter);
+            }
+            return new ObjectAccessor(getter);
+        }
+    },
+    REFLECTION {
+        @Override
+        public FieldAccessor create(Field field) {
+            return new ReflectionAccessor(field);
+        }
+    };
+
+    private static volatile FieldAccessorFactory defaultFactory = METHOD_HANDLE;
+
+    public static FieldAccessorFactory getDefaultFactory() {
+        return defaultFactory;
+    }
+
+    /**
+     * 设置 {@link DiffPlan} 创建字段读取器时使用的工厂
+     *
+     * @param factory 工厂
+     */
+    public static void setDefaultFactory(FieldAccessorFactory factory) {
+        defaultFactory = Objects.requireNonNull(factory, "factory");
+    }
+
+    private static MethodHandle adapt(MethodHandle getter, Class<?> returnType) {
+        return getter.asType(MethodType.methodType(returnType, Object.class));
+    }
+
+    private static RuntimeException rethrow(Throwable throwable) {
+        return ExceptionUtils.rethrow(throwable);
+    }
+
+    private static final class ReflectionAccessor implements FieldAccessor {
+        private final Field field;
+
+        ReflectionAccessor(Field field) {
+            this.field = field;
+        }
+
+        @Override
+        public Object get(Object target) {
+            try {
+                return FieldUtils.readField(field, target, true);
+            } catch (final IllegalAccessException e) {
+                // this can't happen. Would get a Security exception instead
+                // throw a runtime exception in case the impossible happens.
+                throw new IllegalArgumentException("Unexpected IllegalAccessException: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public boolean same(Object left, Object right) {
+            Object lhs = get(left);
+            Object rhs = get(right);
+            return isPrimitive() ? lhs.equals(rhs) : lhs == rhs;
+        }
+
+        @Override
+        public boolean isPrimitive() {
+            return field.getType().isPrimitive();
+        }
+    }
+
+    private static final class ObjectAccessor implements FieldAccessor {
+        private final MethodHandle getter;
+
+        ObjectAccessor(MethodHandle getter) {
+            this.getter = adapt(getter, Object.class);
+        }
+
+        @Override
+        public Object get(Object target) {
+            try {
+                return (Object) getter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public boolean same(Object left, Object right) {
+            return get(left) == get(right);
+        }
+
+        @Override
+        public boolean isPrimitive() {
+            return false;
+        }
+    }
+
+    private abstract static class PrimitiveAccessor implements FieldAccessor {
+        @Override
+        public boolean isPrimitive() {
+            return true;
+        }
+    }
+
+    private static final class IntAccessor extends PrimitiveAccessor {
+        private final MethodHandle getter;
+
+        IntAccessor(MethodHandle getter) {
+            this.getter = adapt(getter, int.class);
+        }
+
+        int getInt(Object target) {
+            try {
+                return (int) getter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public Object get(Object target) {
+            return getInt(target);
+        }
+
+        @Override
+        public boolean same(Object left, Object right) {
+            return getInt(left) == getInt(right);
+        }
+    }
+
+    private static final class LongAccessor extends PrimitiveAccessor {
+        private final MethodHandle getter;
+
+        LongAccessor(MethodHandle getter) {
+            this.getter = adapt(getter, long.class);
+        }
+
+        long getLong(Object target) {
+            try {
+                return (long) getter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public Object get(Object target) {
+            return getLong(target);
+        }
+
+        @Override
+        public boolean same(Object left, Object right) {
+            return getLong(left) == getLong(right);
+        }
+    }
+
+    private static final class DoubleAccessor extends PrimitiveAccessor {
+        private final MethodHandle getter;
+
+        DoubleAccessor(MethodHandle getter) {
+            this.getter = adapt(getter, double.class);
+        }
+
+        double getDouble(Object target) {
+            try {
+                return (double) getter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public Object get(Object target) {
+            return getDouble(target);
+        }
+
+        @Override
+        public boolean same(Object left, Object right) {
+            // 与 Double.equals 一致：NaN 与自身相等，0.0 与 -0.0 不等
+            return Double.doubleToLongBits(getDouble(left)) == Double.doubleToLongBits(getDouble(right));
+        }
+    }
+
+    private static final class FloatAccessor extends PrimitiveAccessor {
+        private final MethodHandle getter;
+
+        FloatAccessor(MethodHandle getter) {
+            this.getter = adapt(getter, float.class);
+        }
+
+        float getFloat(Object target) {
+            try {
+                return (float) getter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public Object get(Object target) {
+            return getFloat(target);
+        }
+
+        @Override
+        public boolean same(Object left, Object right) {
+            return Float.floatToIntBits(getFloat(left)) == Float.floatToIntBits(getFloat(right));
+        }
+    }
+
+    private static final class BooleanAccessor extends PrimitiveAccessor {
+        private final MethodHandle getter;
+
+        BooleanAccessor(MethodHandle getter) {
+            this.getter = adapt(getter, boolean.class);
+        }
+
+        boolean getBoolean(Object target) {
+            try {
+                return (boolean) getter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public Object get(Object target) {
+            return getBoolean(target);
+        }
+
+        @Override
+        public boolean same(Object left, Object right) {
+            return getBoolean(left) == getBoolean(right);
+        }
+    }
+
+    private static final class ByteAccessor extends PrimitiveAccessor {
+        private final MethodHandle getter;
+
+        ByteAccessor(MethodHandle getter) {
+            this.getter = adapt(getter, byte.class);
+        }
+
+        byte getByte(Object target) {
+            try {
+                return (byte) getter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public Object get(Object target) {
+            return getByte(target);
+        }
+
+        @Override
+        public boolean same(Object left, Object right) {
+            return getByte(left) == getByte(right);
+        }
+    }
+
+    private static final class ShortAccessor extends PrimitiveAccessor {
+        private final MethodHandle getter;
+
+        ShortAccessor(MethodHandle getter) {
+            this.getter = adapt(getter, short.class);
+        }
+
+        short getShort(Object target) {
+            try {
+                return (short) getter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public Object get(Object target) {
+            return getShort(target);
+        }
+
+        @Override
+        public boolean same(Object left, Object right) {
+            return getShort(left) == getShort(right);
+        }
+    }
+
+    private static final class CharAccessor extends PrimitiveAccessor {
+        private final MethodHandle getter;
+
+        CharAccessor(MethodHandle getter) {
+            this.getter = adapt(getter, char.class);
+        }
+
+        char getChar(Object target) {
+            try {
+                return (char) getter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        public Object get(Object target) {
+            return getChar(target);
+        }
+
+        @Override
+        public boolean same(Object left, Object right) {
+            return getChar(left) == getChar(right);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.example;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 字段按声明类型的分类，在构建 {@link DiffPlan} 时确定一次
+ */
+public enum FieldKind {
+    /**
+     * 基础类型字段，如 {@code int}、{@code double}
+     */
+    PRIMITIVE,
+    /**
+     * 基础类型数组，如 {@code int[]}
+     */
+    PRIMITIVE_ARRAY,
+    /**
+     * 对象数组
+     */
+    OBJECT_ARRAY,
+    /**
+     * {@link Collection} 类型
+     */
+    COLLECTION,
+    /**
+     * {@link Map} 类型
+     */
+    MAP,
+    /**
+     * 直接按值比较的类型：包装类型、字符串、枚举
+     */
+    VALUE,
+    /**
+     * 其他对象，运行期再按实际类型处理
+     */
+    OBJECT;
+
+    public static FieldKind of(Class<?> type) {
+        if (type.isPrimitive()) {
+            return PRIMITIVE;
+        }
+        if (type.isArray()) {
+            return type.getComponentType().isPrimitive() ? PRIMITIVE_ARRAY : OBJECT_ARRAY;
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            return COLLECTION;
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return MAP;
+        }
+        if (Number.class.isAssignableFrom(type) || CharSequence.class.isAssignableFrom(type)
+                || type == Boolean.class || type == Character.class || type.isEnum()) {
+            return VALUE;
+        }
+        return OBJECT;
+    }
+}
@@ -0,0 +1,69 @@
+package org.example;
+
+import java.lang.reflect.Field;
+
+/**
+ * {@link DiffPlan} 中的单个字段：字段本身、展示名称、分类、读取器以及在类默认文档路径下的节点
+ */
+public final class FieldPlan {
+    private final Field field;
+    private final String name;
+    private final FieldKind kind;
+    private final FieldAccessor accessor;
+    private final CollectionDiffMode collectionMode;
+    private final PathNode node;
+
+    FieldPlan(Field field, PathNode root) {
+        this.field = field;
+        this.name = ReflectionDiffBuilder.invokeName(field);
+        this.kind = FieldKind.of(field.getType());
+        this.accessor = FieldAccessors.getDefaultFactory().create(field);
+        DiffCollection diffCollection = field.getAnnotation(DiffCollection.class);
+        this.collectionMode = diffCollection == null ? CollectionDiffMode.AUTO : diffCollection.value();
+        this.node = root.child(name);
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * @return 字段展示名称，{@link FieldSCName} 或字段名
+     */
+    public String getName() {
+        return name;
+    }
+
+    public FieldKind getKind() {
+        return kind;
+    }
+
+    public FieldAccessor getAccessor() {
+        return accessor;
+    }
+
+    /**
+     * @return {@link DiffCollection} 指定的集合比较方式，未指定时为 {@link CollectionDiffMode#AUTO}
+     */
+    public CollectionDiffMode getCollectionMode() {
+        return collectionMode;
+    }
+
+    /**
+     * 获取字段在指定文档路径下的节点，文档路径为类的默认路径时直接返回预先获取的节点
+     *
+     * @param documentPath 文档路径
+     * @return 字段路径
+     */
+    public PathNode nodeUnder(PathNode documentPath) {
+        if (node.getParent() == documentPath) {
+            return node;
+        }
+        return documentPath.child(name);
+    }
+
+    @Override
+    public String toString() {
+        return node.getPath();
+    }
+}
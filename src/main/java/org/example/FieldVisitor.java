@@ -0,0 +1,15 @@
+package org.example;
+
+/**
+ * 接收 {@link ClassDiffer} 发现的可能不同的字段
+ */
+@FunctionalInterface
+public interface FieldVisitor {
+
+    /**
+     * @param index 字段在 {@link DiffPlan#getFields()} 中的位置，展示名称可能重复，不能用来定位字段
+     * @param left  左值，基础类型已装箱
+     * @param right 右值，基础类型已装箱
+     */
+    void visit(int index, Object left, Object right);
+}
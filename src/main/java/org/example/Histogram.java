@@ -0,0 +1,38 @@
+package org.example;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按 2 的幂分桶的计数，第 {@code i} 个桶统计 {@code [2^(i-1), 2^i)} 范围内的值，第 0 个桶统计 0
+ */
+final class Histogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void record(long value) {
+        counts.incrementAndGet(value <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value)));
+    }
+
+    /**
+     * @return 去掉末尾空桶后的计数
+     */
+    long[] snapshot() {
+        int length = BUCKETS;
+        while (length > 0 && counts.get(length - 1) == 0) {
+            length--;
+        }
+        long[] snapshot = new long[length];
+        for (int i = 0; i < length; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.example;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 三方比较中一个路径上的变化
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public final class MergeChange {
+    private final String path;
+    private final MergeKind kind;
+    /**
+     * 共同祖先的值
+     */
+    private final Object base;
+    /**
+     * 我方的值
+     */
+    private final Object ours;
+    /**
+     * 对方的值
+     */
+    private final Object theirs;
+}
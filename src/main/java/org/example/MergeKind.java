@@ -0,0 +1,23 @@
+package org.example;
+
+/**
+ * 三方比较中一个路径的变化情况，两侧都没有变化的路径不会出现
+ */
+public enum MergeKind {
+    /**
+     * 只有我方修改，合并时保留我方的值
+     */
+    OURS,
+    /**
+     * 只有对方修改，合并时采用对方的值
+     */
+    THEIRS,
+    /**
+     * 双方做了相同的修改
+     */
+    BOTH,
+    /**
+     * 双方做了不同的修改，需要人工处理
+     */
+    CONFLICT
+}
@@ -0,0 +1,169 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Myers 差分算法，线性空间版本：每次寻找中间蛇分成两半递归，内存与输入长度成正比
+ * <p>
+ * 两侧的元素只通过下标访问，由调用方给出相等判断，结果按从前到后的顺序回调
+ */
+final class MyersDiff {
+
+    /**
+     * 判断左侧第 {@code a} 个元素与右侧第 {@code b} 个元素是否相等
+     */
+    @FunctionalInterface
+    interface Equality {
+        boolean test(int a, int b);
+    }
+
+    /**
+     * 编辑脚本的接收者
+     */
+    interface Script {
+        void equal(int a, int b);
+
+        void delete(int a);
+
+        void insert(int b);
+    }
+
+    private final Equality equality;
+
+    private final Script script;
+
+    private MyersDiff(Equality equality, Script script) {
+        this.equality = equality;
+        this.script = script;
+    }
+
+    /**
+     * 比较长度为 {@code n} 的左序列与长度为 {@code m} 的右序列
+     */
+    static void diff(int n, int m, Equality equality, Script script) {
+        new MyersDiff(equality, script).compare(0, n, 0, m);
+    }
+
+    private void compare(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && equality.test(aLo, bLo)) {
+            script.equal(aLo++, bLo++);
+        }
+        int suffix = 0;
+        while (aLo < aHi - suffix && bLo < bHi - suffix && equality.test(aHi - suffix - 1, bHi - suffix - 1)) {
+            suffix++;
+        }
+        int aEnd = aHi - suffix;
+        int bEnd = bHi - suffix;
+        if (aLo == aEnd) {
+            for (int b = bLo; b < bEnd; b++) {
+                script.insert(b);
+            }
+        } else if (bLo == bEnd) {
+            for (int a = aLo; a < aEnd; a++) {
+                script.delete(a);
+            }
+        } else {
+            bisect(aLo, aEnd, bLo, bEnd);
+        }
+        for (int i = 0; i < suffix; i++) {
+            script.equal(aEnd + i, bEnd + i);
+        }
+    }
+
+    /**
+     * 从两端同时搜索，找到重叠的中间蛇后在该点拆分
+     */
+    private void bisect(int aLo, int aHi, int bLo, int bHi) {
+        final int n = aHi - aLo;
+        final int m = bHi - bLo;
+        final int maxD = (n + m + 1) / 2;
+        final int offset = maxD;
+        final int length = 2 * maxD + 2;
+        final int[] forward = new int[length];
+        final int[] backward = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        final int delta = n - m;
+        // delta 为奇数时前向路径先与后向路径重叠
+        final boolean front = (delta & 1) != 0;
+        int k1start = 0;
+        int k1end = 0;
+        int k2start = 0;
+        int k2end = 0;
+        for (int d = 0; d < maxD; d++) {
+            for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                int k1Offset = offset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d && forward[k1Offset - 1] < forward[k1Offset + 1])) {
+                    x1 = forward[k1Offset + 1];
+                } else {
+                    x1 = forward[k1Offset - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && equality.test(aLo + x1, bLo + y1)) {
+                    x1++;
+                    y1++;
+                }
+                forward[k1Offset] = x1;
+                if (x1 > n) {
+                    k1end += 2;
+                } else if (y1 > m) {
+                    k1start += 2;
+                } else if (front) {
+                    int k2Offset = offset + delta - k1;
+                    if (k2Offset >= 0 && k2Offset < length && backward[k2Offset] != -1) {
+                        int x2 = n - backward[k2Offset];
+                        if (x1 >= x2) {
+                            split(aLo, aHi, bLo, bHi, x1, y1);
+                            return;
+                        }
+                    }
+                }
+            }
+            for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                int k2Offset = offset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d && backward[k2Offset - 1] < backward[k2Offset + 1])) {
+                    x2 = backward[k2Offset + 1];
+                } else {
+                    x2 = backward[k2Offset - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m && equality.test(aLo + n - x2 - 1, bLo + m - y2 - 1)) {
+                    x2++;
+                    y2++;
+                }
+                backward[k2Offset] = x2;
+                if (x2 > n) {
+                    k2end += 2;
+                } else if (y2 > m) {
+                    k2start += 2;
+                } else if (!front) {
+                    int k1Offset = offset + delta - k2;
+                    if (k1Offset >= 0 && k1Offset < length && forward[k1Offset] != -1) {
+                        int x1 = forward[k1Offset];
+                        int y1 = offset + x1 - k1Offset;
+                        if (x1 >= n - x2) {
+                            split(aLo, aHi, bLo, bHi, x1, y1);
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+        // 没有任何相同的元素
+        for (int a = aLo; a < aHi; a++) {
+            script.delete(a);
+        }
+        for (int b = bLo; b < bHi; b++) {
+            script.insert(b);
+        }
+    }
+
+    private void split(int aLo, int aHi, int bLo, int bHi, int x, int y) {
+        compare(aLo, aLo + x, bLo, bLo + y);
+        compare(aLo + x, aHi, bLo + y, bHi);
+    }
+}
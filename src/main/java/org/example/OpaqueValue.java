@@ -0,0 +1,27 @@
+package org.example;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * {@link DiffCodec} 不支持的类型读回时的值，只保留类名和 {@link Object#toString()}，不能还原为原来的对象
+ */
+@Getter
+@EqualsAndHashCode
+@AllArgsConstructor
+public final class OpaqueValue {
+    /**
+     * 原来的类名
+     */
+    private final String type;
+    /**
+     * 原来的 {@link Object#toString()}
+     */
+    private final String text;
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,198 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 并行比较
+ * <ul>
+ *     <li>{@link DiffOptions#isParallel()} 打开时，同一层级的子对象作为 fork/join 任务并行比较，结果按原顺序合并，与串行结果一致</li>
+ *     <li>{@link #diffAll(List, List, Executor)} 在给定的线程池上并发比较多对对象，
+ *     JDK 21 及以上可以传入 {@code Executors.newVirtualThreadPerTaskExecutor()} 使用虚拟线程</li>
+ * </ul>
+ */
+public enum ParallelDiff {
+    ;
+
+    ParallelDiff() {
+
+    }
+
+    /**
+     * 并发比较多对对象
+     *
+     * @param lefts    左对象
+     * @param rights   右对象，与左对象按下标一一对应
+     * @param executor 执行比较的线程池
+     * @param <T>      要比较的类型
+     * @return 与输入顺序一致的比较结果
+     */
+    public static <T> List<DiffDetailResult<T>> diffAll(List<? extends T> lefts, List<? extends T> rights, Executor executor) {
+        return diffAll(lefts, rights, executor, DiffOptions.DEFAULT);
+    }
+
+    /**
+     * 并发比较多对对象
+     *
+     * @param lefts    左对象
+     * @param rights   右对象，与左对象按下标一一对应
+     * @param executor 执行比较的线程池
+     * @param options  每一对比较使用的配置
+     * @param <T>      要比较的类型
+     * @return 与输入顺序一致的比较结果
+     */
+    public static <T> List<DiffDetailResult<T>> diffAll(List<? extends T> lefts, List<? extends T> rights, Executor executor, DiffOptions options) {
+        if (lefts.size() != rights.size()) {
+            throw new IllegalArgumentException("lefts and rights must have the same size: " + lefts.size() + " != " + rights.size());
+        }
+        Objects.requireNonNull(executor, "executor");
+        List<CompletableFuture<DiffDetailResult<T>>> futures = new ArrayList<>(lefts.size());
+        for (int i = 0; i < lefts.size(); i++) {
+            T left = lefts.get(i);
+            T right = rights.get(i);
+            futures.add(CompletableFuture.supplyAsync(() -> new ReflectionDiffBuilder<T>(left, right).withOptions(options).build(), executor));
+        }
+        List<DiffDetailResult<T>> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<DiffDetailResult<T>> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * 比较同一层级的子对象，差异推送给接收者。数量达到阈值时并行，每个子对象先写入自己的缓冲区，再按原顺序转交
+     */
+    static void appendAll(List<ReflectionDiffBuilder<?>> builders, DiffSink sink, DiffOptions options) {
+        if (!options.isParallel() || builders.size() < options.getParallelThreshold()) {
+            for (ReflectionDiffBuilder<?> builder : builders) {
+                if (sink.isDone()) {
+                    return;
+                }
+                builder.diff(sink);
+            }
+            return;
+        }
+        List<DiffTask> tasks = new ArrayList<>(builders.size());
+        for (ReflectionDiffBuilder<?> builder : builders) {
+            tasks.add(new DiffTask(builder, sink));
+        }
+        if (ForkJoinTask.inForkJoinPool()) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            options.getPool().invoke(new InvokeAll<>(tasks));
+        }
+        for (DiffTask task : tasks) {
+            for (DiffPair<?> pair : task.join()) {
+                if (sink.isDone()) {
+                    return;
+                }
+                sink.accept(pair);
+            }
+        }
+    }
+
+    /**
+     * 分段判断 {@code [0, length)} 范围内两个数组是否相等
+     */
+    @FunctionalInterface
+    interface RangeEquality {
+        boolean equals(int from, int to);
+    }
+
+    /**
+     * 长度达到阈值时分段并行比较
+     */
+    static boolean rangesEqual(int length, RangeEquality equality, DiffOptions options) {
+        if (!options.isParallel() || length < options.getParallelArrayThreshold()) {
+            return equality.equals(0, length);
+        }
+        RangeTask task = new RangeTask(equality, 0, length, Math.max(options.getParallelArrayThreshold() / 2, 1));
+        return ForkJoinTask.inForkJoinPool() ? task.invoke() : options.getPool().invoke(task);
+    }
+
+    private static final class DiffTask extends RecursiveTask<List<DiffPair<?>>> {
+        private final ReflectionDiffBuilder<?> builder;
+        private final DiffSink parent;
+
+        DiffTask(ReflectionDiffBuilder<?> builder, DiffSink parent) {
+            this.builder = builder;
+            this.parent = parent;
+        }
+
+        @Override
+        protected List<DiffPair<?>> compute() {
+            List<DiffPair<?>> buffer = new ArrayList<>();
+            builder.diff(new DiffSink() {
+                @Override
+                public void accept(DiffPair<?> pair) {
+                    buffer.add(pair);
+                }
+
+                @Override
+                public boolean isDone() {
+                    return parent.isDone();
+                }
+
+                @Override
+                public boolean needsValues() {
+                    return parent.needsValues();
+                }
+            });
+            return buffer;
+        }
+    }
+
+    private static final class InvokeAll<V> extends RecursiveTask<Void> {
+        private final List<? extends ForkJoinTask<V>> tasks;
+
+        InvokeAll(List<? extends ForkJoinTask<V>> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected Void compute() {
+            ForkJoinTask.invokeAll(tasks);
+            return null;
+        }
+    }
+
+    private static final class RangeTask extends RecursiveTask<Boolean> {
+        private final RangeEquality equality;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        RangeTask(RangeEquality equality, int from, int to, int chunk) {
+            this.equality = equality;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (to - from <= chunk) {
+                return equality.equals(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask right = new RangeTask(equality, middle, to, chunk);
+            right.fork();
+            boolean leftEqual = new RangeTask(equality, from, middle, chunk).compute();
+            // 左半段已经不同时仍需 join，避免遗留未完成的任务
+            return right.join() && leftEqual;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.example;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.example.PathUtils.join;
+
+/**
+ * 路径字典树中的节点：父节点加上一段名称
+ * <p>
+ * 由根节点和字段名得到的节点会被缓存并在所有比较中共享，字符串形式只在 {@link #getPath()} 第一次被调用时生成，
+ * 相同字段上没有差异时不产生任何分配。集合下标、Map 的键等取值无限的路径段使用 {@link #detachedChild(String)}，不进入缓存。
+ */
+public final class PathNode implements Path {
+
+    /**
+     * 缓存根节点数量的上限，超过后新的根节点不再缓存
+     */
+    private static final int MAX_ROOTS = 4096;
+
+    private static final Map<String, PathNode> ROOTS = new ConcurrentHashMap<>();
+
+    public static final PathNode EMPTY = new PathNode(null, "");
+
+    private final PathNode parent;
+
+    private final String segment;
+
+    private volatile Map<String, PathNode> children;
+
+    private String path;
+
+    private PathNode(PathNode parent, String segment) {
+        this.parent = parent;
+        this.segment = segment;
+    }
+
+    /**
+     * 获取根节点
+     *
+     * @param name 根名称，如文档名
+     * @return 缓存的根节点
+     */
+    public static PathNode root(String name) {
+        if (name == null || name.isEmpty()) {
+            return EMPTY;
+        }
+        PathNode root = ROOTS.get(name);
+        if (root != null) {
+            return root;
+        }
+        if (ROOTS.size() >= MAX_ROOTS) {
+            return new PathNode(null, name);
+        }
+        return ROOTS.computeIfAbsent(name, key -> new PathNode(null, key));
+    }
+
+    /**
+     * 创建不缓存的根节点，用于调用方直接给出的完整路径
+     *
+     * @param path 路径
+     * @return 根节点
+     */
+    public static PathNode detached(String path) {
+        if (path == null || path.isEmpty()) {
+            return EMPTY;
+        }
+        return new PathNode(null, path);
+    }
+
+    /**
+     * 获取子节点，同一节点下同名的子节点只创建一次
+     *
+     * @param segment 路径段
+     * @return 子节点
+     */
+    public PathNode child(String segment) {
+        Map<String, PathNode> map = children;
+        if (map == null) {
+            synchronized (this) {
+                map = children;
+                if (map == null) {
+                    map = new ConcurrentHashMap<>();
+                    children = map;
+                }
+            }
+        }
+        PathNode child = map.get(segment);
+        if (child != null) {
+            return child;
+        }
+        return map.computeIfAbsent(segment, key -> new PathNode(this, key));
+    }
+
+    /**
+     * 创建不缓存的子节点
+     *
+     * @param segment 路径段
+     * @return 子节点
+     */
+    public PathNode detachedChild(String segment) {
+        return new PathNode(this, segment);
+    }
+
+    public PathNode getParent() {
+        return parent;
+    }
+
+    public String getSegment() {
+        return segment;
+    }
+
+    public boolean isEmpty() {
+        return this == EMPTY;
+    }
+
+    /**
+     * @return 以 {@code -} 连接的完整路径，与 {@link PathUtils#join(CharSequence, CharSequence...)} 的结果一致
+     */
+    @Override
+    public String getPath() {
+        String value = path;
+        if (value == null) {
+            value = parent == null ? segment : join("-", parent.getPath(), segment);
+            path = value;
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof PathNode && getPath().equals(((PathNode) o).getPath());
+    }
+
+    @Override
+    public int hashCode() {
+        return getPath().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getPath();
+    }
+}
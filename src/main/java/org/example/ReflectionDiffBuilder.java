@@ -1,14 +1,16 @@
 package org.example;
 
-import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.builder.*;
-import org.apache.commons.lang3.reflect.FieldUtils;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-
-import static org.example.PathUtils.join;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ReflectionDiffBuilder<T> {
 
@@ -16,74 +18,249 @@ public class ReflectionDiffBuilder<T> {
     private final T right;
     private final DiffDetailBuilder<T> diffBuilder;
 
-    private final String documentName;
+    private final PathNode documentPath;
 
     private final Class<T> clazz;
 
+    private final DiffPlan plan;
+
+    /**
+     * 两侧不同、继续比较的字段数，只用于统计
+     */
+    private int differingFields;
+
     public ReflectionDiffBuilder(T lhs, T rhs, final Class<T> clazz) {
-        this.left = lhs;
-        this.right = rhs;
-        this.clazz = clazz;
-        this.documentName = invokeName(clazz);
-        this.diffBuilder = new DiffDetailBuilder<>(documentName, lhs, rhs);
+        this((PathNode) null, lhs, rhs, clazz);
     }
 
     public ReflectionDiffBuilder(String documentName, T lhs, T rhs, final Class<T> clazz) {
-        this.left = lhs;
-        this.right = rhs;
-        this.clazz = clazz;
-        if (StringUtils.isNotBlank(documentName)) {
-            this.documentName = documentName;
-        } else {
-            this.documentName = invokeName(clazz);
-        }
-        this.diffBuilder = new DiffDetailBuilder<>(documentName, lhs, rhs);
+        this(StringUtils.isNotBlank(documentName) ? PathNode.root(documentName) : null, lhs, rhs, clazz);
     }
 
     @SuppressWarnings("unchecked")
     public ReflectionDiffBuilder(T lhs, T rhs) {
-        this.left = lhs;
-        this.right = rhs;
-        this.clazz = (Class<T>) lhs.getClass();
-        this.documentName = invokeName(clazz);
-        this.diffBuilder = new DiffDetailBuilder<>(documentName, lhs, rhs);
+        this((PathNode) null, lhs, rhs, (Class<T>) lhs.getClass());
     }
 
     @SuppressWarnings("unchecked")
     public ReflectionDiffBuilder(String documentName, T lhs, T rhs) {
+        this(documentName, lhs, rhs, (Class<T>) lhs.getClass());
+    }
+
+    @SuppressWarnings("unchecked")
+    ReflectionDiffBuilder(PathNode documentPath, T lhs, T rhs) {
+        this(documentPath, lhs, rhs, (Class<T>) lhs.getClass());
+    }
+
+    /**
+     * @param documentPath 文档路径，为空时使用类的展示名称
+     */
+    ReflectionDiffBuilder(PathNode documentPath, T lhs, T rhs, final Class<T> clazz) {
         this.left = lhs;
         this.right = rhs;
-        this.clazz = (Class<T>) lhs.getClass();
-        if (StringUtils.isNotBlank(documentName)) {
-            this.documentName = documentName;
+        this.clazz = clazz;
+        this.plan = DiffPlan.of(clazz);
+        if (documentPath != null && !documentPath.isEmpty()) {
+            this.documentPath = documentPath;
         } else {
-            this.documentName = invokeName(clazz);
+            this.documentPath = plan.getRoot();
         }
-        this.diffBuilder = new DiffDetailBuilder<>(documentName, lhs, rhs);
+        this.diffBuilder = new DiffDetailBuilder<>(this.documentPath, lhs, rhs);
+    }
+
+    /**
+     * 设置比较配置，需要在 {@link #build()} 之前调用
+     *
+     * @param options 配置
+     * @return this
+     */
+    public ReflectionDiffBuilder<T> withOptions(DiffOptions options) {
+        diffBuilder.withOptions(options);
+        return this;
+    }
+
+    ReflectionDiffBuilder<T> withVisited(VisitedPairs visited) {
+        diffBuilder.withVisited(visited);
+        return this;
+    }
+
+    ReflectionDiffBuilder<T> nestedIn(DiffDetailBuilder<?> parent) {
+        diffBuilder.nestedIn(parent);
+        return this;
+    }
+
+    /**
+     * @return 比较完成后的结果，见 {@link DiffDetailBuilder#share()}
+     */
+    DiffDetailBuilder.Shared shared() {
+        return diffBuilder.shared();
     }
 
     public DiffDetailResult<T> build() {
-        if (left.equals(right)) {
-            return diffBuilder.build();
+        final DiffMetrics.Sample sample = startSample();
+        if (!unchanged()) {
+            appendFields();
+        }
+        final DiffDetailResult<T> result = diffBuilder.build();
+        if (sample != null) {
+            sample.stop(clazz);
+        }
+        return result;
+    }
+
+    /**
+     * 最多收集 {@code maxDiffs} 处差异，达到上限后立即停止比较，适合只展示前几处差异的场景
+     *
+     * @param maxDiffs 差异数量上限
+     * @return 比较结果，差异按比较顺序截断
+     */
+    public DiffDetailResult<T> build(int maxDiffs) {
+        diffBuilder.withSink(DiffSink.limit(maxDiffs, DiffSink.toCollection(diffBuilder.getDiffs())));
+        return build();
+    }
+
+    /**
+     * 发现第一处差异后立即停止，不收集差异，也不复制数组
+     *
+     * @return 是否存在差异
+     */
+    public boolean differs() {
+        if (unchanged()) {
+            return false;
+        }
+        final FirstDiff sink = new FirstDiff();
+        diff(sink, true);
+        return sink.found;
+    }
+
+    /**
+     * 判断两个对象是否存在差异，见 {@link #differs()}
+     *
+     * @param lhs 左侧对象
+     * @param rhs 右侧对象
+     * @return 是否存在差异
+     */
+    public static <T> boolean differs(T lhs, T rhs) {
+        if (lhs == rhs) {
+            return false;
+        }
+        if (lhs == null || rhs == null || lhs.getClass() != rhs.getClass()) {
+            return true;
+        }
+        return new ReflectionDiffBuilder<>(lhs, rhs).differs();
+    }
+
+    /**
+     * 比较并将差异逐个推送给接收者，不生成 {@link DiffDetailResult}，接收者 {@link DiffSink#isDone()} 后尽快停止
+     *
+     * @param sink 接收者
+     */
+    public void diff(DiffSink sink) {
+        diff(sink, false);
+    }
+
+    /**
+     * @param changed 调用方已经确认两侧不相等，不再重复判断
+     */
+    private void diff(DiffSink sink, boolean changed) {
+        diffBuilder.withSink(sink);
+        final DiffMetrics.Sample sample = startSample();
+        if (!diffBuilder.replayShared()) {
+            if (changed || !unchanged()) {
+                appendFields();
+                diffBuilder.appendNested();
+            }
+            diffBuilder.share();
+        }
+        if (sample != null) {
+            sample.stop(clazz);
         }
-        appendFields();
-        return diffBuilder.build();
+    }
+
+    /**
+     * 设置了指纹时比较指纹，子对象的指纹已经在上层比较过；否则调用 {@code equals}
+     */
+    private boolean unchanged() {
+        if (diffBuilder.getOptions().getFingerprints() != null) {
+            return diffBuilder.depth() == 0 && diffBuilder.sameFingerprint(left, right);
+        }
+        return left.equals(right);
+    }
+
+    /**
+     * 开启统计时只统计顶层比较的耗时，子对象的耗时包含在内
+     */
+    private DiffMetrics.Sample startSample() {
+        final DiffMetrics metrics = diffBuilder.getOptions().getMetrics();
+        return metrics != null && diffBuilder.depth() == 0 ? metrics.start() : null;
+    }
+
+    /**
+     * 以流的形式获取差异，{@link Stream#forEach(java.util.function.Consumer)} 等终止操作会边比较边消费，
+     * {@link Stream#findFirst()} 等短路操作取到需要的差异后停止比较
+     *
+     * @return 差异流
+     */
+    public Stream<DiffPair<?>> stream() {
+        return StreamSupport.stream(new DiffSpliterator<>(this), false);
     }
 
     private void appendFields() {
-        for (final Field field : FieldUtils.getAllFields(clazz)) {
-            if (accept(field)) {
-                try {
-                    diffBuilder.append(join("-", this.documentName, invokeName(field)), FieldUtils.readField(field, left, true), FieldUtils.readField(field, right, true));
-                } catch (final IllegalAccessException e) {
-                    // this can't happen. Would get a Security exception instead
-                    // throw a runtime exception in case the impossible happens.
-                    throw new IllegalArgumentException("Unexpected IllegalAccessException: " + e.getMessage(), e);
+        final List<FieldPlan> fields = diffBuilder.getOptions().getFilter().fields(plan);
+        compareFields(fields);
+        final DiffMetrics metrics = diffBuilder.getOptions().getMetrics();
+        if (metrics != null) {
+            metrics.recordFields(clazz, fields.size(), differingFields);
+        }
+    }
+
+    private void compareFields(List<FieldPlan> fields) {
+        final DiffFilter filter = diffBuilder.getOptions().getFilter();
+        final ClassDiffer<Object> differ = filter.isEmpty() ? plan.differ() : null;
+        if (differ != null) {
+            differ.diff(left, right, this::appendField);
+            return;
+        }
+        // 过滤规则在读取字段之前判断，被过滤的字段及其子对象不会被读取
+        final boolean pathRules = filter.hasPathRules();
+        for (final FieldPlan fieldPlan : fields) {
+            if (diffBuilder.isDone()) {
+                return;
+            }
+            if (pathRules && !filter.accepts(fieldPlan.nodeUnder(this.documentPath))) {
+                continue;
+            }
+            final FieldAccessor accessor = fieldPlan.getAccessor();
+            if (accessor.isPrimitive()) {
+                // 基础类型不装箱比较，只有不同时才读取装箱值
+                if (!accessor.same(left, right)) {
+                    differingFields++;
+                    diffBuilder.append(fieldPlan.nodeUnder(this.documentPath), accessor.get(left), accessor.get(right));
                 }
+                continue;
+            }
+            final Object lhs = accessor.get(left);
+            final Object rhs = accessor.get(right);
+            if (lhs != rhs) {
+                appendField(fieldPlan, fieldPlan.nodeUnder(this.documentPath), lhs, rhs);
             }
         }
     }
 
+    private void appendField(int index, Object lhs, Object rhs) {
+        final FieldPlan fieldPlan = plan.getFields().get(index);
+        appendField(fieldPlan, fieldPlan.nodeUnder(this.documentPath), lhs, rhs);
+    }
+
+    private void appendField(FieldPlan fieldPlan, PathNode path, Object lhs, Object rhs) {
+        differingFields++;
+        if (fieldPlan.getCollectionMode() != CollectionDiffMode.AUTO
+                && (lhs instanceof Collection || rhs instanceof Collection)) {
+            diffBuilder.append(path, (Collection<?>) lhs, (Collection<?>) rhs, fieldPlan.getCollectionMode());
+            return;
+        }
+        diffBuilder.append(path, lhs, rhs);
+    }
 
     /**
      * 获取名称信息
@@ -115,19 +292,134 @@ public class ReflectionDiffBuilder<T> {
         }
     }
 
-    private boolean accept(final Field field) {
-        if (field.getName().indexOf(ClassUtils.INNER_CLASS_SEPARATOR_CHAR) != -1) {
-            return false;
+    private static final class FirstDiff implements DiffSink {
+        private volatile boolean found;
+
+        @Override
+        public void accept(DiffPair<?> pair) {
+            found = true;
         }
-        if (Modifier.isTransient(field.getModifiers())) {
-            return false;
+
+        @Override
+        public boolean isDone() {
+            return found;
         }
-        if (Modifier.isStatic(field.getModifiers())) {
+
+        @Override
+        public boolean needsValues() {
             return false;
         }
-//        Arrays.binarySearch(this.excludeFieldNames, field.getName())
-        return !field.isAnnotationPresent(DiffExclude.class);
     }
 
+    /**
+     * 按需比较：第一次只比较到第一处差异，之后每次重新比较并跳过已经返回的差异，每次取的数量加倍，
+     * {@code findFirst}、{@code limit} 等短路操作只比较需要的部分，全部取完的总代价不超过完整比较的常数倍
+     */
+    private static final class DiffSpliterator<T> implements Spliterator<DiffPair<?>> {
+        private final ReflectionDiffBuilder<T> builder;
+        private List<DiffPair<?>> batch = Collections.emptyList();
+        private int next;
+        /**
+         * 已经返回的差异数
+         */
+        private int consumed;
+        private boolean exhausted;
 
+        DiffSpliterator(ReflectionDiffBuilder<T> builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super DiffPair<?>> action) {
+            if (next == batch.size()) {
+                if (exhausted) {
+                    return false;
+                }
+                fetch(Math.max(1, consumed));
+                if (batch.isEmpty()) {
+                    return false;
+                }
+            }
+            consumed++;
+            action.accept(batch.get(next++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super DiffPair<?>> action) {
+            while (next < batch.size()) {
+                consumed++;
+                action.accept(batch.get(next++));
+            }
+            if (exhausted) {
+                return;
+            }
+            exhausted = true;
+            final Window window = new Window(consumed, Integer.MAX_VALUE, DiffSink.of(action));
+            pass().diff(window);
+        }
+
+        private void fetch(int size) {
+            final List<DiffPair<?>> fetched = new ArrayList<>(size);
+            pass().diff(new Window(consumed, size, DiffSink.toCollection(fetched)));
+            exhausted = fetched.size() < size;
+            batch = fetched;
+            next = 0;
+        }
+
+        /**
+         * 每次比较使用新的比较器，第一次直接使用原来的
+         */
+        private ReflectionDiffBuilder<T> pass() {
+            if (consumed == 0) {
+                return builder;
+            }
+            return new ReflectionDiffBuilder<>(builder.documentPath, builder.left, builder.right, builder.clazz)
+                    .withOptions(builder.diffBuilder.getOptions());
+        }
+
+        @Override
+        public Spliterator<DiffPair<?>> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+
+    /**
+     * 跳过前 {@code skip} 处差异，再转交最多 {@code size} 处
+     */
+    private static final class Window implements DiffSink {
+        private final int skip;
+        private final int size;
+        private final DiffSink downstream;
+        private int seen;
+
+        Window(int skip, int size, DiffSink downstream) {
+            this.skip = skip;
+            this.size = size;
+            this.downstream = downstream;
+        }
+
+        @Override
+        public synchronized void accept(DiffPair<?> pair) {
+            if (seen >= skip && seen - skip < size) {
+                downstream.accept(pair);
+            }
+            seen++;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return seen - skip >= size || downstream.isDone();
+        }
+    }
 }
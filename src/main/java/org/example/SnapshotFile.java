@@ -0,0 +1,292 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 保存在文件中的扁平快照，每条记录是一个叶子的路径和值，按路径排序。两个快照文件可以直接在磁盘上比较，
+ * 不需要把对象读回内存
+ * <pre>
+ * 头部  int 魔数 | byte 版本
+ * 记录  int 长度 | 路径 | 值
+ * </pre>
+ * 路径和值的编码与 {@link DiffCodec} 相同，路径按 UTF-8 字节的无符号顺序排列。值为 {@code null} 的叶子不写入，
+ * 与没有该路径相同。{@link java.math.BigDecimal} 去掉末尾的 0 后写入，数值相等即相同，读回时不保留原来的精度。
+ * 差异中的值按编码读回：枚举读回为原来的常量，日期等其他类型读回为 {@link OpaqueValue}，
+ * 集合读回为 {@link List}，与内存中比较得到的值类型不同。
+ * <p>
+ * 比较时以 {@link FileChannel#map} 分段映射两个文件，按路径顺序归并，每次只映射当前记录所在的一段，
+ * 堆内存占用与文件大小无关。路径相同的记录先比较值的编码，不同时才解码。集合、Map 和数组作为一个叶子整体比较
+ */
+public enum SnapshotFile {
+    ;
+
+    static final int MAGIC = 0x534E4150;
+
+    static final byte VERSION = 3;
+
+    private static final int HEADER_SIZE = 5;
+
+    /**
+     * 每次映射的大小，记录更长时按记录的长度映射
+     */
+    private static final int WINDOW = 64 << 20;
+
+    /**
+     * 展开对象并写入文件，已存在的文件会被覆盖
+     *
+     * @param value 对象，路径与 {@link DiffSnapshot} 相同
+     * @param file  文件
+     * @throws IOException 写入失败
+     */
+    public static void write(Object value, Path file) throws IOException {
+        Objects.requireNonNull(value, "value");
+        final List<Object[]> leaves = new ArrayList<>();
+        DiffSnapshot.capture(value).forEachLeaf((path, leaf) -> {
+            if (leaf != null) {
+                leaves.add(new Object[]{path.getPath().getBytes(StandardCharsets.UTF_8), leaf});
+            }
+        });
+        leaves.sort((a, b) -> Arrays.compareUnsigned((byte[]) a[0], (byte[]) b[0]));
+        try (Writer writer = writer(file)) {
+            for (final Object[] leaf : leaves) {
+                writer.add((byte[]) leaf[0], leaf[1]);
+            }
+        }
+    }
+
+    /**
+     * 逐条写入记录，适合由数据库导出等已经按路径排序的数据生成快照
+     *
+     * @param file 文件，已存在时覆盖
+     * @return 写入器
+     * @throws IOException 打开失败
+     */
+    public static Writer writer(Path file) throws IOException {
+        return new Writer(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * 比较两个快照文件，左值来自 {@code left}，右值来自 {@code right}
+     *
+     * @param left  左侧文件
+     * @param right 右侧文件
+     * @param sink  接收者
+     * @throws IOException 读取失败
+     */
+    public static void diff(Path left, Path right, DiffSink sink) throws IOException {
+        Objects.requireNonNull(sink, "sink");
+        try (Records lefts = new Records(left); Records rights = new Records(right)) {
+            final boolean values = sink.needsValues();
+            while ((lefts.present || rights.present) && !sink.isDone()) {
+                final int compare = !lefts.present ? 1 : !rights.present ? -1 : lefts.comparePath(rights);
+                if (compare < 0) {
+                    sink.accept(new DiffPair<>(lefts.path(), values ? lefts.value() : null, null));
+                    lefts.next();
+                } else if (compare > 0) {
+                    sink.accept(new DiffPair<>(rights.path(), null, values ? rights.value() : null));
+                    rights.next();
+                } else {
+                    if (!lefts.sameValue(rights)) {
+                        sink.accept(values ? new DiffPair<>(lefts.path(), lefts.value(), rights.value())
+                                : new DiffPair<>(lefts.path(), null, null));
+                    }
+                    lefts.next();
+                    rights.next();
+                }
+            }
+        }
+    }
+
+    /**
+     * 比较两个快照文件
+     *
+     * @param left  左侧文件
+     * @param right 右侧文件
+     * @return 按路径排序的差异
+     * @throws IOException 读取失败
+     */
+    public static List<DiffPair<?>> diff(Path left, Path right) throws IOException {
+        final List<DiffPair<?>> diffs = new ArrayList<>();
+        diff(left, right, DiffSink.toCollection(diffs));
+        return diffs;
+    }
+
+    /**
+     * 快照文件的写入器，记录需要按路径升序添加
+     */
+    public static final class Writer implements Closeable {
+        private static final int FLUSH_SIZE = 1 << 20;
+
+        private final FileChannel channel;
+        private final DiffCodec.Output out = new DiffCodec.Output(FLUSH_SIZE + 1024, true);
+        private byte[] previous;
+
+        private Writer(FileChannel channel) {
+            this.channel = channel;
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        /**
+         * @param path  叶子的路径
+         * @param value 叶子的值
+         * @return this
+         * @throws IOException              写入失败
+         * @throws IllegalArgumentException 路径没有按升序添加
+         */
+        public Writer add(String path, Object value) throws IOException {
+            return add(Objects.requireNonNull(path, "path").getBytes(StandardCharsets.UTF_8), value);
+        }
+
+        private Writer add(byte[] path, Object value) throws IOException {
+            if (previous != null && Arrays.compareUnsigned(previous, path) >= 0) {
+                throw new IllegalArgumentException("Paths are not sorted: " + new String(path, StandardCharsets.UTF_8)
+                        + " after " + new String(previous, StandardCharsets.UTF_8));
+            }
+            previous = path;
+            final int start = out.size();
+            out.writeInt(0);
+            out.writeBytes(path);
+            out.writeValue(value);
+            out.writeInt(start, out.size() - start - 4);
+            if (out.size() >= FLUSH_SIZE) {
+                flush();
+            }
+            return this;
+        }
+
+        private void flush() throws IOException {
+            final ByteBuffer buffer = out.toByteBuffer();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            out.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * 按顺序读取一个快照文件的记录，当前记录的各个位置相对于当前映射的一段
+     */
+    private static final class Records implements Closeable {
+        private final FileChannel channel;
+        private final long size;
+        private ByteBuffer window;
+        private long windowStart;
+        private long position;
+        private boolean present;
+        private int pathOffset;
+        private int pathStart;
+        private int pathLength;
+        private int valueStart;
+        private int end;
+
+        Records(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                this.size = channel.size();
+                if (size >= HEADER_SIZE) {
+                    map(0, HEADER_SIZE);
+                }
+                if (size < HEADER_SIZE || window.getInt(0) != MAGIC) {
+                    throw new IllegalArgumentException("Not a snapshot file: " + file);
+                }
+                if (window.get(4) != VERSION) {
+                    throw new IllegalArgumentException("Unsupported version: " + window.get(4));
+                }
+                this.position = HEADER_SIZE;
+                next();
+            } catch (IOException | RuntimeException e) {
+                try {
+                    channel.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        }
+
+        void next() throws IOException {
+            if (position >= size) {
+                present = false;
+                return;
+            }
+            map(position, 4);
+            final int length = window.getInt((int) (position - windowStart));
+            map(position, 4 + length);
+            final int offset = (int) (position - windowStart);
+            pathOffset = offset + 4;
+            final EncodedDiffs.Cursor cursor = new EncodedDiffs.Cursor(window, pathOffset);
+            pathLength = cursor.readVarintInt();
+            pathStart = cursor.position();
+            valueStart = pathStart + pathLength;
+            end = offset + 4 + length;
+            position += 4 + length;
+            present = true;
+        }
+
+        /**
+         * 保证 {@code [from, from + length)} 在当前映射的一段内
+         */
+        private void map(long from, int length) throws IOException {
+            if (window != null && from >= windowStart && from + length <= windowStart + window.limit()) {
+                return;
+            }
+            if (from + length > size) {
+                throw new IllegalStateException("Truncated snapshot record at " + from);
+            }
+            window = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(size - from, Math.max(WINDOW, length)));
+            windowStart = from;
+        }
+
+        int comparePath(Records other) {
+            final int length = Math.min(pathLength, other.pathLength);
+            for (int i = 0; i < length; i++) {
+                final int compare = Integer.compare(window.get(pathStart + i) & 0xFF,
+                        other.window.get(other.pathStart + i) & 0xFF);
+                if (compare != 0) {
+                    return compare;
+                }
+            }
+            return Integer.compare(pathLength, other.pathLength);
+        }
+
+        boolean sameValue(Records other) {
+            final int length = end - valueStart;
+            return length == other.end - other.valueStart
+                    && window.slice(valueStart, length).mismatch(other.window.slice(other.valueStart, length)) < 0;
+        }
+
+        String path() {
+            return new EncodedDiffs.Cursor(window, pathOffset).readString();
+        }
+
+        Object value() {
+            return new EncodedDiffs.Cursor(window, valueStart).readValue();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
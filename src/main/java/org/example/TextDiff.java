@@ -0,0 +1,248 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 按行比较两段文本，使用 Myers 算法的线性空间版本：每次从两端同时搜索找到中间的公共段，再分别递归比较两侧
+ * <p>
+ * 只记录每行在原文本中的起止位置和哈希值，通过 {@link CharSequence#charAt(int)} 读取，不复制成 {@code char[]}。
+ * 相邻的删除和新增合并为一个 {@link TextHunk}
+ */
+public enum TextDiff {
+    ;
+
+    /**
+     * 比较两段文本
+     *
+     * @param left  左文本
+     * @param right 右文本
+     * @return 按位置排列的变化
+     */
+    public static List<TextHunk> diff(CharSequence left, CharSequence right) {
+        Objects.requireNonNull(left, "left");
+        Objects.requireNonNull(right, "right");
+        final Lines a = new Lines(left);
+        final Lines b = new Lines(right);
+        final Differ differ = new Differ(a, b);
+        differ.compare(0, a.count, 0, b.count);
+        return differ.hunks();
+    }
+
+    /**
+     * 文本按行切分的结果，每行包含行尾的换行符
+     */
+    private static final class Lines {
+        private final CharSequence text;
+        private int[] starts;
+        private int[] hashes;
+        private int count;
+
+        Lines(CharSequence text) {
+            this.text = text;
+            this.starts = new int[16];
+            this.hashes = new int[16];
+            final int length = text.length();
+            int start = 0;
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                final char c = text.charAt(i);
+                hash = 31 * hash + c;
+                if (c == '\n') {
+                    add(start, hash);
+                    start = i + 1;
+                    hash = 0;
+                }
+            }
+            if (start < length) {
+                add(start, hash);
+            }
+            starts = Arrays.copyOf(starts, count + 1);
+            starts[count] = length;
+        }
+
+        private void add(int start, int hash) {
+            if (count + 1 >= starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+                hashes = Arrays.copyOf(hashes, hashes.length * 2);
+            }
+            starts[count] = start;
+            hashes[count] = hash;
+            count++;
+        }
+
+        /**
+         * @return 第 {@code line} 行起始的字符偏移，{@code line == count} 时为文本长度
+         */
+        int offset(int line) {
+            return starts[line];
+        }
+
+        boolean lineEquals(int line, Lines other, int otherLine) {
+            if (hashes[line] != other.hashes[otherLine]) {
+                return false;
+            }
+            final int start = starts[line];
+            final int length = starts[line + 1] - start;
+            final int otherStart = other.starts[otherLine];
+            if (other.starts[otherLine + 1] - otherStart != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (text.charAt(start + i) != other.text.charAt(otherStart + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String slice(int from, int to) {
+            return text.subSequence(starts[from], starts[to]).toString();
+        }
+    }
+
+    private static final class Differ {
+        private final Lines a;
+        private final Lines b;
+        /**
+         * 变化的行区间，每 4 个数为左起、左止、右起、右止
+         */
+        private int[] edits = new int[16];
+        private int size;
+
+        Differ(Lines a, Lines b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        void compare(int aLo, int aHi, int bLo, int bHi) {
+            while (aLo < aHi && bLo < bHi && a.lineEquals(aLo, b, bLo)) {
+                aLo++;
+                bLo++;
+            }
+            while (aLo < aHi && bLo < bHi && a.lineEquals(aHi - 1, b, bHi - 1)) {
+                aHi--;
+                bHi--;
+            }
+            if (aLo == aHi || bLo == bHi) {
+                if (aLo < aHi || bLo < bHi) {
+                    edit(aLo, aHi, bLo, bHi);
+                }
+                return;
+            }
+            final long split = middle(aLo, aHi, bLo, bHi);
+            if (split < 0) {
+                edit(aLo, aHi, bLo, bHi);
+                return;
+            }
+            final int x = aLo + (int) (split >>> 32);
+            final int y = bLo + (int) split;
+            compare(aLo, x, bLo, y);
+            compare(x, aHi, y, bHi);
+        }
+
+        /**
+         * 从两端同时搜索编辑路径，返回两条路径相遇处的相对位置，高 32 位为左侧，低 32 位为右侧
+         */
+        private long middle(int aLo, int aHi, int bLo, int bHi) {
+            final int n = aHi - aLo;
+            final int m = bHi - bLo;
+            final int maxD = (n + m + 1) / 2;
+            final int offset = maxD;
+            final int length = 2 * maxD + 2;
+            final int[] forward = new int[length];
+            final int[] backward = new int[length];
+            Arrays.fill(forward, -1);
+            Arrays.fill(backward, -1);
+            forward[offset + 1] = 0;
+            backward[offset + 1] = 0;
+            final int delta = n - m;
+            final boolean odd = (delta & 1) != 0;
+            int kStart1 = 0;
+            int kEnd1 = 0;
+            int kStart2 = 0;
+            int kEnd2 = 0;
+            for (int d = 0; d < maxD; d++) {
+                for (int k = -d + kStart1; k <= d - kEnd1; k += 2) {
+                    final int index = offset + k;
+                    int x = k == -d || (k != d && forward[index - 1] < forward[index + 1])
+                            ? forward[index + 1] : forward[index - 1] + 1;
+                    int y = x - k;
+                    while (x < n && y < m && a.lineEquals(aLo + x, b, bLo + y)) {
+                        x++;
+                        y++;
+                    }
+                    forward[index] = x;
+                    if (x > n) {
+                        kEnd1 += 2;
+                    } else if (y > m) {
+                        kStart1 += 2;
+                    } else if (odd) {
+                        final int other = offset + delta - k;
+                        if (other >= 0 && other < length && backward[other] != -1 && x >= n - backward[other]) {
+                            return ((long) x << 32) | y;
+                        }
+                    }
+                }
+                for (int k = -d + kStart2; k <= d - kEnd2; k += 2) {
+                    final int index = offset + k;
+                    int x = k == -d || (k != d && backward[index - 1] < backward[index + 1])
+                            ? backward[index + 1] : backward[index - 1] + 1;
+                    int y = x - k;
+                    while (x < n && y < m && a.lineEquals(aHi - x - 1, b, bHi - y - 1)) {
+                        x++;
+                        y++;
+                    }
+                    backward[index] = x;
+                    if (x > n) {
+                        kEnd2 += 2;
+                    } else if (y > m) {
+                        kStart2 += 2;
+                    } else if (!odd) {
+                        final int other = offset + delta - k;
+                        if (other >= 0 && other < length && forward[other] != -1) {
+                            final int forwardX = forward[other];
+                            final int forwardY = offset + forwardX - other;
+                            if (forwardX >= n - x) {
+                                return ((long) forwardX << 32) | forwardY;
+                            }
+                        }
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 记录一段变化，与上一段首尾相接时合并
+         */
+        private void edit(int aLo, int aHi, int bLo, int bHi) {
+            if (size > 0 && edits[size - 3] == aLo && edits[size - 1] == bLo) {
+                edits[size - 3] = aHi;
+                edits[size - 1] = bHi;
+                return;
+            }
+            if (size + 4 > edits.length) {
+                edits = Arrays.copyOf(edits, edits.length * 2);
+            }
+            edits[size++] = aLo;
+            edits[size++] = aHi;
+            edits[size++] = bLo;
+            edits[size++] = bHi;
+        }
+
+        List<TextHunk> hunks() {
+            final List<TextHunk> hunks = new ArrayList<>(size / 4);
+            for (int i = 0; i < size; i += 4) {
+                final int leftOffset = a.offset(edits[i]);
+                final int rightOffset = b.offset(edits[i + 2]);
+                hunks.add(new TextHunk(leftOffset, a.offset(edits[i + 1]) - leftOffset,
+                        rightOffset, b.offset(edits[i + 3]) - rightOffset,
+                        a.slice(edits[i], edits[i + 1]), b.slice(edits[i + 2], edits[i + 3])));
+            }
+            return hunks;
+        }
+    }
+}
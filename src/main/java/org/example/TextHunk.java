@@ -0,0 +1,38 @@
+package org.example;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 文本差异中连续变化的一段，偏移量以字符计，只保存变化部分的文本
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public final class TextHunk {
+    /**
+     * 在左侧文本中的起始偏移
+     */
+    private final int leftOffset;
+    /**
+     * 左侧被替换的长度
+     */
+    private final int leftLength;
+    /**
+     * 在右侧文本中的起始偏移
+     */
+    private final int rightOffset;
+    /**
+     * 右侧替换后的长度
+     */
+    private final int rightLength;
+    /**
+     * 左侧被删除的文本
+     */
+    private final String removed;
+    /**
+     * 右侧新增的文本
+     */
+    private final String inserted;
+}
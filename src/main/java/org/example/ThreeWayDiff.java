@@ -0,0 +1,265 @@
+package org.example;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 三方比较：以共同祖先为基准，一次遍历同时比较我方和对方的修改
+ * <pre>
+ * ThreeWayResult&lt;Order&gt; result = new ThreeWayDiff&lt;&gt;(base, ours, theirs).build();
+ * if (!result.hasConflicts()) {
+ *     result.merge(ours); // 直接修改 ours
+ * }
+ * </pre>
+ * 三方都是同一类的对象时按 {@link DiffPlan} 的字段逐层比较；三方都是 Map 时按键比较；三方都是集合时，
+ * 元素带有 {@link DiffKey} 的按键比较，没有键的 {@link List} 在三方长度相同时按下标比较，路径段为 {@code [下标]}。
+ * 因此双方修改同一集合的不同元素不算冲突。其余的值作为整体比较，是否相同与
+ * {@link ReflectionDiffBuilder} 的判断一致，同样使用 {@link DiffOptions} 中的比较器、过滤规则和最大层数
+ *
+ * @param <T> 对象类型
+ */
+public class ThreeWayDiff<T> {
+
+    private static final PathNode VALUE = PathNode.detached("");
+
+    private final PathNode documentPath;
+    private final T base;
+    private final T ours;
+    private final T theirs;
+    private DiffOptions options = DiffOptions.DEFAULT;
+
+    public ThreeWayDiff(T base, T ours, T theirs) {
+        this(null, base, ours, theirs);
+    }
+
+    /**
+     * @param documentName 文档名称，为空时使用类的展示名称
+     * @param base         共同祖先
+     * @param ours         我方
+     * @param theirs       对方
+     */
+    public ThreeWayDiff(String documentName, T base, T ours, T theirs) {
+        this.base = Objects.requireNonNull(base, "base");
+        this.ours = Objects.requireNonNull(ours, "ours");
+        this.theirs = Objects.requireNonNull(theirs, "theirs");
+        this.documentPath = StringUtils.isNotBlank(documentName) ? PathNode.root(documentName)
+                : DiffPlan.of(base.getClass()).getRoot();
+    }
+
+    /**
+     * 设置比较配置，需要在 {@link #build()} 之前调用
+     *
+     * @param options 配置
+     * @return this
+     */
+    public ThreeWayDiff<T> withOptions(DiffOptions options) {
+        this.options = Objects.requireNonNull(options, "options");
+        return this;
+    }
+
+    public ThreeWayResult<T> build() {
+        // 判断值是否相同时不计入统计
+        final Walk walk = new Walk(options.getMetrics() == null ? options : options.toBuilder().metrics(null).build());
+        walk.compare(documentPath, base, ours, theirs, 0);
+        return new ThreeWayResult<>(documentPath.getPath(), walk.changes);
+    }
+
+    private final class Walk {
+        private final DiffOptions valueOptions;
+        private final List<MergeChange> changes = new ArrayList<>();
+        /**
+         * 正在比较的我方对象，用于打断循环引用
+         */
+        private final Set<Object> inProgress = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Walk(DiffOptions valueOptions) {
+            this.valueOptions = valueOptions;
+        }
+
+        void compare(PathNode path, Object base, Object ours, Object theirs, int depth) {
+            if (base == ours && base == theirs) {
+                return;
+            }
+            if (base != null && ours != null && theirs != null && options.getComparators().get(base.getClass()) == null) {
+                if (depth <= options.getMaxDepth()
+                        && base.getClass() == ours.getClass() && base.getClass() == theirs.getClass()
+                        && ValueKind.of(base.getClass()) == ValueKind.OBJECT) {
+                    if (inProgress.add(ours)) {
+                        compareFields(path, base, ours, theirs, depth);
+                        inProgress.remove(ours);
+                    }
+                    return;
+                }
+                if (base instanceof Map && ours instanceof Map && theirs instanceof Map) {
+                    compareEntries(path, (Map<?, ?>) base, (Map<?, ?>) ours, (Map<?, ?>) theirs, depth);
+                    return;
+                }
+                if (base instanceof Collection && ours instanceof Collection && theirs instanceof Collection
+                        && compareElements(path, (Collection<?>) base, (Collection<?>) ours, (Collection<?>) theirs, depth)) {
+                    return;
+                }
+            }
+            classify(path, base, ours, theirs, !same(base, ours), !same(base, theirs));
+        }
+
+        /**
+         * 按键比较，一方没有的键取值为 {@code null}
+         */
+        private void compareEntries(PathNode path, Map<?, ?> base, Map<?, ?> ours, Map<?, ?> theirs, int depth) {
+            final Set<Object> keys = new LinkedHashSet<>(base.keySet());
+            keys.addAll(ours.keySet());
+            keys.addAll(theirs.keySet());
+            for (final Object key : keys) {
+                compare(path.detachedChild(String.valueOf(key)), base.get(key), ours.get(key), theirs.get(key), depth);
+            }
+        }
+
+        /**
+         * 元素带有键时按键比较，没有键的列表三方长度相同时按下标比较
+         *
+         * @return 是否逐个元素比较了，否则集合作为整体比较
+         */
+        private boolean compareElements(PathNode path, Collection<?> base, Collection<?> ours, Collection<?> theirs,
+                                        int depth) {
+            final Map<Object, Object[]> keyed = new LinkedHashMap<>();
+            if (index(keyed, base, 0) && index(keyed, ours, 1) && index(keyed, theirs, 2)) {
+                for (final Map.Entry<Object, Object[]> entry : keyed.entrySet()) {
+                    final Object[] values = entry.getValue();
+                    compare(path.detachedChild(String.valueOf(entry.getKey())), values[0], values[1], values[2], depth);
+                }
+                return true;
+            }
+            if (base instanceof List && ours instanceof List && theirs instanceof List
+                    && base.size() == ours.size() && base.size() == theirs.size()) {
+                final List<?> baseList = (List<?>) base;
+                final List<?> oursList = (List<?>) ours;
+                final List<?> theirsList = (List<?>) theirs;
+                for (int i = 0; i < baseList.size(); i++) {
+                    compare(path.detachedChild("[" + i + "]"), baseList.get(i), oursList.get(i), theirsList.get(i), depth);
+                }
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 把一方的元素按 {@link DiffKey} 放入 {@code keyed} 的第 {@code side} 列
+         *
+         * @return 元素都有键且不重复
+         */
+        private boolean index(Map<Object, Object[]> keyed, Collection<?> elements, int side) {
+            for (final Object element : elements) {
+                if (element == null || DiffPlan.of(element.getClass()).getKeyField() == null) {
+                    return false;
+                }
+                final Object[] values = keyed.computeIfAbsent(DiffDetailBuilder.keyOf(element), key -> new Object[3]);
+                if (values[side] != null) {
+                    return false;
+                }
+                values[side] = element;
+            }
+            return true;
+        }
+
+        private void compareFields(PathNode path, Object base, Object ours, Object theirs, int depth) {
+            final DiffPlan plan = DiffPlan.of(base.getClass());
+            final DiffFilter filter = options.getFilter();
+            final boolean pathRules = filter.hasPathRules();
+            for (final FieldPlan fieldPlan : filter.fields(plan)) {
+                final PathNode fieldPath = fieldPlan.nodeUnder(path);
+                if (pathRules && !filter.accepts(fieldPath)) {
+                    continue;
+                }
+                final FieldAccessor accessor = fieldPlan.getAccessor();
+                if (accessor.isPrimitive()) {
+                    // 基础类型不装箱比较，只有变化时才读取装箱值
+                    final boolean oursChanged = !accessor.same(base, ours);
+                    final boolean theirsChanged = !accessor.same(base, theirs);
+                    if (oursChanged || theirsChanged) {
+                        classify(fieldPath, accessor.get(base), accessor.get(ours), accessor.get(theirs),
+                                oursChanged, theirsChanged);
+                    }
+                    continue;
+                }
+                compare(fieldPath, accessor.get(base), accessor.get(ours), accessor.get(theirs), depth + 1);
+            }
+        }
+
+        private void classify(PathNode path, Object base, Object ours, Object theirs,
+                              boolean oursChanged, boolean theirsChanged) {
+            final MergeKind kind;
+            if (oursChanged && theirsChanged) {
+                kind = same(ours, theirs) ? MergeKind.BOTH : MergeKind.CONFLICT;
+            } else if (oursChanged) {
+                kind = MergeKind.OURS;
+            } else if (theirsChanged) {
+                kind = MergeKind.THEIRS;
+            } else {
+                return;
+            }
+            changes.add(new MergeChange(path.getPath(), kind, base, ours, theirs));
+        }
+
+        /**
+         * 按两方比较的规则判断两个值是否相同，数值、字符串等直接比较，其他值发现第一处差异后停止
+         */
+        @SuppressWarnings("unchecked")
+        private boolean same(Object lhs, Object rhs) {
+            if (lhs == rhs) {
+                return true;
+            }
+            if (lhs == null || rhs == null) {
+                return false;
+            }
+            final Class<?> type = lhs.getClass();
+            if (type == rhs.getClass()) {
+                final ValueComparator<Object> comparator = options.getComparators().get(type);
+                if (comparator != null) {
+                    return comparator.same(lhs, rhs);
+                }
+                final ValueKind kind = ValueKind.of(type);
+                if (kind == ValueKind.SCALAR) {
+                    return lhs.equals(rhs);
+                }
+                if (kind == ValueKind.COMPARABLE) {
+                    return lhs.equals(rhs) || ((Comparable<Object>) lhs).compareTo(rhs) == 0;
+                }
+            }
+            final Found found = new Found();
+            final DiffDetailBuilder<Object> builder = new DiffDetailBuilder<>(VALUE, null, null)
+                    .withOptions(valueOptions).withSink(found);
+            builder.append(VALUE, lhs, rhs);
+            builder.appendNested();
+            return !found.found;
+        }
+    }
+
+    private static final class Found implements DiffSink {
+        private boolean found;
+
+        @Override
+        public void accept(DiffPair<?> pair) {
+            found = true;
+        }
+
+        @Override
+        public boolean isDone() {
+            return found;
+        }
+
+        @Override
+        public boolean needsValues() {
+            return false;
+        }
+    }
+}
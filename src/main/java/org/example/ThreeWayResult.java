@@ -0,0 +1,56 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 三方比较的结果
+ *
+ * @param <T> 对象类型
+ */
+public final class ThreeWayResult<T> {
+
+    private final String rootName;
+
+    private final List<MergeChange> changes;
+
+    ThreeWayResult(String rootName, List<MergeChange> changes) {
+        this.rootName = rootName;
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * @return 按字段顺序排列的变化，不含两侧都没有修改的路径
+     */
+    public List<MergeChange> getChanges() {
+        return changes;
+    }
+
+    public List<MergeChange> getConflicts() {
+        return changes.stream().filter(change -> change.getKind() == MergeKind.CONFLICT).collect(Collectors.toList());
+    }
+
+    public boolean hasConflicts() {
+        return changes.stream().anyMatch(change -> change.getKind() == MergeKind.CONFLICT);
+    }
+
+    /**
+     * 把只有对方修改的值直接写入目标对象，冲突的路径保留目标对象中的值。与 {@link DiffPatch#apply(Object)} 相同，
+     * 目标对象及其子对象的字段被修改，集合、Map 复制后写回字段；需要保留我方对象时传入副本
+     *
+     * @param target 我方对象或其副本，会被修改
+     * @return 修改后的 {@code target} 本身
+     * @throws IllegalStateException 路径无法写入，见 {@link DiffPatch#apply(Object)}
+     */
+    public T merge(T target) {
+        final List<DiffPair<?>> theirs = new ArrayList<>();
+        for (final MergeChange change : changes) {
+            if (change.getKind() == MergeKind.THEIRS) {
+                theirs.add(new DiffPair<>(change.getPath(), change.getOurs(), change.getTheirs()));
+            }
+        }
+        return DiffPatch.<T>of(rootName, theirs).apply(target);
+    }
+}
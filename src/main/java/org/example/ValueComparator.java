@@ -0,0 +1,55 @@
+package org.example;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 判断同一类型的两个值是否相同，在 {@link ComparatorRegistry} 中按类注册，替代默认的比较方式
+ *
+ * @param <T> 值类型
+ */
+@FunctionalInterface
+public interface ValueComparator<T> {
+
+    /**
+     * @param left  左值，不为 {@code null}
+     * @param right 右值，不为 {@code null}，与左值类型相同
+     * @return 是否相同
+     */
+    boolean same(T left, T right);
+
+    /**
+     * 按 {@link Comparable#compareTo(Object)} 比较，例如忽略 {@link java.math.BigDecimal} 的精度差异
+     */
+    static <T extends Comparable<? super T>> ValueComparator<T> byCompareTo() {
+        return (left, right) -> left.compareTo(right) == 0;
+    }
+
+    /**
+     * 数值之差的绝对值不超过 {@code tolerance} 时视为相同，两侧都是 NaN 时也视为相同
+     *
+     * @param tolerance 允许的误差
+     * @return 比较器
+     */
+    static ValueComparator<Number> tolerance(double tolerance) {
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("tolerance must not be negative: " + tolerance);
+        }
+        return (left, right) -> {
+            double l = left.doubleValue();
+            double r = right.doubleValue();
+            return Math.abs(l - r) <= tolerance || (Double.isNaN(l) && Double.isNaN(r));
+        };
+    }
+
+    /**
+     * 先转换再按 {@link Objects#equals(Object, Object)} 比较，例如把时间截断到毫秒
+     *
+     * @param mapper 转换
+     * @return 比较器
+     */
+    static <T> ValueComparator<T> comparing(Function<? super T, ?> mapper) {
+        Objects.requireNonNull(mapper, "mapper");
+        return (left, right) -> Objects.equals(mapper.apply(left), mapper.apply(right));
+    }
+}
@@ -0,0 +1,88 @@
+package org.example;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 值按运行期类型的分类，决定 {@link DiffDetailBuilder#append(PathNode, Object, Object)} 的比较方式，每个类只判断一次
+ */
+enum ValueKind {
+    BOOLEAN_ARRAY,
+    BYTE_ARRAY,
+    CHAR_ARRAY,
+    DOUBLE_ARRAY,
+    FLOAT_ARRAY,
+    INT_ARRAY,
+    LONG_ARRAY,
+    SHORT_ARRAY,
+    OBJECT_ARRAY,
+    MAP,
+    /**
+     * 数值和字符序列，不相等即为差异
+     */
+    SCALAR,
+    /**
+     * 其他 {@link Comparable}，{@code compareTo} 不为 0 即为差异
+     */
+    COMPARABLE,
+    COLLECTION,
+    /**
+     * 其他对象，逐字段比较
+     */
+    OBJECT;
+
+    private static final ClassValue<ValueKind> KINDS = new ClassValue<>() {
+        @Override
+        protected ValueKind computeValue(Class<?> type) {
+            return classify(type);
+        }
+    };
+
+    static ValueKind of(Class<?> type) {
+        return KINDS.get(type);
+    }
+
+    private static ValueKind classify(Class<?> type) {
+        if (type.isArray()) {
+            Class<?> component = type.getComponentType();
+            if (component == boolean.class) {
+                return BOOLEAN_ARRAY;
+            }
+            if (component == byte.class) {
+                return BYTE_ARRAY;
+            }
+            if (component == char.class) {
+                return CHAR_ARRAY;
+            }
+            if (component == double.class) {
+                return DOUBLE_ARRAY;
+            }
+            if (component == float.class) {
+                return FLOAT_ARRAY;
+            }
+            if (component == int.class) {
+                return INT_ARRAY;
+            }
+            if (component == long.class) {
+                return LONG_ARRAY;
+            }
+            if (component == short.class) {
+                return SHORT_ARRAY;
+            }
+            return OBJECT_ARRAY;
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return MAP;
+        }
+        if (Number.class.isAssignableFrom(type) || CharSequence.class.isAssignableFrom(type)) {
+            return SCALAR;
+        }
+        if (Comparable.class.isAssignableFrom(type)) {
+            return COMPARABLE;
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            return COLLECTION;
+        }
+        return OBJECT;
+    }
+}
@@ -0,0 +1,153 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * 一次比较中遇到过的 (左, 右) 子对象对及其结果，按引用判断，同一对子对象在其他路径下再次出现时直接复用结果。
+ * 只出现过一次的对象对只记录一个标记，不保留差异
+ * <p>
+ * 开放寻址的哈希表，左右对象交错存放在同一个数组中，不为每个对象对分配节点
+ */
+class VisitedPairs {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * 超过该容量的表不再复用，避免一次很大的比较之后一直占用内存
+     */
+    private static final int MAX_REUSED_CAPACITY = 1 << 12;
+
+    /**
+     * 一次比较中记录的结果最多保留的差异数，超过后不再记录，避免内存随差异总数增长
+     */
+    private static final int MAX_RETAINED_DIFFS = 1 << 12;
+
+    private Object[] table = new Object[INITIAL_CAPACITY * 2];
+
+    private DiffDetailBuilder.Shared[] values = new DiffDetailBuilder.Shared[INITIAL_CAPACITY];
+
+    private int size;
+
+    private int retained;
+
+    /**
+     * @param concurrent 是否会被多个线程同时使用
+     */
+    static VisitedPairs create(boolean concurrent) {
+        return concurrent ? new Synchronized() : new VisitedPairs();
+    }
+
+    /**
+     * @return 对象对的比较结果，没有记录过时返回 {@code null}
+     */
+    DiffDetailBuilder.Shared get(Object left, Object right) {
+        final int mask = table.length - 1;
+        int i = index(left, right, mask);
+        Object l;
+        while ((l = table[i]) != null) {
+            if (l == left && table[i + 1] == right) {
+                return values[i >> 1];
+            }
+            i = (i + 2) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * 记录一个对象对的比较结果，两侧都不能为 {@code null}，已经记录过时替换原来的结果
+     */
+    void put(Object left, Object right, DiffDetailBuilder.Shared value) {
+        final int mask = table.length - 1;
+        int i = index(left, right, mask);
+        Object l;
+        while ((l = table[i]) != null) {
+            if (l == left && table[i + 1] == right) {
+                values[i >> 1] = value;
+                return;
+            }
+            i = (i + 2) & mask;
+        }
+        table[i] = left;
+        table[i + 1] = right;
+        values[i >> 1] = value;
+        // 负载超过一半时扩容
+        if (++size * 4 > table.length) {
+            resize();
+        }
+    }
+
+    /**
+     * 为即将记录的一个结果占用额度
+     *
+     * @param diffs 结果中保留的差异数
+     * @return 是否还有额度，没有时不应记录
+     */
+    boolean retain(int diffs) {
+        if (retained + diffs + 1 > MAX_RETAINED_DIFFS) {
+            return false;
+        }
+        retained += diffs + 1;
+        return true;
+    }
+
+    /**
+     * 清空后复用
+     *
+     * @return 表不大、可以复用时返回 {@code true}
+     */
+    boolean reset() {
+        if (table.length > MAX_REUSED_CAPACITY * 2) {
+            return false;
+        }
+        if (size > 0) {
+            Arrays.fill(table, null);
+            Arrays.fill(values, null);
+            size = 0;
+        }
+        retained = 0;
+        return true;
+    }
+
+    private void resize() {
+        final Object[] old = table;
+        final DiffDetailBuilder.Shared[] oldValues = values;
+        table = new Object[old.length * 2];
+        values = new DiffDetailBuilder.Shared[oldValues.length * 2];
+        final int mask = table.length - 1;
+        for (int j = 0; j < old.length; j += 2) {
+            if (old[j] != null) {
+                int i = index(old[j], old[j + 1], mask);
+                while (table[i] != null) {
+                    i = (i + 2) & mask;
+                }
+                table[i] = old[j];
+                table[i + 1] = old[j + 1];
+                values[i >> 1] = oldValues[j >> 1];
+            }
+        }
+    }
+
+    private static int index(Object left, Object right, int mask) {
+        int h = System.identityHashCode(left) * 31 + System.identityHashCode(right);
+        h ^= h >>> 16;
+        // 偶数下标存左对象
+        return (h << 1) & mask;
+    }
+
+    private static final class Synchronized extends VisitedPairs {
+        @Override
+        synchronized DiffDetailBuilder.Shared get(Object left, Object right) {
+            return super.get(left, right);
+        }
+
+        @Override
+        synchronized void put(Object left, Object right, DiffDetailBuilder.Shared value) {
+            super.put(left, right, value);
+        }
+
+        @Override
+        synchronized boolean retain(int diffs) {
+            return super.retain(diffs);
+        }
+    }
+}
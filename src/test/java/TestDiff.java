@@ -2,19 +2,91 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Getter;
 import lombok.ToString;
+import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.builder.Diff;
+import org.apache.commons.lang3.builder.DiffExclude;
 import org.apache.commons.lang3.builder.DiffResult;
 import org.apache.commons.lang3.builder.ToStringStyle;
+import org.apache.commons.lang3.reflect.FieldUtils;
 import org.example.DiffPair;
 import org.example.ReflectionDiffBuilder;
+import org.example.BulkDiff;
+import org.example.BulkDiffResult;
+import org.example.CollectionDiffMode;
+import org.example.ComparatorRegistry;
+import org.example.DiffCodec;
+import org.example.DiffCollection;
+import org.example.DiffDetailBuilder;
 import org.example.DiffDetailResult;
+import org.example.DiffEngine;
+import org.example.DiffFilter;
+import org.example.DiffFingerprints;
+import org.example.DiffKey;
+import org.example.DiffMetrics;
+import org.example.DiffOptions;
+import org.example.DiffPatch;
+import org.example.DiffPlan;
+import org.example.DiffSink;
+import org.example.DiffSnapshot;
+import org.example.DiffStrategy;
+import org.example.DiffVersion;
+import org.example.EncodedDiffs;
+import org.example.FieldAccessor;
+import org.example.FieldAccessors;
+import org.example.FieldPlan;
 import org.example.FieldSCName;
+import org.example.OpaqueValue;
+import org.example.ParallelDiff;
+import org.example.PathNode;
+import org.example.PathUtils;
+import org.example.SnapshotFile;
+import org.example.TextDiff;
+import org.example.TextHunk;
+import org.example.ThreeWayDiff;
+import org.example.ThreeWayResult;
+import org.example.ValueComparator;
 import org.junit.jupiter.api.Test;
-
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.management.ObjectName;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestDiff {
 
@@ -131,4 +203,1185 @@ public class TestDiff {
         }
         return List.of(build);
     }
+
+    public static class PlanBase {
+        static int instances;
+        @FieldSCName("基础")
+        private String base;
+        private transient String cache;
+        @DiffExclude
+        private String hidden;
+    }
+
+    @FieldSCName("计划")
+    public static class PlanChild extends PlanBase {
+        private int own;
+        @FieldSCName("名称")
+        private String name;
+    }
+
+    @Test
+    public void planIsCachedAndListsFieldsLikeFieldUtils() {
+        DiffPlan plan = DiffPlan.of(PlanChild.class);
+        assertSame(plan, DiffPlan.of(PlanChild.class));
+        assertSame(plan.getFields().get(0).getAccessor(), DiffPlan.of(PlanChild.class).getFields().get(0).getAccessor());
+
+        // 逐个字段调用 FieldUtils 时的顺序、名称和排除规则
+        List<Field> expected = FieldUtils.getAllFieldsList(PlanChild.class).stream()
+                .filter(field -> field.getName().indexOf(ClassUtils.INNER_CLASS_SEPARATOR_CHAR) == -1
+                        && !Modifier.isTransient(field.getModifiers()) && !Modifier.isStatic(field.getModifiers())
+                        && !field.isAnnotationPresent(DiffExclude.class))
+                .collect(Collectors.toList());
+        assertEquals(expected, plan.getFields().stream().map(FieldPlan::getField).collect(Collectors.toList()));
+        assertEquals(List.of("own", "名称", "基础"), plan.getFields().stream().map(FieldPlan::getName).collect(Collectors.toList()));
+        assertEquals("计划", plan.getDocumentName());
+        for (FieldPlan fieldPlan : plan.getFields()) {
+            assertEquals(PathUtils.join("-", "计划", ReflectionDiffBuilder.invokeName(fieldPlan.getField())), fieldPlan.toString());
+            assertEquals(PathUtils.join("-", "文档", fieldPlan.getName()), fieldPlan.nodeUnder(PathNode.root("文档")).getPath());
+        }
+        assertNull(plan.getField("hidden"));
+        assertNull(plan.getField("cache"));
+    }
+
+    public static class Primitives {
+        private int i;
+        private long l;
+        private double d;
+        private float f;
+        private boolean z;
+        private byte b;
+        private short s;
+        private char c;
+        private String text;
+
+        Primitives(int value) {
+            i = value;
+            l = value;
+            d = value == 0 ? -0.0 : value;
+            f = value;
+            z = value != 0;
+            b = (byte) value;
+            s = (short) value;
+            c = (char) value;
+            text = String.valueOf(value);
+        }
+    }
+
+    @Test
+    public void accessorsReadAndCompareEveryPrimitiveType() throws NoSuchFieldException {
+        Primitives zero = new Primitives(0);
+        Primitives otherZero = new Primitives(0);
+        Primitives one = new Primitives(1);
+        for (FieldAccessors factory : FieldAccessors.values()) {
+            for (Field field : Primitives.class.getDeclaredFields()) {
+                FieldAccessor accessor = factory.create(field);
+                String name = factory + " " + field.getName();
+                field.setAccessible(true);
+                try {
+                    assertEquals(field.get(one), accessor.get(one), name);
+                } catch (IllegalAccessException e) {
+                    throw new AssertionError(e);
+                }
+                assertEquals(field.getType().isPrimitive(), accessor.isPrimitive(), name);
+                assertTrue(accessor.same(zero, zero), name);
+                assertFalse(accessor.same(zero, one), name);
+                // 基础类型按值比较，对象只比较引用
+                assertEquals(field.getType().isPrimitive(), accessor.same(zero, otherZero), name);
+            }
+        }
+        Primitives nan = new Primitives(0);
+        nan.d = Double.NaN;
+        Primitives otherNan = new Primitives(0);
+        otherNan.d = Double.NaN;
+        FieldAccessor doubles = FieldAccessors.METHOD_HANDLE.create(Primitives.class.getDeclaredField("d"));
+        assertTrue(doubles.same(nan, otherNan));
+        Primitives positiveZero = new Primitives(0);
+        positiveZero.d = 0.0;
+        assertFalse(doubles.same(zero, positiveZero));
+
+        // 模块未开放的字段退回反射
+        Field hash = String.class.getDeclaredField("hash");
+        assertSame(FieldAccessors.REFLECTION.create(hash).getClass(), FieldAccessors.METHOD_HANDLE.create(hash).getClass());
+        assertNotEquals(FieldAccessors.METHOD_HANDLE.create(Primitives.class.getDeclaredField("i")).getClass(),
+                FieldAccessors.REFLECTION.create(Primitives.class.getDeclaredField("i")).getClass());
+    }
+
+    @Test
+    public void pathNodesBuildTheSameStringsAsJoin() {
+        PathNode root = PathNode.root("人员信息");
+        assertSame(root, PathNode.root("人员信息"));
+        PathNode city = root.child("地址").child("城市");
+        assertSame(city, PathNode.root("人员信息").child("地址").child("城市"));
+        assertEquals(PathUtils.join("-", PathUtils.join("-", "人员信息", "地址"), "城市"), city.getPath());
+
+        PathNode index = root.child("手机号码").detachedChild("[0]");
+        assertNotSame(index, root.child("手机号码").detachedChild("[0]"));
+        assertEquals(index, root.child("手机号码").detachedChild("[0]"));
+        assertEquals(PathUtils.join("-", PathUtils.join("-", "人员信息", "手机号码"), "[0]"), index.getPath());
+        assertEquals(index.getPath() + "-号码类型", index.child("号码类型").getPath());
+
+        assertSame(PathNode.EMPTY, PathNode.root(""));
+        assertEquals(PathUtils.join("-", "", "城市"), PathNode.EMPTY.child("城市").getPath());
+        assertEquals(PathUtils.join("-", "", "[1]"), PathNode.EMPTY.detachedChild("[1]").getPath());
+        assertEquals("a-b", PathNode.detached("a-b").getPath());
+    }
+
+    @Test
+    public void compiledStrategyFindsSameDiffsAsReflection() {
+        Person person1 = new Person("John", "Doe", 30, new ArrayList<>(), new Address("123 Main St", "London", "12345"), null);
+        Person person2 = new Person("Jane", "Doe", 28, new ArrayList<>(), new Address("123 Main St", "Paris", "12345"), null);
+
+        DiffPlan plan = DiffPlan.of(Person.class);
+        plan.setStrategy(DiffStrategy.REFLECTION);
+        try {
+            List<DiffPair<?>> reflection = new ReflectionDiffBuilder<>("人员信息", person1, person2, Person.class).build().getDiffs();
+            plan.setStrategy(DiffStrategy.COMPILED);
+            List<DiffPair<?>> compiled = new ReflectionDiffBuilder<>("人员信息", person1, person2, Person.class).build().getDiffs();
+            assertEquals(reflection, compiled);
+            assertEquals(3, compiled.size());
+        } finally {
+            plan.setStrategy(null);
+        }
+    }
+
+    @Test
+    public void generatedDifferFindsSameDiffsAsReflection() {
+        Person person1 = new Person("John", "Doe", 30, new ArrayList<>(), new Address("123 Main St", "London", "12345"), null);
+        Person person2 = new Person("Jane", "Doe", 28, new ArrayList<>(), new Address("123 Main St", "Paris", "12345"), null);
+
+        DiffPlan plan = DiffPlan.of(Person.class);
+        assertNotNull(plan.generatedDiffer());
+        List<DiffPair<?>> generated = new ReflectionDiffBuilder<>("人员信息", person1, person2, Person.class).build().getDiffs();
+        plan.setStrategy(DiffStrategy.REFLECTION);
+        try {
+            List<DiffPair<?>> reflection = new ReflectionDiffBuilder<>("人员信息", person1, person2, Person.class).build().getDiffs();
+            assertEquals(reflection, generated);
+        } finally {
+            plan.setStrategy(null);
+        }
+    }
+
+    @AllArgsConstructor
+    @FieldSCName("折扣")
+    public static class Discount {
+        @FieldSCName("比例")
+        private int rate;
+        @FieldSCName("说明")
+        String note;
+
+        public int getRate() {
+            return rate * 10;
+        }
+    }
+
+    @Test
+    public void generatedDifferReadsFieldsNotGetters() {
+        Discount discount1 = new Discount(1, "a");
+        Discount discount2 = new Discount(2, "b");
+        DiffPlan plan = DiffPlan.of(Discount.class);
+        assertNotNull(plan.generatedDiffer());
+        List<DiffPair<?>> generated = new ReflectionDiffBuilder<>(discount1, discount2).build().getDiffs();
+        assertEquals(List.of(new DiffPair<>("折扣-比例", 1, 2), new DiffPair<>("折扣-说明", "a", "b")), generated);
+        plan.setStrategy(DiffStrategy.REFLECTION);
+        try {
+            assertEquals(new ReflectionDiffBuilder<>(discount1, discount2).build().getDiffs(), generated);
+        } finally {
+            plan.setStrategy(null);
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    @FieldSCName("明细")
+    public static class LineItem {
+        @DiffKey
+        private String sku;
+        @FieldSCName("数量")
+        private int quantity;
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @FieldSCName("购物车")
+    public static class Cart {
+        @FieldSCName("明细")
+        private List<LineItem> items;
+        @FieldSCName("标签")
+        @DiffCollection(CollectionDiffMode.LCS)
+        private List<String> tags;
+    }
+
+    @Test
+    public void keyedCollectionMatchesElementsByKey() {
+        List<LineItem> items1 = new ArrayList<>();
+        List<LineItem> items2 = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            items1.add(new LineItem("sku" + i, 1));
+            items2.add(new LineItem("sku" + i, i == 500 ? 2 : 1));
+        }
+        items2.add(0, new LineItem("new", 1));
+        items1.add(new LineItem("gone", 1));
+
+        List<DiffPair<?>> diffs = new ReflectionDiffBuilder<>(new Cart(items1, List.of()), new Cart(items2, List.of())).build().getDiffs();
+
+        assertEquals(List.of(
+                new DiffPair<>("购物车-明细-gone", new LineItem("gone", 1), null),
+                new DiffPair<>("购物车-明细-new", null, new LineItem("new", 1)),
+                new DiffPair<>("购物车-明细-sku500-数量", 1, 2)), diffs);
+    }
+
+    @Test
+    public void lcsCollectionReportsOnlyInsertedElements() {
+        List<String> tags1 = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            tags1.add("tag" + i);
+        }
+        List<String> tags2 = new ArrayList<>(tags1);
+        tags2.add(0, "first");
+        tags2.remove(5000);
+        tags2.set(8000, "changed");
+
+        List<DiffPair<?>> diffs = new ReflectionDiffBuilder<>(new Cart(List.of(), tags1), new Cart(List.of(), tags2)).build().getDiffs();
+
+        assertEquals(List.of(
+                new DiffPair<>("购物车-标签", null, "first"),
+                new DiffPair<>("购物车-标签", "tag4999", null),
+                new DiffPair<>("购物车-标签", "tag8000", "changed")), diffs);
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @FieldSCName("标签组")
+    public static class TagGroups {
+        @FieldSCName("标签")
+        private List<String> primary;
+        @FieldSCName("标签")
+        @DiffCollection(CollectionDiffMode.LCS)
+        private List<String> secondary;
+    }
+
+    @Test
+    public void fieldsSharingADisplayNameKeepTheirOwnPlan() {
+        List<String> tags = List.of("a", "b", "c");
+        List<String> inserted = List.of("first", "a", "b", "c");
+
+        for (DiffStrategy strategy : List.of(DiffStrategy.COMPILED, DiffStrategy.REFLECTION)) {
+            DiffPlan.of(TagGroups.class).setStrategy(strategy);
+            try {
+                assertEquals(List.of(new DiffPair<>("标签组-标签", null, "first")),
+                        new ReflectionDiffBuilder<>(new TagGroups(tags, tags), new TagGroups(tags, inserted)).build().getDiffs());
+            } finally {
+                DiffPlan.of(TagGroups.class).setStrategy(null);
+            }
+        }
+        assertNotNull(DiffPlan.of(TagGroups.class).generatedDiffer());
+        assertEquals(List.of(new DiffPair<>("标签组-标签", null, "first")),
+                new ReflectionDiffBuilder<>(new TagGroups(tags, tags), new TagGroups(tags, inserted)).build().getDiffs());
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @FieldSCName("配置")
+    public static class Settings {
+        @FieldSCName("属性")
+        private Map<String, Object> properties;
+        @FieldSCName("地址")
+        private SortedMap<String, Address> addresses;
+    }
+
+    @Test
+    public void mapDiffReportsPerKeyPaths() {
+        Map<String, Object> properties1 = new HashMap<>();
+        properties1.put("timeout", 30);
+        properties1.put("retries", 3);
+        properties1.put("region", "eu");
+        Map<String, Object> properties2 = new HashMap<>(properties1);
+        properties2.put("timeout", 60);
+        properties2.remove("retries");
+        properties2.put("zone", "a");
+
+        SortedMap<String, Address> addresses1 = new TreeMap<>();
+        addresses1.put("home", new Address("123 Main St", "London", "12345"));
+        addresses1.put("work", new Address("1 Office Rd", "London", "11111"));
+        SortedMap<String, Address> addresses2 = new TreeMap<>();
+        addresses2.put("home", new Address("123 Main St", "Paris", "12345"));
+        addresses2.put("office", new Address("1 Office Rd", "London", "11111"));
+
+        List<DiffPair<?>> diffs = new ReflectionDiffBuilder<>(new Settings(properties1, addresses1), new Settings(properties2, addresses2)).build().getDiffs();
+
+        assertEquals(Set.of(
+                new DiffPair<>("配置-属性-timeout", 30, 60),
+                new DiffPair<>("配置-属性-retries", 3, null),
+                new DiffPair<>("配置-属性-zone", null, "a"),
+                new DiffPair<>("配置-地址-office", null, addresses2.get("office")),
+                new DiffPair<>("配置-地址-work", addresses1.get("work"), null),
+                new DiffPair<>("配置-地址-home-城市", "London", "Paris")), new HashSet<>(diffs));
+        assertEquals(6, diffs.size());
+    }
+
+    @Test
+    public void parallelDiffKeepsSerialOrder() throws InterruptedException {
+        List<LineItem> items1 = new ArrayList<>();
+        List<LineItem> items2 = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            items1.add(new LineItem("sku" + i, 1));
+            items2.add(new LineItem("sku" + i, i % 3 == 0 ? 2 : 1));
+        }
+        Cart cart1 = new Cart(items1, List.of());
+        Cart cart2 = new Cart(items2, List.of());
+        DiffOptions options = DiffOptions.builder().parallel(true).parallelThreshold(2).build();
+
+        List<DiffPair<?>> serial = new ReflectionDiffBuilder<>(cart1, cart2).build().getDiffs();
+        List<DiffPair<?>> parallel = new ReflectionDiffBuilder<>(cart1, cart2).withOptions(options).build().getDiffs();
+        assertEquals(667, serial.size());
+        assertEquals(serial, parallel);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<DiffDetailResult<Cart>> results = ParallelDiff.diffAll(List.of(cart1, cart2), List.of(cart2, cart2), executor);
+            assertEquals(serial, results.get(0).getDiffs());
+            assertTrue(results.get(1).getDiffs().isEmpty());
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void sinkReceivesDiffsInBuildOrderAndCanStopEarly() {
+        Person father1 = new Person("John", "Doe", 60, new ArrayList<>(), new Address("1 Main St", "London", "12345"), null);
+        Person father2 = new Person("Jack", "Doe", 61, new ArrayList<>(), new Address("1 Main St", "Paris", "12345"), null);
+        Person person1 = new Person("Jane", "Doe", 30, new ArrayList<>(), new Address("2 Main St", "London", "12345"), father1);
+        Person person2 = new Person("Jill", "Roe", 30, new ArrayList<>(), new Address("2 Main St", "London", "54321"), father2);
+
+        DiffDetailResult<Person> result = new ReflectionDiffBuilder<>("人员信息", person1, person2).build();
+        List<DiffPair<?>> streamed = new ArrayList<>();
+        new ReflectionDiffBuilder<>("人员信息", person1, person2).diff(streamed::add);
+        assertEquals(result.getDiffs(), streamed);
+        assertEquals(result.getDiffs(), new ReflectionDiffBuilder<>("人员信息", person1, person2).stream().collect(Collectors.toList()));
+        List<org.example.Diff<?>> iterated = new ArrayList<>();
+        result.forEach(iterated::add);
+        assertEquals(result.getDiffs(), iterated);
+
+        List<DiffPair<?>> firstTwo = new ArrayList<>();
+        new ReflectionDiffBuilder<>("人员信息", person1, person2).diff(new DiffSink() {
+            @Override
+            public void accept(DiffPair<?> pair) {
+                firstTwo.add(pair);
+            }
+
+            @Override
+            public boolean isDone() {
+                return firstTwo.size() >= 2;
+            }
+        });
+        assertEquals(result.getDiffs().subList(0, 2), firstTwo);
+    }
+
+    @Test
+    public void streamStopsComparingOnceShortCircuited() {
+        List<LineItem> items1 = new ArrayList<>();
+        List<LineItem> items2 = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            items1.add(new LineItem("sku" + i, 1));
+            items2.add(new LineItem("sku" + i, 2));
+        }
+        int[] compared = new int[1];
+        DiffOptions options = DiffOptions.builder().comparators(ComparatorRegistry.builder()
+                .register(LineItem.class, (left, right) -> {
+                    compared[0]++;
+                    return left.equals(right);
+                }).build()).build();
+        Cart cart1 = new Cart(items1, List.of());
+        Cart cart2 = new Cart(items2, List.of());
+
+        assertEquals("购物车-明细-sku0", new ReflectionDiffBuilder<>(cart1, cart2).withOptions(options).stream()
+                .findFirst().orElseThrow().path());
+        assertEquals(1, compared[0]);
+
+        compared[0] = 0;
+        List<DiffPair<?>> firstTen = new ReflectionDiffBuilder<>(cart1, cart2).withOptions(options).stream()
+                .limit(10).collect(Collectors.toList());
+        assertTrue(compared[0] < 100, String.valueOf(compared[0]));
+        assertEquals(new ReflectionDiffBuilder<>(cart1, cart2).withOptions(options).build(10).getDiffs(), firstTen);
+        assertEquals(new ReflectionDiffBuilder<>(cart1, cart2).withOptions(options).build().getDiffs(),
+                new ReflectionDiffBuilder<>(cart1, cart2).withOptions(options).stream().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void differsAndBudgetStopAtTheFirstDiffs() {
+        Person father1 = new Person("John", "Doe", 60, new ArrayList<>(), new Address("1 Main St", "London", "12345"), null);
+        Person father2 = new Person("Jack", "Doe", 61, new ArrayList<>(), new Address("1 Main St", "Paris", "12345"), null);
+        Person person1 = new Person("Jane", "Doe", 30, new ArrayList<>(), new Address("2 Main St", "London", "12345"), father1);
+        Person person2 = new Person("Jill", "Roe", 30, new ArrayList<>(), new Address("2 Main St", "London", "54321"), father2);
+        Person copy = new Person("Jane", "Doe", 30, new ArrayList<>(), new Address("2 Main St", "London", "12345"), father1);
+
+        assertFalse(ReflectionDiffBuilder.differs(person1, copy));
+        assertTrue(ReflectionDiffBuilder.differs(person1, person2));
+        assertTrue(ReflectionDiffBuilder.differs(person1, null));
+
+        List<DiffPair<?>> all = new ReflectionDiffBuilder<>("人员信息", person1, person2).build().getDiffs();
+        assertEquals(all.subList(0, 3), new ReflectionDiffBuilder<>("人员信息", person1, person2).build(3).getDiffs());
+        assertEquals(all, new ReflectionDiffBuilder<>("人员信息", person1, person2).build(all.size() + 1).getDiffs());
+    }
+
+    @Test
+    public void primitiveArraysReportChangedRanges() {
+        double[] readings1 = {0.0, 0.5, 1.0, 1.5, 2.0, 2.5};
+        double[] readings2 = {0.0, 9.5, 9.0, 1.5, 2.0, 9.5, 3.0};
+        List<DiffPair<?>> diffs = new DiffDetailBuilder<>("采样", readings1, readings2)
+                .append("读数", readings1, readings2).build().getDiffs();
+        assertEquals(List.of(
+                new DiffPair<>("读数-[1,3)", new double[]{0.5, 1.0}, new double[]{9.5, 9.0}),
+                new DiffPair<>("读数-[5,6)", new double[]{2.5}, new double[]{9.5}),
+                new DiffPair<>("读数-[6,7)", new double[0], new double[]{3.0})), diffs);
+
+        int[] counts = {1, 2, 3};
+        assertTrue(new DiffDetailBuilder<>("采样", counts, counts.clone()).append("计数", counts, counts.clone()).build().getDiffs().isEmpty());
+    }
+
+    @Getter
+    @FieldSCName("节点")
+    public static class Node {
+        @FieldSCName("名称")
+        private final String name;
+        @FieldSCName("上级")
+        private Node parent;
+        @FieldSCName("下级")
+        private Node child;
+        @FieldSCName("关联")
+        private Node link;
+
+        Node(String name) {
+            this.name = name;
+        }
+    }
+
+    public static class Chain {
+        @FieldSCName("标签")
+        private final Tag tag;
+        @FieldSCName("下一个")
+        private final Chain next;
+
+        Chain(Tag tag, Chain next) {
+            this.tag = tag;
+            this.next = next;
+        }
+    }
+
+    /**
+     * 记录指纹计算时读取 {@link #hashCode()} 的次数
+     */
+    public static class Tag implements Comparable<Tag> {
+        private static int hashes;
+        private final int value;
+
+        Tag(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(Tag other) {
+            return Integer.compare(value, other.value);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Tag && ((Tag) other).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            hashes++;
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    @Test
+    public void cyclesStopAndSharedObjectsAreReportedAtEveryPath() {
+        Node parent1 = new Node("parent");
+        Node child1 = new Node("child");
+        Node shared1 = new Node("shared");
+        parent1.child = child1;
+        parent1.link = shared1;
+        child1.parent = parent1;
+        child1.link = shared1;
+        Node parent2 = new Node("parent");
+        Node child2 = new Node("kid");
+        Node shared2 = new Node("common");
+        parent2.child = child2;
+        parent2.link = shared2;
+        child2.parent = parent2;
+        child2.link = shared2;
+
+        List<DiffPair<?>> diffs = new ReflectionDiffBuilder<>(parent1, parent2).build().getDiffs();
+        assertEquals(List.of(
+                new DiffPair<>("节点-下级-名称", "child", "kid"),
+                new DiffPair<>("节点-下级-关联-名称", "shared", "common"),
+                new DiffPair<>("节点-关联-名称", "shared", "common")), diffs);
+
+        DiffOptions shallow = DiffOptions.builder().maxDepth(0).build();
+        assertEquals(List.of(
+                new DiffPair<>("节点-下级", child1, child2),
+                new DiffPair<>("节点-关联", shared1, shared2)),
+                new ReflectionDiffBuilder<>(parent1, parent2).withOptions(shallow).build().getDiffs());
+    }
+
+    @Test
+    public void sharedSubObjectIsReportedUnderEachPath() {
+        Address address1 = new Address("1 Main St", "London", "12345");
+        Address address2 = new Address("1 Main St", "Paris", "12345");
+        Person person1 = null;
+        Person person2 = null;
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            person1 = new Person("John", "Doe", 60, new ArrayList<>(), address1, person1);
+            person2 = new Person("John", "Doe", 60, new ArrayList<>(), address2, person2);
+            expected.add("父亲-".repeat(i) + "地址-城市");
+        }
+
+        List<DiffPair<?>> serial = new ReflectionDiffBuilder<>(person1, person2).build().getDiffs();
+        assertEquals(expected, serial.stream().map(DiffPair::path).collect(Collectors.toList()));
+        DiffOptions parallel = DiffOptions.builder().parallel(true).parallelThreshold(2).build();
+        for (int i = 0; i < 20; i++) {
+            assertEquals(serial, new ReflectionDiffBuilder<>(person1, person2).withOptions(parallel).build().getDiffs());
+        }
+    }
+
+    @Test
+    public void snapshotFindsSameDiffsAndCanBeReused() {
+        Person father1 = new Person("John", "Doe", 60, new ArrayList<>(), new Address("1 Main St", "London", "12345"), null);
+        Person father2 = new Person("Jack", "Doe", 61, new ArrayList<>(), new Address("1 Main St", "Paris", "12345"), null);
+        List<PhoneNumber> phoneNumbers1 = List.of(new PhoneNumber("home", "123"), new PhoneNumber("work", "456"));
+        List<PhoneNumber> phoneNumbers2 = List.of(new PhoneNumber("home", "123"), new PhoneNumber("mobile", "456"));
+        Person person1 = new Person("Jane", "Doe", 30, phoneNumbers1, new Address("2 Main St", "London", "12345"), father1);
+        Person person2 = new Person("Jill", "Roe", 30, phoneNumbers2, new Address("2 Main St", "Paris", "12345"), father2);
+
+        DiffSnapshot<Person> snapshot = DiffSnapshot.capture(person1);
+        List<DiffPair<?>> expected = new ReflectionDiffBuilder<>(person1, person2).build().getDiffs();
+        List<DiffPair<?>> actual = new ArrayList<>();
+        DiffSnapshot<Person> next = snapshot.diff(person2, actual::add);
+        assertEquals(new HashSet<>(expected).size(), expected.size());
+        assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+        assertEquals(next.size(), DiffSnapshot.capture(person2).size());
+        assertTrue(next.diff(person2).isEmpty());
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @FieldSCName("会议")
+    public static class Meeting {
+        @FieldSCName("时间")
+        private Date time;
+        @FieldSCName("提醒")
+        private List<Date> reminders;
+    }
+
+    @Test
+    public void snapshotSeesMutableValuesChangedInPlace() {
+        Date time = new Date(1_000);
+        Date reminder = new Date(500);
+        Meeting meeting = new Meeting(time, new ArrayList<>(List.of(reminder)));
+        DiffSnapshot<Meeting> snapshot = DiffSnapshot.capture(meeting);
+        time.setTime(2_000);
+        reminder.setTime(600);
+        List<DiffPair<?>> diffs = snapshot.diff(meeting);
+        assertEquals(2, diffs.size());
+        assertEquals(new DiffPair<>("会议-时间", new Date(1_000), new Date(2_000)), diffs.get(0));
+        assertEquals("会议-提醒", diffs.get(1).path());
+        assertEquals(new Date(500), diffs.get(1).left());
+    }
+
+    @Test
+    public void snapshotSeesElementsChangedInPlace() {
+        List<PhoneNumber> phoneNumbers = new ArrayList<>(List.of(new PhoneNumber("home", "123"), new PhoneNumber("work", "456")));
+        Person person = new Person("Jane", "Doe", 30, phoneNumbers, new Address("2 Main St", "London", "12345"), null);
+        DiffSnapshot<Person> snapshot = DiffSnapshot.capture(person);
+        phoneNumbers.get(0).setType("mobile");
+        phoneNumbers.add(new PhoneNumber("fax", "789"));
+        List<DiffPair<?>> diffs = new ArrayList<>();
+        snapshot = snapshot.diff(person, diffs::add);
+        assertEquals(List.of(
+                new DiffPair<>("手机号码-号码类型", "home", "mobile"),
+                new DiffPair<>("手机号码", null, phoneNumbers.get(2))), diffs);
+        phoneNumbers.remove(1);
+        assertEquals(List.of(
+                new DiffPair<>("手机号码-号码类型", "work", "fax"),
+                new DiffPair<>("手机号码-number", "456", "789"),
+                new DiffPair<>("手机号码-号码类型", "fax", null),
+                new DiffPair<>("手机号码-number", "789", null)), snapshot.diff(person));
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("contact", new PhoneNumber("home", "123"));
+        properties.put("timeout", 30);
+        Settings settings = new Settings(properties, new TreeMap<>());
+        DiffSnapshot<Settings> settingsSnapshot = DiffSnapshot.capture(settings);
+        ((PhoneNumber) properties.get("contact")).setNumber("999");
+        properties.remove("timeout");
+        assertEquals(Set.of(
+                new DiffPair<>("配置-属性-contact-number", "123", "999"),
+                new DiffPair<>("配置-属性-timeout", 30, null)), new HashSet<>(settingsSnapshot.diff(settings)));
+    }
+
+    @Getter
+    @FieldSCName("版本对象")
+    public static class Versioned {
+        @DiffVersion
+        @FieldSCName("版本")
+        private int version;
+        @FieldSCName("名称")
+        private String name;
+    }
+
+    @Test
+    public void snapshotSkipsSubtreesWithUnchangedVersion() {
+        Versioned versioned = new Versioned();
+        versioned.name = "a";
+        DiffSnapshot<Versioned> snapshot = DiffSnapshot.capture(versioned);
+        versioned.name = "b";
+        assertTrue(snapshot.diff(versioned).isEmpty());
+        versioned.version++;
+        assertEquals(List.of(
+                new DiffPair<>("版本对象-版本", 0, 1),
+                new DiffPair<>("版本对象-名称", "a", "b")), snapshot.diff(versioned));
+    }
+
+    @Test
+    public void encodedResultRoundTripsThroughMappedFile(@TempDir Path dir) throws IOException {
+        Person father1 = new Person("John", "Doe", 60, new ArrayList<>(), new Address("1 Main St", "London", "12345"), null);
+        Person father2 = new Person("Jack", "Doe", 61, new ArrayList<>(), new Address("1 Main St", "Paris", "12345"), null);
+        Person person1 = new Person("Jane", "Doe", 30, new ArrayList<>(), new Address("2 Main St", "London", "12345"), father1);
+        Person person2 = new Person("Jill", "Roe", 30, new ArrayList<>(), new Address("2 Main St", "London", "54321"), father2);
+        DiffDetailResult<Person> result = new ReflectionDiffBuilder<>("人员信息", person1, person2).build();
+        result.getDiffs().addAll(new DiffDetailBuilder<>("采样", null, null)
+                .append("读数", new double[]{0.5, 1.0, 1.5}, new double[]{0.5, 2.0}).build().getDiffs());
+
+        Path file = dir.resolve("diffs.bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            DiffCodec.write(result, channel);
+        }
+        EncodedDiffs encoded = EncodedDiffs.map(file);
+        assertEquals(result.getFieldName(), encoded.getRootName());
+        assertEquals(result.getDiffs().size(), encoded.size());
+        List<DiffPair<?>> decoded = new ArrayList<>();
+        encoded.forEach(decoded::add);
+        assertEquals(result.getDiffs(), decoded);
+        int last = encoded.size() - 1;
+        assertEquals(0, ((double[]) encoded.getRight(last)).length);
+        assertEquals(1.5, ((double[]) encoded.getLeft(last))[0]);
+    }
+
+    @Test
+    public void encodedValuesKeepEnumsAndMarkUnsupportedTypes() {
+        Date date = new Date(0);
+        EncodedDiffs encoded = EncodedDiffs.of(DiffCodec.encode("值", List.of(
+                new DiffPair<>("单位", ChronoUnit.DAYS, ChronoUnit.HOURS),
+                new DiffPair<>("时间", date, null),
+                new DiffPair<>("列表", List.of(TimeUnit.SECONDS), List.of()))));
+        assertSame(ChronoUnit.DAYS, encoded.getLeft(0));
+        assertSame(ChronoUnit.HOURS, encoded.getRight(0));
+        assertEquals(new OpaqueValue(Date.class.getName(), date.toString()), encoded.getLeft(1));
+        assertEquals(List.of(TimeUnit.SECONDS), encoded.getLeft(2));
+        assertEquals(List.of(), encoded.getRight(2));
+    }
+
+    @AllArgsConstructor
+    public static class Counts {
+        @FieldSCName("计数")
+        private int[] counts;
+    }
+
+    private static Cart cart(boolean right) {
+        List<LineItem> items = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            items.add(new LineItem("sku" + i, right && i == 5 ? 2 : 1));
+        }
+        if (right) {
+            items.add(0, new LineItem("new", 1));
+        } else {
+            items.add(new LineItem("gone", 1));
+        }
+        return new Cart(items, new ArrayList<>(right ? List.of("a", "x", "c") : List.of("a", "b", "c")));
+    }
+
+    private static Settings settings(boolean right) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("timeout", right ? 60 : 30);
+        properties.put(right ? "zone" : "retries", right ? "a" : 3);
+        SortedMap<String, Address> addresses = new TreeMap<>();
+        addresses.put("home", new Address("123 Main St", right ? "Paris" : "London", "12345"));
+        addresses.put(right ? "office" : "work", new Address("1 Office Rd", "London", "11111"));
+        return new Settings(properties, addresses);
+    }
+
+    @Test
+    public void patchTurnsLeftIntoRightAndBack() {
+        DiffPatch<Cart> cartPatch = DiffPatch.of(new ReflectionDiffBuilder<>(cart(false), cart(true)).build());
+        assertFalse(ReflectionDiffBuilder.differs(cartPatch.apply(cart(false)), cart(true)));
+        assertFalse(ReflectionDiffBuilder.differs(cartPatch.reverse().apply(cart(true)), cart(false)));
+
+        DiffPatch<Settings> settingsPatch = DiffPatch.of(new ReflectionDiffBuilder<>(settings(false), settings(true)).build());
+        assertFalse(ReflectionDiffBuilder.differs(settingsPatch.apply(settings(false)), settings(true)));
+        assertFalse(ReflectionDiffBuilder.differs(settingsPatch.reverse().apply(settings(true)), settings(false)));
+
+        Person father1 = new Person("John", "Doe", 60, null, new Address("1 Main St", "London", "12345"), null);
+        Person person1 = new Person("Jane", "Doe", 30, null, new Address("2 Main St", "London", "12345"), father1);
+        Person father2 = new Person("Jack", "Doe", 61, null, new Address("1 Main St", "Paris", "12345"), null);
+        Person person2 = new Person("Jill", "Roe", 31, null, null, father2);
+        Person person3 = new Person("Jill", "Roe", 32, null, new Address("3 Main St", "Rome", "12345"), father2);
+        DiffPatch<Person> first = DiffPatch.of(new ReflectionDiffBuilder<>("人员信息", person1, person2).build());
+        DiffPatch<Person> second = DiffPatch.of(new ReflectionDiffBuilder<>("人员信息", person2, person3).build());
+        Person copy = new Person("Jane", "Doe", 30, null, new Address("2 Main St", "London", "12345"),
+                new Person("John", "Doe", 60, null, new Address("1 Main St", "London", "12345"), null));
+        assertFalse(ReflectionDiffBuilder.differs(first.andThen(second).apply(copy), person3));
+
+        Counts counts1 = new Counts(new int[]{1, 2, 3, 4});
+        Counts counts2 = new Counts(new int[]{1, 9, 3});
+        DiffPatch<Counts> countsPatch = DiffPatch.of(new ReflectionDiffBuilder<>(counts1, counts2).build());
+        assertEquals(List.of(new DiffPair<>("计数-[1,2)", new int[]{2}, new int[]{9}),
+                new DiffPair<>("计数-[3,4)", new int[]{4}, new int[0])), countsPatch.getDiffs());
+        assertFalse(ReflectionDiffBuilder.differs(countsPatch.apply(new Counts(counts1.counts.clone())), counts2));
+        assertFalse(ReflectionDiffBuilder.differs(countsPatch.reverse().apply(new Counts(counts2.counts.clone())), counts1));
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @FieldSCName("标签")
+    public static class Labels {
+        @FieldSCName("值")
+        private List<String> values;
+    }
+
+    @Test
+    public void patchHandlesNullContainersDuplicatesAndKeysWithSeparators() {
+        Labels duplicated = new Labels(new ArrayList<>(List.of("x", "x")));
+        DiffPatch<Labels> ambiguous = DiffPatch.of(new ReflectionDiffBuilder<>(duplicated, new Labels(List.of("x", "y"))).build());
+        assertEquals(List.of(new DiffPair<>("标签-值", "x", "y")), ambiguous.getDiffs());
+        assertThrows(IllegalStateException.class, () -> ambiguous.apply(duplicated));
+
+        DiffPatch<Labels> fromNull = DiffPatch.of(new ReflectionDiffBuilder<>(new Labels(null), new Labels(List.of("a"))).build());
+        assertEquals(List.of("a"), fromNull.apply(new Labels(null)).getValues());
+        assertNull(fromNull.reverse().apply(new Labels(new ArrayList<>(List.of("a")))).getValues());
+        DiffPatch<Labels> toNull = DiffPatch.of(new ReflectionDiffBuilder<>(new Labels(List.of("a")), new Labels(null)).build());
+        assertNull(toNull.apply(new Labels(new ArrayList<>(List.of("a")))).getValues());
+        DiffPatch<Labels> element = DiffPatch.of("标签", List.of(new DiffPair<>("标签-值", null, "a")));
+        assertEquals(List.of("a"), element.apply(new Labels(null)).getValues());
+
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("a", new Address("1 Main St", "London", "12345"));
+        properties.put("a-b", new Address("2 Main St", "London", "12345"));
+        DiffPatch<Settings> separator = DiffPatch.of("配置", List.of(new DiffPair<>("配置-属性-a-b-城市", "London", "Paris")));
+        Settings patched = separator.apply(new Settings(properties, null));
+        assertEquals("London", ((Address) patched.getProperties().get("a")).getCity());
+        assertEquals("Paris", ((Address) patched.getProperties().get("a-b")).getCity());
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @FieldSCName("排名")
+    public static class Ranking {
+        @FieldSCName("名次")
+        private SortedMap<Integer, String> places;
+    }
+
+    @Test
+    public void patchConvertsNewMapKeysToTheKeyType() {
+        Ranking ranking1 = new Ranking(new TreeMap<>(Map.of(1, "a", 2, "b")));
+        Ranking ranking2 = new Ranking(new TreeMap<>(Map.of(1, "a", 3, "c")));
+        DiffPatch<Ranking> patch = DiffPatch.of(new ReflectionDiffBuilder<>(ranking1, ranking2).build());
+        Ranking patched = patch.apply(new Ranking(new TreeMap<>(ranking1.places)));
+        assertEquals(ranking2.places, patched.places);
+        assertEquals(Integer.class, patched.places.lastKey().getClass());
+
+        DiffPatch<Ranking> bad = DiffPatch.of("排名", List.of(new DiffPair<>("排名-名次-first", null, "x")));
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> bad.apply(new Ranking(new TreeMap<>())));
+        assertTrue(e.getMessage().contains("java.lang.Integer"), e.getMessage());
+    }
+
+    @AllArgsConstructor
+    @FieldSCName("报价")
+    public static class Quote {
+        @FieldSCName("金额")
+        private BigDecimal amount;
+        @FieldSCName("汇率")
+        private double rate;
+        @FieldSCName("时间")
+        private Instant time;
+    }
+
+    @Test
+    public void registeredComparatorsReplaceDefaultComparison() {
+        Instant now = Instant.parse("2024-01-01T00:00:00.123456Z");
+        Quote quote1 = new Quote(new BigDecimal("1.0"), 0.1 + 0.2, now);
+        Quote quote2 = new Quote(new BigDecimal("1.00"), 0.3, now.plusNanos(100));
+        assertEquals(3, new ReflectionDiffBuilder<>(quote1, quote2).build().getDiffs().size());
+
+        DiffOptions options = DiffOptions.builder().comparators(ComparatorRegistry.builder()
+                .register(BigDecimal.class, ValueComparator.byCompareTo())
+                .register(double.class, ValueComparator.tolerance(1e-9))
+                .register(Instant.class, ValueComparator.comparing(instant -> instant.truncatedTo(ChronoUnit.MILLIS)))
+                .build()).build();
+        assertTrue(new ReflectionDiffBuilder<>(quote1, quote2).withOptions(options).build().getDiffs().isEmpty());
+
+        Quote quote3 = new Quote(new BigDecimal("2"), 0.4, now.plusMillis(1));
+        assertEquals(3, new ReflectionDiffBuilder<>(quote1, quote3).withOptions(options).build().getDiffs().size());
+    }
+
+    @Test
+    public void metricsCountBuildsFieldsAndDiffs() throws Exception {
+        Person father1 = new Person("John", "Doe", 60, new ArrayList<>(), new Address("1 Main St", "London", "12345"), null);
+        Person father2 = new Person("Jack", "Doe", 61, new ArrayList<>(), new Address("1 Main St", "Paris", "12345"), null);
+        Person person1 = new Person("Jane", "Doe", 30, new ArrayList<>(), new Address("2 Main St", "London", "12345"), father1);
+        Person person2 = new Person("Jill", "Roe", 30, new ArrayList<>(), new Address("2 Main St", "London", "54321"), father2);
+        DiffMetrics metrics = new DiffMetrics().registerMBean("test");
+        try {
+            DiffOptions options = DiffOptions.builder().metrics(metrics).build();
+            int diffs = new ReflectionDiffBuilder<>(person1, person2).withOptions(options).build().getDiffs().size();
+            assertTrue(new ReflectionDiffBuilder<>(person1, person2).withOptions(options).differs());
+
+            assertEquals(2, metrics.getBuilds());
+            assertEquals(diffs + 1, metrics.getDiffs());
+            assertEquals(2, metrics.getClassMetrics(Address.class).getCompared());
+            assertEquals(6, metrics.getClassMetrics(Person.class).getFieldsVisited() / metrics.getClassMetrics(Person.class).getCompared());
+            assertTrue(metrics.getDepthHistogram().length > 0);
+            assertEquals(2L, ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(new ObjectName("org.example:type=DiffMetrics,name=\"test\""), "Builds"));
+        } finally {
+            metrics.unregisterMBean();
+        }
+    }
+
+    @Test
+    public void filtersPruneFieldsBeforeTheyAreRead() {
+        Person father1 = new Person("John", "Doe", 60, new ArrayList<>(), new Address("1 Main St", "London", "12345"), null);
+        Person father2 = new Person("Jack", "Roe", 61, new ArrayList<>(), new Address("1 Main St", "Paris", "12345"), null);
+        Person person1 = new Person("Jane", "Doe", 30, new ArrayList<>(), new Address("2 Main St", "London", "12345"), father1);
+        Person person2 = new Person("Jill", "Doe", 31, new ArrayList<>(), new Address("2 Main St", "Paris", "12345"), father2);
+
+        DiffOptions byPath = DiffOptions.builder().filter(DiffFilter.builder().excludePaths("人员信息-父亲-*").build()).build();
+        List<DiffPair<?>> diffs = new ReflectionDiffBuilder<>("人员信息", person1, person2).withOptions(byPath).build().getDiffs();
+        assertFalse(diffs.isEmpty());
+        assertTrue(diffs.stream().noneMatch(d -> d.path().startsWith("人员信息-父亲-")));
+
+        DiffOptions byNameAndType = DiffOptions.builder()
+                .filter(DiffFilter.builder().excludeNames("年龄").excludeTypes(Address.class).build()).build();
+        assertEquals(List.of("人员信息-姓", "人员信息-父亲-姓", "人员信息-父亲-名"),
+                new ReflectionDiffBuilder<>("人员信息", person1, person2).withOptions(byNameAndType).build()
+                        .getDiffs().stream().map(DiffPair::path).collect(Collectors.toList()));
+
+        DiffOptions included = DiffOptions.builder().filter(DiffFilter.builder().includePaths("人员信息-父亲-**").build()).build();
+        assertTrue(new ReflectionDiffBuilder<>("人员信息", person1, person2).withOptions(included).build()
+                .getDiffs().stream().allMatch(d -> d.path().startsWith("人员信息-父亲-")));
+    }
+
+    @Test
+    public void longTextIsReportedAsChangedLines() {
+        StringBuilder left = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            left.append("line ").append(i).append('\n');
+        }
+        String right = left.toString().replace("line 10\n", "line ten\n").replace("line 500\n", "");
+        Address address1 = new Address(left.toString(), "London", "12345");
+        Address address2 = new Address(right, "London", "12345");
+
+        DiffOptions options = DiffOptions.builder().textThreshold(1024).build();
+        List<DiffPair<?>> diffs = new ReflectionDiffBuilder<>(address1, address2).withOptions(options).build().getDiffs();
+        int ten = left.indexOf("line 10\n");
+        int fiveHundred = left.indexOf("line 500\n");
+        assertEquals(List.of("地址-streetAddress-[" + ten + "," + (ten + 8) + ")",
+                "地址-streetAddress-[" + fiveHundred + "," + (fiveHundred + 9) + ")"),
+                diffs.stream().map(DiffPair::path).collect(Collectors.toList()));
+        assertEquals("line 10\n", diffs.get(0).left());
+        assertEquals("line ten\n", diffs.get(0).right());
+        assertEquals("", diffs.get(1).right());
+
+        DiffPatch<Address> patch = DiffPatch.of(new ReflectionDiffBuilder<>(address1, address2).withOptions(options).build());
+        assertEquals(right, patch.apply(new Address(left.toString(), "London", "12345")).getStreetAddress());
+        assertEquals(left.toString(), patch.reverse().apply(new Address(right, "London", "12345")).getStreetAddress());
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> patch.apply(new Address("other\n", "London", "12345")));
+        assertTrue(e.getMessage().contains("does not match"), e.getMessage());
+
+        List<TextHunk> hunks = TextDiff.diff("a\nb\nc\n", "a\nx\nc\nd\n");
+        assertEquals(2, hunks.size());
+        assertEquals(2, hunks.get(0).getLeftOffset());
+        assertEquals("x\n", hunks.get(0).getInserted());
+        assertEquals(6, hunks.get(1).getRightOffset());
+        assertEquals(1, new ReflectionDiffBuilder<>(address1, address2).build().getDiffs().size());
+    }
+
+    @Test
+    public void bulkDiffJoinsByKey() {
+        List<PhoneNumber> left = List.of(new PhoneNumber("home", "1"), new PhoneNumber("mobile", "2"), new PhoneNumber("work", "3"));
+        List<PhoneNumber> right = List.of(new PhoneNumber("fax", "4"), new PhoneNumber("home", "1"), new PhoneNumber("work", "5"));
+
+        List<DiffPair<?>> merged = new ArrayList<>();
+        BulkDiffResult result = BulkDiff.sortMerge("号码", left.stream(), right.stream(), PhoneNumber::getType,
+                Comparator.naturalOrder(), DiffOptions.DEFAULT, merged::add);
+        assertEquals(List.of("号码-fax", "号码-mobile", "号码-work-number"),
+                merged.stream().map(DiffPair::path).collect(Collectors.toList()));
+        assertEquals("1 1 1 1", result.getInserted() + " " + result.getDeleted() + " " + result.getModified() + " " + result.getUnchanged());
+
+        List<DiffPair<?>> hashed = new ArrayList<>();
+        BulkDiff.hashJoin("号码", left, right, PhoneNumber::getType, DiffOptions.DEFAULT, hashed::add);
+        assertEquals(List.of("号码-mobile", "号码-work-number", "号码-fax"),
+                hashed.stream().map(DiffPair::path).collect(Collectors.toList()));
+
+        assertThrows(IllegalArgumentException.class, () -> BulkDiff.sortMerge("号码", right.stream(), left.stream().sorted(
+                Comparator.comparing(PhoneNumber::getType).reversed()), PhoneNumber::getType, Comparator.naturalOrder(),
+                DiffOptions.DEFAULT, pair -> { }));
+        List<PhoneNumber> duplicated = List.of(new PhoneNumber("home", "1"), new PhoneNumber("home", "2"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> BulkDiff.hashJoin("号码", duplicated, right, PhoneNumber::getType, DiffOptions.DEFAULT, pair -> { }));
+        assertEquals("Duplicate key: home", e.getMessage());
+
+        boolean[] closed = new boolean[2];
+        BulkDiff.sortMerge("号码", left.stream().onClose(() -> closed[0] = true), right.stream().onClose(() -> closed[1] = true),
+                PhoneNumber::getType, Comparator.naturalOrder(), DiffOptions.DEFAULT, pair -> { });
+        assertTrue(closed[0] && closed[1]);
+    }
+
+    @Test
+    public void snapshotFilesDiffLikeObjects(@TempDir Path dir) throws IOException {
+        Person father1 = new Person("John", "Doe", 60, new ArrayList<>(), new Address("1 Main St", "London", "12345"), null);
+        Person person1 = new Person("Jane", "Doe", 30, new ArrayList<>(), new Address("2 Main St", "London", "12345"), father1);
+        Person person2 = new Person("Jill", "Roe", 30, new ArrayList<>(), new Address("2 Main St", "Paris", "54321"), null);
+        Path left = dir.resolve("left.snap");
+        Path right = dir.resolve("right.snap");
+        SnapshotFile.write(person1, left);
+        SnapshotFile.write(person2, right);
+
+        List<DiffPair<?>> fromFiles = SnapshotFile.diff(left, right);
+        List<DiffPair<?>> inHeap = DiffSnapshot.capture(person1).diff(person2);
+        assertEquals(inHeap.stream().map(DiffPair::path).sorted().collect(Collectors.toList()),
+                fromFiles.stream().map(DiffPair::path).collect(Collectors.toList()));
+        assertTrue(fromFiles.contains(new DiffPair<>("地址-城市", "London", "Paris")));
+        assertTrue(SnapshotFile.diff(left, left).isEmpty());
+
+        try (SnapshotFile.Writer writer = SnapshotFile.writer(dir.resolve("export.snap"))) {
+            writer.add("a", 1);
+            assertThrows(IllegalArgumentException.class, () -> writer.add("a", 2));
+        }
+
+        byte[] export = Files.readAllBytes(dir.resolve("export.snap"));
+        Path truncated = Files.write(dir.resolve("truncated.snap"), Arrays.copyOf(export, export.length - 1));
+        assertThrows(IllegalStateException.class, () -> SnapshotFile.diff(left, truncated));
+    }
+
+    @Test
+    public void snapshotFilesEncodeEqualValuesTheSame(@TempDir Path dir) throws IOException {
+        // 内容相同、迭代顺序不同的 Set 和 Map 编码相同，HashSet 的顺序随容量变化
+        Map<String, Integer> ab = new LinkedHashMap<>();
+        ab.put("a", 1);
+        ab.put("b", 2);
+        Map<String, Integer> ba = new LinkedHashMap<>();
+        ba.put("b", 2);
+        ba.put("a", 1);
+        Set<String> small = new HashSet<>(2);
+        Set<String> large = new HashSet<>(1024);
+        Map<String, BigDecimal> smallMap = new HashMap<>(2);
+        Map<String, BigDecimal> largeMap = new HashMap<>(1024);
+        for (int i = 0; i < 64; i++) {
+            small.add("元素" + i);
+            large.add("元素" + (63 - i));
+            smallMap.put("键" + i, new BigDecimal(i + ".0"));
+            largeMap.put("键" + (63 - i), new BigDecimal((63 - i) + ".000"));
+        }
+        assertNotEquals(List.copyOf(small), List.copyOf(large));
+        Path left = dir.resolve("left.snap");
+        Path right = dir.resolve("right.snap");
+        try (SnapshotFile.Writer writer = SnapshotFile.writer(left)) {
+            writer.add("哈希映射", smallMap).add("哈希集合", small).add("数值", new BigDecimal("1.0"))
+                    .add("数值集合", Set.of(new BigDecimal("2.50"))).add("映射", ab).add("集合", new LinkedHashSet<>(List.of("x", "y")));
+        }
+        try (SnapshotFile.Writer writer = SnapshotFile.writer(right)) {
+            writer.add("哈希映射", largeMap).add("哈希集合", large).add("数值", new BigDecimal("1.00"))
+                    .add("数值集合", Set.of(new BigDecimal("2.5"))).add("映射", ba).add("集合", new LinkedHashSet<>(List.of("y", "x")));
+        }
+        assertTrue(SnapshotFile.diff(left, right).isEmpty());
+
+        try (SnapshotFile.Writer writer = SnapshotFile.writer(right)) {
+            writer.add("数值", new BigDecimal("1.01"));
+        }
+        try (SnapshotFile.Writer writer = SnapshotFile.writer(left)) {
+            writer.add("数值", new BigDecimal("1.0"));
+        }
+        assertEquals(List.of(new DiffPair<>("数值", BigDecimal.ONE, new BigDecimal("1.01"))), SnapshotFile.diff(left, right));
+    }
+
+    @Test
+    public void fingerprintsSkipUnchangedSubtrees() {
+        Person person1 = new Person("Jane", "Doe", 30, new ArrayList<>(), new Address("2 Main St", "London", "12345"), null);
+        Person person2 = new Person("Jill", "Doe", 30, new ArrayList<>(), new Address("2 Main St", "London", "12345"), null);
+        DiffMetrics metrics = new DiffMetrics();
+        DiffOptions options = DiffOptions.builder().fingerprints(DiffFingerprints.byIdentity()).metrics(metrics).build();
+        List<DiffPair<?>> diffs = new ReflectionDiffBuilder<>(person1, person2).withOptions(options).build().getDiffs();
+        assertEquals(new ReflectionDiffBuilder<>(person1, person2).build().getDiffs(), diffs);
+        assertNull(metrics.getClassMetrics(Address.class));
+        Person copy = new Person("Jane", "Doe", 30, new ArrayList<>(), new Address("2 Main St", "London", "12345"), null);
+        assertFalse(new ReflectionDiffBuilder<>(person1, copy).withOptions(options).differs());
+
+        DiffFingerprints byVersion = DiffFingerprints.byVersion();
+        Versioned versioned1 = new Versioned();
+        versioned1.name = "a";
+        Versioned versioned2 = new Versioned();
+        versioned2.name = "a";
+        assertTrue(byVersion.same(versioned1, versioned2));
+        versioned2.name = "b";
+        versioned2.version = 1;
+        assertFalse(byVersion.same(versioned1, versioned2));
+        assertEquals(2, byVersion.size());
+
+        Node parent1 = new Node("parent");
+        Node child1 = new Node("child");
+        parent1.child = child1;
+        child1.parent = parent1;
+        Node parent2 = new Node("parent");
+        Node child2 = new Node("kid");
+        parent2.child = child2;
+        child2.parent = parent2;
+        DiffOptions cyclic = DiffOptions.builder().fingerprints(DiffFingerprints.byIdentity()).build();
+        assertEquals(List.of(new DiffPair<>("节点-下级-名称", "child", "kid")),
+                new ReflectionDiffBuilder<>(parent1, parent2).withOptions(cyclic).build().getDiffs());
+    }
+
+    @FieldSCName("版本容器")
+    public static class VersionedHolder {
+        @DiffVersion
+        @FieldSCName("版本")
+        private int version;
+        @FieldSCName("地址")
+        private Address address;
+    }
+
+    @DiffVersion
+    @FieldSCName("哈希版本")
+    public static class HashVersioned {
+        @FieldSCName("名称")
+        private String name;
+    }
+
+    @Test
+    public void fingerprintsByVersionSeeChildrenAndIdentityHashes() {
+        DiffFingerprints byVersion = DiffFingerprints.byVersion();
+        VersionedHolder holder1 = new VersionedHolder();
+        holder1.address = new Address("1 Main St", "London", "12345");
+        VersionedHolder holder2 = new VersionedHolder();
+        holder2.address = new Address("1 Main St", "London", "12345");
+        assertTrue(byVersion.same(holder1, holder2));
+        // 上层版本不变，子对象原地修改
+        holder2.address.city = "Paris";
+        assertFalse(byVersion.same(holder1, holder2));
+        DiffOptions options = DiffOptions.builder().fingerprints(byVersion).build();
+        assertEquals(List.of(new DiffPair<>("版本容器-地址-城市", "London", "Paris")),
+                new ReflectionDiffBuilder<>(holder1, holder2).withOptions(options).build().getDiffs());
+
+        HashVersioned hashed1 = new HashVersioned();
+        hashed1.name = "a";
+        HashVersioned hashed2 = new HashVersioned();
+        hashed2.name = "a";
+        assertTrue(byVersion.same(hashed1, hashed2));
+        hashed2.name = "b";
+        assertFalse(byVersion.same(hashed1, hashed2));
+        assertEquals(2, byVersion.size());
+    }
+
+    @Test
+    public void fingerprintsAreComputedOncePerDiff() {
+        int length = 50;
+        Chain left = new Chain(new Tag(-1), null);
+        Chain right = new Chain(new Tag(-2), null);
+        for (int i = 0; i < length - 1; i++) {
+            left = new Chain(new Tag(i), left);
+            right = new Chain(new Tag(i), right);
+        }
+        DiffOptions options = DiffOptions.builder().fingerprints(DiffFingerprints.byVersion()).build();
+        Tag.hashes = 0;
+        List<DiffPair<?>> diffs = new ReflectionDiffBuilder<>(left, right).withOptions(options).build().getDiffs();
+        assertEquals(1, diffs.size());
+        // 每个标签每侧只计算一次，逐层重新计算时约为 length * length 次
+        assertEquals(2 * length, Tag.hashes);
+    }
+
+    @Test
+    public void engineIsSharedAcrossThreadsAndCalls() throws Exception {
+        Person father1 = new Person("John", "Doe", 60, new ArrayList<>(), new Address("1 Main St", "London", "12345"), null);
+        Person father2 = new Person("Jack", "Doe", 61, new ArrayList<>(), new Address("1 Main St", "Paris", "12345"), null);
+        Person person1 = new Person("Jane", "Doe", 30, new ArrayList<>(), new Address("2 Main St", "London", "12345"), father1);
+        Person person2 = new Person("Jill", "Roe", 30, new ArrayList<>(), new Address("2 Main St", "London", "54321"), father2);
+        List<DiffPair<?>> expected = new ReflectionDiffBuilder<>("人员信息", person1, person2).build().getDiffs();
+
+        DiffEngine engine = new DiffEngine();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<DiffPair<?>>>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                futures.add(executor.submit(() -> engine.diff("人员信息", person1, person2).getDiffs()));
+            }
+            for (Future<List<DiffPair<?>>> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<DiffPair<?>> outer = new ArrayList<>();
+        engine.diff("人员信息", person1, person2, pair -> {
+            outer.add(pair);
+            assertEquals(expected, engine.diff("人员信息", person1, person2).getDiffs());
+        });
+        assertEquals(expected, outer);
+        assertTrue(engine.differs(person1, person2));
+        assertFalse(engine.differs(father1, father1));
+    }
+
+    @Test
+    public void threeWayDiffClassifiesAndMergesChanges() {
+        Person base = new Person("Jane", "Doe", 30, new ArrayList<>(), new Address("2 Main St", "London", "12345"),
+                new Person("John", "Doe", 60, new ArrayList<>(), null, null));
+        Person ours = new Person("Janet", "Roe", 30, new ArrayList<>(), new Address("2 Main St", "London", "12345"),
+                new Person("Johnny", "Doe", 60, new ArrayList<>(), null, null));
+        Person theirs = new Person("Jane", "Roe", 31, new ArrayList<>(), new Address("2 Main St", "Paris", "12345"),
+                new Person("Jack", "Doe", 60, new ArrayList<>(), null, null));
+
+        ThreeWayResult<Person> result = new ThreeWayDiff<>(base, ours, theirs).build();
+        assertEquals(List.of("姓 OURS", "名 BOTH", "年龄 THEIRS", "地址-城市 THEIRS", "父亲-姓 CONFLICT"),
+                result.getChanges().stream().map(change -> change.getPath() + " " + change.getKind()).collect(Collectors.toList()));
+        assertTrue(result.hasConflicts());
+        assertEquals("Johnny", result.getConflicts().get(0).getOurs());
+
+        Person merged = result.merge(ours);
+        assertSame(ours, merged);
+        assertEquals("Janet", merged.getFirstName());
+        assertEquals(31, merged.getAge());
+        assertEquals("Paris", merged.getAddress().getCity());
+        assertEquals("Johnny", merged.getFather().getFirstName());
+        assertTrue(new ThreeWayDiff<>(base, base, base).build().getChanges().isEmpty());
+    }
+
+    @Test
+    public void threeWayDiffMergesDifferentElementsOfACollection() {
+        Cart base = new Cart(new ArrayList<>(List.of(new LineItem("a", 1), new LineItem("b", 1))), new ArrayList<>(List.of("x", "y")));
+        Cart ours = new Cart(new ArrayList<>(List.of(new LineItem("a", 2), new LineItem("b", 1))), new ArrayList<>(List.of("X", "y")));
+        Cart theirs = new Cart(new ArrayList<>(List.of(new LineItem("a", 1), new LineItem("b", 3), new LineItem("c", 1))),
+                new ArrayList<>(List.of("x", "Y")));
+        ThreeWayResult<Cart> result = new ThreeWayDiff<>(base, ours, theirs).build();
+        assertEquals(List.of("购物车-明细-a-数量 OURS", "购物车-明细-b-数量 THEIRS", "购物车-明细-c THEIRS",
+                        "购物车-标签-[0] OURS", "购物车-标签-[1] THEIRS"),
+                result.getChanges().stream().map(change -> change.getPath() + " " + change.getKind()).collect(Collectors.toList()));
+        Cart merged = result.merge(ours);
+        assertEquals(List.of(new LineItem("a", 2), new LineItem("b", 3), new LineItem("c", 1)), merged.getItems());
+        assertEquals(List.of("X", "Y"), merged.getTags());
+
+        Ranking baseRanking = new Ranking(new TreeMap<>(Map.of(1, "a", 2, "b")));
+        Ranking ourRanking = new Ranking(new TreeMap<>(Map.of(1, "A", 2, "b")));
+        Ranking theirRanking = new Ranking(new TreeMap<>(Map.of(1, "a", 2, "B", 3, "c")));
+        ThreeWayResult<Ranking> ranking = new ThreeWayDiff<>(baseRanking, ourRanking, theirRanking).build();
+        assertFalse(ranking.hasConflicts());
+        assertEquals(Map.of(1, "A", 2, "B", 3, "c"), ranking.merge(ourRanking).getPlaces());
+    }
 }